@@ -0,0 +1,263 @@
+package database;
+
+import schemaConversion.Checkpoint;
+import schemaConversion.GraphRecordReader;
+
+import java.io.*;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Bulk loader that streams the converted nodes and relationships into Postgres using the
+ * COPY FROM STDIN protocol (text format). The file is sent in chunks of CHUNK_ROWS rows, so
+ * only one chunk is ever held in memory, and the load time grows linearly with the size of the
+ * graph. The rate of each table is printed as the load progresses.
+ * <p>
+ * The Postgres JDBC driver is only on the classpath at runtime (it is loaded by name in DbUtil),
+ * so the CopyManager API is also accessed by name.
+ */
+class CopyLoader {
+    // number of rows sent to the database in one COPY statement.
+    private static final int CHUNK_ROWS = 50000;
+
+    private final Object copyManager;
+    private final Method copyIn;
+
+    CopyLoader(Connection c) throws SQLException {
+        try {
+            Class<?> baseConnection = Class.forName("org.postgresql.core.BaseConnection");
+            Class<?> managerClass = Class.forName("org.postgresql.copy.CopyManager");
+            Constructor<?> constructor = managerClass.getConstructor(baseConnection);
+            this.copyManager = constructor.newInstance(c.unwrap(baseConnection));
+            this.copyIn = managerClass.getMethod("copyIn", String.class, Reader.class);
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("Postgres driver does not support COPY", e);
+        }
+    }
+
+    /**
+     * Load an intermediate nodes or edges file (as written by the schema converter) into a table.
+     *
+     * @param table   Relation to load the data into.
+     * @param columns Columns of the relation, each in the form "name TYPE".
+     * @param file    File containing the converted data.
+     * @param filter  Test of which records to load (given their values), or null to load all of them.
+     * @return Number of rows loaded.
+     * @throws SQLException Error executing COPY on the database.
+     * @throws IOException  Error reading the converted data.
+     */
+    long copyGraphFile(String table, List<String> columns, String file, Predicate<Object[]> filter)
+            throws SQLException, IOException {
+        return copyGraphFile(table, columns, file, filter, null, 0, null);
+    }
+
+    /**
+     * Load an intermediate nodes or edges file into a table, continuing a load that did not complete.
+     * Each chunk is committed as it is sent, so the rows already in the table are exactly the first
+     * rows of the file, and are skipped.
+     *
+     * @param table      Relation to load the data into.
+     * @param columns    Columns of the relation, each in the form "name TYPE".
+     * @param file       File containing the converted data.
+     * @param filter     Test of which records to load (given their values), or null to load all of them.
+     * @param derive     Fills in the values of columns not stored in the file from the other values, or null.
+     * @param skipRows   Number of rows (passing the filter) already loaded.
+     * @param checkpoint Checkpoint to record the rows loaded in after each chunk, or null.
+     * @return Number of rows in the table once loaded.
+     * @throws SQLException Error executing COPY on the database.
+     * @throws IOException  Error reading the converted data.
+     */
+    long copyGraphFile(String table, List<String> columns, String file, Predicate<Object[]> filter,
+                       Consumer<Object[]> derive, long skipRows, Checkpoint checkpoint)
+            throws SQLException, IOException {
+        String copySQL = "COPY " + table + " (" + getColumnNames(columns) + ") FROM STDIN";
+
+        GraphRecordReader reader = new GraphRecordReader(file, columns);
+        Object[] values = new Object[columns.size()];
+        StringBuilder chunk = new StringBuilder();
+        int rowsInChunk = 0;
+        long rowsLoaded = 0;
+        long rowsSkipped = 0;
+        long startNano = System.nanoTime();
+
+        while (reader.next(values)) {
+            if (filter != null && !filter.test(values)) continue;
+            if (rowsSkipped < skipRows) {
+                rowsSkipped++;
+                continue;
+            }
+            if (derive != null) derive.accept(values);
+            appendRow(chunk, columns, values);
+            rowsInChunk++;
+
+            if (rowsInChunk == CHUNK_ROWS) {
+                rowsLoaded += sendChunk(copySQL, chunk);
+                chunk.setLength(0);
+                rowsInChunk = 0;
+                printRate(table, rowsLoaded, startNano);
+                if (checkpoint != null) checkpoint.setRowsLoaded(table, skipRows + rowsLoaded);
+            }
+        }
+        reader.close();
+
+        if (rowsInChunk > 0) rowsLoaded += sendChunk(copySQL, chunk);
+        printRate(table, rowsLoaded, startNano);
+        if (checkpoint != null) checkpoint.setRowsLoaded(table, skipRows + rowsLoaded);
+        return skipRows + rowsLoaded;
+    }
+
+    /**
+     * Load rows held in memory into a table.
+     *
+     * @param table   Relation to load the data into.
+     * @param columns Columns of the relation, each in the form "name TYPE".
+     * @param rows    Values of each row, lined up with the columns.
+     * @return Number of rows loaded.
+     * @throws SQLException Error executing COPY on the database.
+     */
+    long copyValues(String table, List<String> columns, Collection<Object[]> rows) throws SQLException {
+        String copySQL = "COPY " + table + " (" + getColumnNames(columns) + ") FROM STDIN";
+        StringBuilder chunk = new StringBuilder();
+        int rowsInChunk = 0;
+        long rowsLoaded = 0;
+
+        for (Object[] values : rows) {
+            appendRow(chunk, columns, values);
+            if (++rowsInChunk == CHUNK_ROWS) {
+                rowsLoaded += sendChunk(copySQL, chunk);
+                chunk.setLength(0);
+                rowsInChunk = 0;
+            }
+        }
+        if (rowsInChunk > 0) rowsLoaded += sendChunk(copySQL, chunk);
+        return rowsLoaded;
+    }
+
+    /**
+     * Load rows that are already in the COPY text format into a table.
+     *
+     * @param table   Relation to load the data into.
+     * @param columns Columns of the relation, each in the form "name TYPE".
+     * @param rows    Rows, each ending with a line break.
+     * @return Number of rows loaded.
+     * @throws SQLException Error executing COPY on the database.
+     */
+    long copyText(String table, List<String> columns, StringBuilder rows) throws SQLException {
+        return sendChunk("COPY " + table + " (" + getColumnNames(columns) + ") FROM STDIN", rows);
+    }
+
+    private long sendChunk(String copySQL, StringBuilder chunk) throws SQLException {
+        try {
+            return (Long) copyIn.invoke(copyManager, copySQL, new StringReader(chunk.toString()));
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException) throw (SQLException) e.getCause();
+            throw new SQLException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    static void printRate(String table, long rows, long startNano) {
+        double seconds = (System.nanoTime() - startNano) / 1000000000.0;
+        System.out.println("LOADED " + table + " : " + rows + " rows (" +
+                String.format("%.1f", (seconds > 0) ? rows / seconds : 0) + " rows/sec).");
+    }
+
+    private static String getColumnNames(List<String> columns) {
+        StringBuilder sb = new StringBuilder();
+        for (String col : columns) {
+            sb.append(col.split(" ")[0]).append(", ");
+        }
+        sb.setLength(sb.length() - 2);
+        return sb.toString();
+    }
+
+    /**
+     * Append one row in the COPY text format: columns separated by tabs, \N for NULL.
+     *
+     * @param sb      Chunk being built up.
+     * @param columns Columns of the relation, each in the form "name TYPE".
+     * @param values  Values of the node or relationship, lined up with the columns.
+     * @throws SQLDataException A value does not suit the type of its column.
+     */
+    private static void appendRow(StringBuilder sb, List<String> columns, Object[] values) throws SQLDataException {
+        for (int i = 0; i < values.length; i++) {
+            String z = columns.get(i);
+            Object value = values[i];
+
+            if (value == null) {
+                sb.append("\\N");
+            } else {
+                try {
+                    if (z.endsWith("INT") && value instanceof Long) {
+                        sb.append(value);
+                    } else if (z.endsWith("INT")) {
+                        sb.append(Long.parseLong((String) value));
+                    } else if (value instanceof String[]) {
+                        // is text with list property
+                        appendEscaped(sb, toArrayLiteral((String[]) value));
+                    } else if (z.endsWith("[]")) {
+                        // a single value is stored as a singleton list
+                        appendEscaped(sb, toArrayLiteral(new String[]{value.toString()}));
+                    } else {
+                        // is just text
+                        appendEscaped(sb, unescapeSQL(value.toString()));
+                    }
+                } catch (NumberFormatException | ClassCastException e) {
+                    throw new SQLDataException("Value " + value + " is not valid for the column " + z, e);
+                }
+            }
+            sb.append('\t');
+        }
+        sb.setCharAt(sb.length() - 1, '\n');
+    }
+
+    /**
+     * The preprocessing of the dump doubles single quotes so values can be spliced into SQL.
+     * COPY takes the values as they are, so the doubling must be undone.
+     */
+    private static String unescapeSQL(String value) {
+        return value.replace("''", "'");
+    }
+
+    private static String toArrayLiteral(String[] array) {
+        StringBuilder sb = new StringBuilder("{");
+        for (String e : array) {
+            sb.append('"');
+            sb.append(unescapeSQL(e).replace("\\", "\\\\").replace("\"", "\\\""));
+            sb.append("\",");
+        }
+        if (sb.length() > 1) sb.setLength(sb.length() - 1);
+        return sb.append('}').toString();
+    }
+
+    private static void appendEscaped(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                default:
+                    sb.append(ch);
+            }
+        }
+    }
+}
@@ -3,10 +3,13 @@ package database;
 import org.neo4j.driver.v1.*;
 import org.neo4j.driver.v1.exceptions.ClientException;
 import production.Reagan_Main_V4;
+import schemaConversion.SchemaCatalog;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Driver connected to the Neo4J database.
@@ -27,6 +30,20 @@ public class CypherDriver {
      * @param printOutput    Set to true to store the outputs of the query on disk.
      */
     public static void run(String query, String cypher_results, String[] returnItems, boolean printOutput) {
+        run(query, Collections.emptyMap(), cypher_results, returnItems, printOutput);
+    }
+
+    /**
+     * Method that runs a Cypher query with parameters ($name).
+     *
+     * @param query          Cypher to execute.
+     * @param params         Value of each parameter of the query, by name.
+     * @param cypher_results File to store the results.
+     * @param returnItems    Array containing the items to return, used when outputting the results to disk.
+     * @param printOutput    Set to true to store the outputs of the query on disk.
+     */
+    public static void run(String query, Map<String, Object> params, String cypher_results, String[] returnItems,
+                           boolean printOutput) {
         // database essentials
         Driver driver = GraphDatabase.driver("bolt://localhost",
                 AuthTokens.basic(Reagan_Main_V4.neoUN, Reagan_Main_V4.neoPW));
@@ -38,13 +55,13 @@ public class CypherDriver {
 
         // timing unit
         long startNano = System.nanoTime();
-        session.run(query).consume();
+        session.run(query, params).consume();
         long endNano = System.nanoTime();
         lastExecTime = endNano - startNano;
 
         // only print results to the output file if the query is for reading.
         if (!query.toLowerCase().startsWith("create")) {
-            StatementResult result = session.run(query);
+            StatementResult result = session.run(query, params);
 
             // keep a track of the number of records returned from Neo4J
             int countRecords = 0;
@@ -126,27 +143,13 @@ public class CypherDriver {
     }
 
     /**
-     * If the Cypher query wishes to return all information about a node, then this can be done by
-     * opening a "metadata" file which contains all of the possible labels for the graph db.
+     * If the Cypher query wishes to return all information about a node, then the properties are taken
+     * from the schema catalog, which holds all of the possible properties for the graph db.
      *
-     * @return List of labels expect 'id'.
+     * @return List of properties except 'id' and 'label'.
      */
     private static List<String> getAllFieldsNodes() {
-        List<String> toReturn = new ArrayList<>();
-        try {
-            FileInputStream fis = new FileInputStream(Reagan_Main_V4.workspaceArea + "/meta.txt");
-            BufferedReader br = new BufferedReader(new InputStreamReader(fis));
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (!line.equals("id") && !line.equals("label"))
-                    toReturn.add(line);
-            }
-            br.close();
-            fis.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return toReturn;
+        return SchemaCatalog.get().getNodeProperties();
     }
 
     /**
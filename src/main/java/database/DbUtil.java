@@ -2,10 +2,15 @@ package database;
 
 import org.apache.commons.lang3.SystemUtils;
 import production.Reagan_Main_V4;
+import translator.TranslationCache;
+import translator.TranslationResult;
 
 import java.io.*;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Database driver for Postgres. Runs SQL, and parses result into appropriate text file.
@@ -17,6 +22,20 @@ public class DbUtil {
     private static Connection c = null;
     private static int numRecords = 0;
     private static boolean DB_OPEN = false;
+    // most prepared statements kept open on the connection.
+    private static final int PREPARED_CAPACITY = 256;
+    // statements with parameters, by their SQL, kept prepared on the server to be run again.
+    private static final Map<String, PreparedStatement> prepared =
+            new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= PREPARED_CAPACITY) return false;
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+            };
+    // set while TEMP views created by a query are on the connection.
+    private static boolean tempViews = false;
 
     /**
      * Create the initial connection to the database.
@@ -26,8 +45,7 @@ public class DbUtil {
     static void createConnection(String dbName) {
         try {
             Class.forName("org.postgresql.Driver");
-            c = DriverManager.getConnection("jdbc:postgresql://localhost:5432/" + dbName,
-                    Reagan_Main_V4.postUN, Reagan_Main_V4.postPW);
+            c = openConnection(dbName);
             DB_OPEN = true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -35,18 +53,56 @@ public class DbUtil {
         }
     }
 
+    /**
+     * Open a further connection to the database, for work run in parallel to the main connection.
+     *
+     * @param dbName Name of the database to connect to.
+     * @return The new connection, which the caller must close.
+     * @throws SQLException Error connecting to the database.
+     */
+    static Connection openConnection(String dbName) throws SQLException {
+        // statements with parameters are prepared on the server the first time they are run.
+        return DriverManager.getConnection("jdbc:postgresql://localhost:5432/" + dbName + "?prepareThreshold=1",
+                Reagan_Main_V4.postUN, Reagan_Main_V4.postPW);
+    }
+
     /**
      * Close connection to the database.
      */
     static void closeConnection() {
         try {
+            for (PreparedStatement pstmt : prepared.values()) closeQuietly(pstmt);
+            prepared.clear();
             c.close();
             DB_OPEN = false;
+            tempViews = false;
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
+    private static void closeQuietly(Statement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Drop the TEMP views created by the last query, so the next query can create them again. The
+     * connection is kept, along with the statements prepared on it.
+     *
+     * @throws SQLException Error dropping the views.
+     */
+    private static void dropTempViews() throws SQLException {
+        if (!tempViews) return;
+        Statement stmt = c.createStatement();
+        stmt.execute("DISCARD TEMP;");
+        stmt.close();
+        tempViews = false;
+    }
+
     /**
      * If the SQL begins with a CREATE keyword, then this query should be executed
      * and committed first before other queries execute. This is needed when TEMP
@@ -65,6 +121,7 @@ public class DbUtil {
         stmt.executeUpdate(query);
         long endNanoCreate = System.nanoTime();
         lastExecTimeCreate += (endNanoCreate - startNanoCreate);
+        if (query.trim().toUpperCase().startsWith("CREATE TEMP")) tempViews = true;
 
         stmt.close();
     }
@@ -80,9 +137,23 @@ public class DbUtil {
      */
     public static void select(String query, String database, String pg_results, boolean printOutput)
             throws SQLException {
+        select(query, null, database, pg_results, printOutput);
+    }
+
+    /**
+     * Execute a read SQL statement with JDBC parameters (?) as a PreparedStatement.
+     *
+     * @param query       SQL statement
+     * @param params      Values of the parameters of the statement, or null if it has none.
+     * @param database    Database to execute statement on.
+     * @param pg_results  File to store the results.
+     * @param printOutput Set to true if the output of the SQL statement should be stored in a local file.
+     * @throws SQLException Thrown if there is an error in the SQL statement.
+     */
+    public static void select(String query, List<Object> params, String database, String pg_results,
+                              boolean printOutput) throws SQLException {
         if (!DB_OPEN) DbUtil.createConnection(database);
-        Statement stmt;
-        stmt = c.createStatement();
+        Statement stmt = prepare(query, params);
 
         // obtain the columns returned from the result.
         ArrayList<ArrayList<String>> results = getQueryResult(query, stmt);
@@ -114,7 +185,60 @@ public class DbUtil {
         }
 
         Reagan_Main_V4.numResultsPost = numRecords;
-        DbUtil.closeConnection();
+        // a query without parameters is run on a new connection each time, so its time is measured as it
+        // always has been. The connection is kept for queries with parameters, with the statements prepared
+        // on it, so their times are of the statements already prepared.
+        if (params == null) DbUtil.closeConnection();
+        else dropTempViews();
+    }
+
+    /**
+     * A statement with parameters is taken from those already prepared on the connection, so Postgres
+     * does not parse and plan it again. Statements run while TEMP views are on the connection are not
+     * kept, as the views are dropped after the query.
+     *
+     * @param query  SQL statement.
+     * @param params Values of the parameters of the statement, or null if it has none.
+     * @return A PreparedStatement with the parameters set, or a plain statement if there are none.
+     * @throws SQLException Error preparing the statement.
+     */
+    private static Statement prepare(String query, List<Object> params) throws SQLException {
+        if (params == null) return c.createStatement();
+        PreparedStatement pstmt = (tempViews) ? null : prepared.get(query);
+        if (pstmt == null) {
+            pstmt = c.prepareStatement(query);
+            if (!tempViews) prepared.put(query, pstmt);
+        }
+        pstmt.clearParameters();
+        for (int i = 0; i < params.size(); i++) {
+            setParameter(pstmt, i + 1, params.get(i));
+        }
+        return pstmt;
+    }
+
+    /**
+     * Numbers and booleans are bound with their own type. The type of a string is left for Postgres to
+     * work out, as it is for a literal in the SQL.
+     */
+    private static void setParameter(PreparedStatement pstmt, int index, Object value) throws SQLException {
+        if (value == null) {
+            pstmt.setNull(index, Types.OTHER);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+            pstmt.setLong(index, ((Number) value).longValue());
+        } else if (value instanceof Number) {
+            pstmt.setDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            pstmt.setBoolean(index, (Boolean) value);
+        } else {
+            pstmt.setObject(index, value.toString(), Types.OTHER);
+        }
+    }
+
+    /**
+     * Close a statement once run, unless it is kept prepared on the connection.
+     */
+    private static void release(Statement stmt) throws SQLException {
+        if (!prepared.containsValue(stmt)) stmt.close();
     }
 
     /**
@@ -132,7 +256,8 @@ public class DbUtil {
 
         // timing unit
         long startNanoReadQuery = System.nanoTime();
-        ResultSet rs = stm.executeQuery(query);
+        ResultSet rs = (stm instanceof PreparedStatement) ? ((PreparedStatement) stm).executeQuery() :
+                stm.executeQuery(query);
         long endNanoReadQuery = System.nanoTime();
         lastExecTimeRead += (endNanoReadQuery - startNanoReadQuery);
 
@@ -155,7 +280,8 @@ public class DbUtil {
             numRecords++;
         }
 
-        stm.close();
+        rs.close();
+        release(stm);
         return feedback;
     }
 
@@ -194,20 +320,133 @@ public class DbUtil {
         pstmt.close();
     }
 
+    /**
+     * Load the translations stored by earlier runs into the cache. Translations made against another
+     * version of the schema are removed, as they may no longer be correct.
+     *
+     * @param dbName Database name to load the translations from.
+     * @param cache  Cache to load the translations into.
+     * @throws SQLException Error in executing on the database.
+     */
+    public static void loadTranslationCache(String dbName, TranslationCache cache) throws SQLException {
+        if (!DB_OPEN) createConnection(dbName);
+        Statement stmt = c.createStatement();
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS translation_cache (cypher TEXT, type TEXT, version BIGINT, " +
+                "sql TEXT, return_items TEXT[], PRIMARY KEY (cypher, type));");
+        stmt.close();
+
+        PreparedStatement pstmt = c.prepareStatement("DELETE FROM translation_cache WHERE version <> ?");
+        pstmt.setLong(1, cache.getVersion());
+        pstmt.executeUpdate();
+        pstmt.close();
+
+        pstmt = c.prepareStatement("SELECT cypher, sql, return_items FROM translation_cache WHERE type = ?");
+        pstmt.setString(1, cache.getTypeTranslate());
+        ResultSet rs = pstmt.executeQuery();
+        while (rs.next()) {
+            Array items = rs.getArray(3);
+            cache.putStored(rs.getString(1), rs.getString(2), (items == null) ? null : (String[]) items.getArray());
+        }
+        rs.close();
+        pstmt.close();
+    }
+
+    /**
+     * Store the translations added to the cache since they were last stored, so later runs do not
+     * translate the queries again.
+     *
+     * @param dbName Database name to store the translations in.
+     * @param cache  Cache holding the translations.
+     * @throws SQLException Error in executing on the database.
+     */
+    public static void storeTranslationCache(String dbName, TranslationCache cache) throws SQLException {
+        Map<String, TranslationResult> added = cache.takeAdded();
+        if (added.isEmpty()) return;
+        if (!DB_OPEN) createConnection(dbName);
+        PreparedStatement pstmt = c.prepareStatement("INSERT INTO translation_cache(cypher, type, version, sql, " +
+                "return_items) VALUES (?, ?, ?, ?, ?) ON CONFLICT (cypher, type) DO UPDATE SET " +
+                "version = EXCLUDED.version, sql = EXCLUDED.sql, return_items = EXCLUDED.return_items");
+        for (Map.Entry<String, TranslationResult> e : added.entrySet()) {
+            String[] items = e.getValue().getReturnItems();
+            pstmt.setString(1, e.getKey());
+            pstmt.setString(2, cache.getTypeTranslate());
+            pstmt.setLong(3, cache.getVersion());
+            pstmt.setString(4, e.getValue().getSql());
+            pstmt.setArray(5, (items == null) ? null : c.createArrayOf("text", items));
+            pstmt.addBatch();
+        }
+        pstmt.executeBatch();
+        pstmt.close();
+    }
+
     /**
      * Method for creating an SQL statement object from an SQL argument, and then executing it.
      *
      * @param query SQL to run against the database.
+     * @return Number of rows affected by the last statement of the query.
      * @throws SQLException Error in query argument, not valid SQL or database error.
      */
-    static void createInsert(String query) throws SQLException {
+    static int createInsert(String query) throws SQLException {
         Statement stmt = c.createStatement();
         long startNanoInsert = System.nanoTime();
-        stmt.executeUpdate(query);
+        int rows = stmt.executeUpdate(query);
         long endNanoInsert = System.nanoTime();
         System.out.println("TIME OF QUERY : " + query.substring(0, Math.min(query.length(), 50)) + " -- " +
                 ((endNanoInsert - startNanoInsert) / 1000000.0) + "ms.");
         stmt.close();
+        return rows;
+    }
+
+    /**
+     * @param table Relation to count.
+     * @return Number of rows in the relation.
+     * @throws SQLException Error with the SQL query being executed.
+     */
+    static long countRows(String table) throws SQLException {
+        Statement stmt = c.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT count(*) FROM " + table + ";");
+        rs.next();
+        long rows = rs.getLong(1);
+        rs.close();
+        stmt.close();
+        return rows;
+    }
+
+    /**
+     * @param query SQL query returning a single column.
+     * @return Value of the first row of the query, or null if it has no rows.
+     * @throws SQLException Error with the SQL query being executed.
+     */
+    static String selectValue(String query) throws SQLException {
+        List<String> values = selectColumn(query);
+        return (values.isEmpty()) ? null : values.get(0);
+    }
+
+    /**
+     * @param query SQL query returning a single column.
+     * @return Value of each row of the query.
+     * @throws SQLException Error with the SQL query being executed.
+     */
+    static List<String> selectColumn(String query) throws SQLException {
+        List<String> values = new ArrayList<>();
+        Statement stmt = c.createStatement();
+        ResultSet rs = stmt.executeQuery(query);
+        while (rs.next()) {
+            values.add(rs.getString(1));
+        }
+        rs.close();
+        stmt.close();
+        return values;
+    }
+
+    /**
+     * Obtain a bulk loader on the current connection.
+     *
+     * @return Loader using the COPY protocol of Postgres.
+     * @throws SQLException Driver does not support COPY.
+     */
+    static CopyLoader getCopyLoader() throws SQLException {
+        return new CopyLoader(c);
     }
 
     /**
@@ -218,16 +457,30 @@ public class DbUtil {
      * @throws SQLException Error with the transaction.
      */
     public static void insertOrDelete(String query, String dbName) throws SQLException {
+        insertOrDelete(query, null, dbName);
+    }
+
+    /**
+     * Method for executing an SQL statement which will either insert or delete records, with JDBC
+     * parameters (?) as a PreparedStatement.
+     *
+     * @param query  SQL statement to execute.
+     * @param params Values of the parameters of the statement, or null if it has none.
+     * @param dbName Database name of the database to execute the statement on.
+     * @throws SQLException Error with the transaction.
+     */
+    public static void insertOrDelete(String query, List<Object> params, String dbName) throws SQLException {
         if (!DB_OPEN) createConnection(dbName);
-        Statement stmt = c.createStatement();
+        Statement stmt = prepare(query, params);
 
         // timing unit for creating statements.
         long startNanoInsert = System.nanoTime();
-        stmt.executeUpdate(query);
+        if (stmt instanceof PreparedStatement) ((PreparedStatement) stmt).executeUpdate();
+        else stmt.executeUpdate(query);
         long endNanoInsert = System.nanoTime();
         lastExecTimeInsert += (endNanoInsert - startNanoInsert);
 
-        stmt.close();
+        release(stmt);
     }
 
     public static String getTestResults(String dbName, String typeTranslate) throws SQLException {
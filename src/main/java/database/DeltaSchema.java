@@ -0,0 +1,268 @@
+package database;
+
+import production.Reagan_Main_V4;
+import schemaConversion.GraphSnapshot;
+import schemaConversion.SchemaTranslate;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Class containing the methods required to apply a newer version of a graph, already converted by
+ * SchemaTranslate, to the relational schema created for an earlier version by InsertSchema. Only the
+ * nodes and groups of relationships that were added, changed or removed since the last conversion are
+ * written, the transitive closure is searched again only from the nodes whose paths may have changed,
+ * only the statistics that changed are written, and only the relations written are analyzed.
+ * <p>
+ * The whole of the newer dump is still converted, and the converted files are still read in full (to
+ * find what has changed, and to gather the statistics of the graph), so that part of the time taken
+ * grows with the size of the graph rather than the size of the change.
+ */
+public class DeltaSchema {
+    // order of the column types, from narrowest to widest.
+    private static final List<String> TYPE_ORDER = Arrays.asList("INT", "BIGINT", "TEXT", "TEXT[]");
+
+    /**
+     * Work out what has changed since the last conversion, and apply only that to the database.
+     *
+     * @param database Name of the database holding the earlier version of the graph.
+     */
+    public static void executeDeltaChange(String database) {
+        GraphSnapshot previous;
+        GraphSnapshot current;
+        try {
+            previous = GraphSnapshot.load(SchemaTranslate.snapshotFile);
+            if (previous == null) {
+                System.err.println("No snapshot of an earlier conversion in the workspace : convert the full " +
+                        "schema with -schema first.");
+                return;
+            }
+            current = GraphSnapshot.build(InsertSchema.getNodeColumns());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        Set<Long> nodeIds = previous.diffNodes(current);
+        Set<GraphSnapshot.EdgeKey> edgeKeys = previous.diffEdges(current);
+        Set<Long> linksFrom = previous.diffLinks(current, edgeKeys);
+        System.out.println("NODES CHANGED : " + nodeIds.size() + ", RELATIONSHIP GROUPS CHANGED : " + edgeKeys.size());
+
+        DbUtil.createConnection(database);
+        try {
+            alterSchema(previous);
+            // the relations written, to be analyzed once the changes are applied.
+            Set<String> written = new LinkedHashSet<>();
+
+            long timeStartNodes = System.nanoTime();
+            applyNodes(nodeIds, written);
+            long timeEndNodes = System.nanoTime();
+            System.out.println("TIME TO UPDATE NODES RELATION : " + ((timeEndNodes - timeStartNodes) / 1000000.0) + "ms.");
+
+            long timeStartEdges = System.nanoTime();
+            applyEdges(edgeKeys, written);
+            long timeEndEdges = System.nanoTime();
+            System.out.println("TIME TO UPDATE EDGES RELATION : " + ((timeEndEdges - timeStartEdges) / 1000000.0) + "ms.");
+
+            // the adjacency lists have been kept up to date by the triggers on the edges relation.
+            if (!edgeKeys.isEmpty()) {
+                written.add("adjList_from");
+                written.add("adjList_to");
+            }
+
+            if (TransitiveClosure.update(Reagan_Main_V4.tClosureDepth, linksFrom)) written.add("tclosure");
+
+            if (!nodeIds.isEmpty() || !edgeKeys.isEmpty()) InsertSchema.updateStatistics();
+
+            // index any relations created for new labels and types of relationship, and bring the
+            // statistics of the relations written up to date.
+            IndexBuilder.buildIndexes(database, written);
+
+            // new nodes created by the tool must not clash with the ids of the nodes from the dump.
+            DbUtil.createInsert("DO $$ BEGIN PERFORM setval('nodes_id_seq', " +
+                    "(SELECT COALESCE(max(id), 0) + 1 FROM nodes), false); END $$;");
+
+            InsertSchema.writeMetaFiles();
+            current.withSchema(InsertSchema.getNodeColumns()).save(SchemaTranslate.snapshotFile);
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+        }
+        DbUtil.closeConnection();
+    }
+
+    /**
+     * Bring the relations up to date with the schema of the newer graph: new columns are added, columns
+     * are widened if the newer graph needs a wider type, and relations are created for new labels and
+     * types of relationship. Columns and relations are never removed or narrowed, so the schema
+     * used from here on (held in SchemaTranslate) is the union of the old and the new.
+     *
+     * @param previous Snapshot of the earlier version of the graph.
+     * @throws SQLException Error altering the relations.
+     * @throws IOException  Error reading the ids of the labels.
+     */
+    private static void alterSchema(GraphSnapshot previous) throws SQLException, IOException {
+        List<String> nodeColumns = alterColumns("nodes", previous.nodeColumns, InsertSchema.getNodeColumns());
+        SchemaTranslate.nodeRelLabels.clear();
+        SchemaTranslate.nodeRelLabels.addAll(nodeColumns);
+
+        // columns altered on the edges relation are altered on each of its partitions as well.
+        List<String> edgeColumns = alterColumns("edges", previous.edgeColumns, SchemaTranslate.edgesRelLabels);
+        SchemaTranslate.edgesRelLabels.clear();
+        SchemaTranslate.edgesRelLabels.addAll(edgeColumns);
+
+        for (String rel : SchemaTranslate.relTypes) {
+            if (!previous.relTypes.contains(rel)) {
+                DbUtil.createInsert(InsertSchema.createEdgePartition("CREATE TABLE IF NOT EXISTS ", rel));
+            }
+        }
+        for (String rel : previous.relTypes) {
+            if (!SchemaTranslate.relTypes.contains(rel)) SchemaTranslate.relTypes.add(rel);
+        }
+
+        // the partitions of each label have the columns of the nodes relation, so only the properties
+        // used by each label are brought up to date.
+        Map<String, String> labelColumns = new HashMap<>(previous.labelColumns);
+        for (Map.Entry<String, String> label : SchemaTranslate.labelMappings.entrySet()) {
+            String oldColumns = previous.labelColumns.get(label.getKey());
+
+            if (oldColumns == null) {
+                DbUtil.createInsert(InsertSchema.createNodePartition("CREATE TABLE IF NOT EXISTS ", label.getKey()));
+                labelColumns.put(label.getKey(), label.getValue());
+            } else {
+                labelColumns.put(label.getKey(), String.join(", ", alterColumns(null,
+                        Arrays.asList(oldColumns.split(", ")), Arrays.asList(label.getValue().split(", ")))));
+            }
+        }
+        SchemaTranslate.labelMappings.clear();
+        SchemaTranslate.labelMappings.putAll(labelColumns);
+
+        // labels already in the database keep their ids.
+        InsertSchema.assignLabelIds(InsertSchema.readLabelIds());
+    }
+
+    /**
+     * Add and widen the columns of a relation.
+     *
+     * @param table      Name of the relation, or null to only work out the columns.
+     * @param oldColumns Columns of the relation as it is, each in the form "name TYPE".
+     * @param newColumns Columns required for the newer graph, each in the form "name TYPE".
+     * @return Columns of the relation once altered.
+     * @throws SQLException Error altering the relation.
+     */
+    private static List<String> alterColumns(String table, List<String> oldColumns, List<String> newColumns)
+            throws SQLException {
+        Map<String, String> types = new LinkedHashMap<>();
+        for (String col : oldColumns) {
+            String name = col.split(" ")[0];
+            types.put(name, col.substring(name.length() + 1));
+        }
+
+        for (String col : newColumns) {
+            String name = col.split(" ")[0];
+            String type = col.substring(name.length() + 1);
+            String oldType = types.get(name);
+
+            if (oldType == null) {
+                if (table != null) DbUtil.createInsert("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS " + col + ";");
+                types.put(name, type);
+            } else if (TYPE_ORDER.indexOf(type) > TYPE_ORDER.indexOf(oldType)) {
+                String using = (type.endsWith("[]")) ? "ARRAY[" + name + "::TEXT]" : name + "::" + type;
+                if (table != null) DbUtil.createInsert("ALTER TABLE " + table + " ALTER COLUMN " + name + " TYPE " +
+                        type + " USING " + using + ";");
+                types.put(name, type);
+            }
+        }
+
+        List<String> columns = new ArrayList<>();
+        for (Map.Entry<String, String> e : types.entrySet()) {
+            columns.add(e.getKey() + " " + e.getValue());
+        }
+        return columns;
+    }
+
+    /**
+     * Remove the nodes that were changed or removed, and load the nodes that were changed or added.
+     *
+     * @param ids     Ids of the nodes added, changed or removed.
+     * @param written Receives the partitions of the nodes relation written.
+     * @throws SQLException Error executing on the database.
+     * @throws IOException  Error reading the converted nodes.
+     */
+    private static void applyNodes(Set<Long> ids, Set<String> written) throws SQLException, IOException {
+        if (ids.isEmpty()) return;
+        CopyLoader loader = DbUtil.getCopyLoader();
+
+        List<Object[]> rows = new ArrayList<>();
+        for (Long id : ids) {
+            rows.add(new Object[]{id});
+        }
+        DbUtil.createInsert("CREATE TEMP TABLE c2s_delta_nodes (id BIGINT);");
+        loader.copyValues("c2s_delta_nodes", Collections.singletonList("id BIGINT"), rows);
+        DbUtil.createInsert("ANALYZE c2s_delta_nodes;");
+
+        String touched = "id IN (SELECT id FROM c2s_delta_nodes)";
+        for (String label : DbUtil.selectColumn("SELECT DISTINCT label FROM nodes WHERE " + touched + ";")) {
+            written.add(getNodePartition(label));
+        }
+        DbUtil.createInsert("DELETE FROM nodes WHERE " + touched + ";");
+
+        List<String> columns = InsertSchema.getNodeLoadColumns();
+        int idColumn = indexOf(columns, "id");
+        int labelColumn = indexOf(columns, "label");
+        loader.copyGraphFile("nodes", columns, SchemaTranslate.nodesFile, values -> {
+            if (!ids.contains(values[idColumn])) return false;
+            written.add(getNodePartition((String) values[labelColumn]));
+            return true;
+        }, InsertSchema.deriveLabels(columns), 0, null);
+        DbUtil.createInsert("DROP TABLE c2s_delta_nodes;");
+    }
+
+    /**
+     * Remove the groups of relationships that were changed or removed, and load the groups that were
+     * changed or added.
+     *
+     * @param keys    Groups of relationships added, changed or removed.
+     * @param written Receives the partitions of the edges relation written.
+     * @throws SQLException Error executing on the database.
+     * @throws IOException  Error reading the converted relationships.
+     */
+    private static void applyEdges(Set<GraphSnapshot.EdgeKey> keys, Set<String> written)
+            throws SQLException, IOException {
+        if (keys.isEmpty()) return;
+        CopyLoader loader = DbUtil.getCopyLoader();
+
+        List<Object[]> rows = new ArrayList<>();
+        for (GraphSnapshot.EdgeKey key : keys) {
+            rows.add(new Object[]{key.idL, key.idR, key.type});
+            written.add((SchemaTranslate.relTypes.contains(key.type)) ? "e$" + key.type : "edges_default");
+        }
+        DbUtil.createInsert("CREATE TEMP TABLE c2s_delta_edges (idl BIGINT, idr BIGINT, type TEXT);");
+        loader.copyValues("c2s_delta_edges", Arrays.asList("idl BIGINT", "idr BIGINT", "type TEXT"), rows);
+        DbUtil.createInsert("ANALYZE c2s_delta_edges;");
+
+        String touched = "(idl, idr, type) IN (SELECT idl, idr, type FROM c2s_delta_edges)";
+        DbUtil.createInsert("DELETE FROM edges WHERE " + touched + ";");
+
+        List<String> columns = SchemaTranslate.edgesRelLabels;
+        int idLColumn = indexOf(columns, "idL");
+        int idRColumn = indexOf(columns, "idR");
+        int typeColumn = indexOf(columns, "type");
+        loader.copyGraphFile("edges", columns, SchemaTranslate.edgesFile, values -> keys.contains(
+                new GraphSnapshot.EdgeKey((Long) values[idLColumn], (Long) values[idRColumn], (String) values[typeColumn])));
+        DbUtil.createInsert("DROP TABLE c2s_delta_edges;");
+    }
+
+    // the partition of the nodes relation holding the nodes with the given labels.
+    private static String getNodePartition(String label) {
+        return (label != null && SchemaTranslate.labelMappings.containsKey(label)) ? label.replace(", ", "_") :
+                "nodes_default";
+    }
+
+    private static int indexOf(List<String> columns, String name) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).split(" ")[0].equals(name)) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,178 @@
+package database;
+
+import production.Reagan_Main_V4;
+import schemaConversion.SchemaTranslate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Builds the indexes that the translated SQL relies on, once the converted schema has been loaded:
+ * a primary key on the id of each label partition of the nodes, a GIN index on the labels of the
+ * nodes, indexes on idl and idr of each e${type} partition of the edges (used by every join from a
+ * node to its relationships), on leftnode
+ * of the adjacency list relations, and on the transitive closure if it has been built. The statistics of
+ * every relation (or of those written by an incremental conversion) are then gathered with ANALYZE so the
+ * planner can make use of them.
+ * <p>
+ * The indexes are built in parallel, each worker on its own connection, and every statement may be
+ * run again without error, so the builder can be used after a resumed or incremental conversion.
+ */
+class IndexBuilder {
+    // most connections opened to the database at once.
+    private static final int MAX_CONNECTIONS = 8;
+
+    /**
+     * Build the indexes of the converted schema, and then analyze it.
+     *
+     * @param database Name of the database holding the converted schema.
+     * @throws SQLException Error building an index.
+     */
+    static void buildIndexes(String database) throws SQLException {
+        buildIndexes(database, null);
+    }
+
+    /**
+     * Build the indexes of the converted schema, and then analyze the given relations.
+     *
+     * @param database Name of the database holding the converted schema.
+     * @param tables   Relations to analyze, or null to analyze every relation.
+     * @throws SQLException Error building an index.
+     */
+    static void buildIndexes(String database, Collection<String> tables) throws SQLException {
+        // the largest relations are listed first, so they are not left until the end.
+        Map<String, List<String>> indexes = new LinkedHashMap<>();
+        // answers the filters on the labels of nodes (labels @> ARRAY[...]).
+        indexes.put("nodes_labels", Collections.singletonList(
+                "CREATE INDEX IF NOT EXISTS nodes_labels ON nodes USING GIN (labels);"));
+        // the partitions are indexed separately, so they can be indexed in parallel.
+        for (String rel : SchemaTranslate.relTypes) {
+            addIndex(indexes, "e$" + rel, "idl");
+            addIndex(indexes, "e$" + rel, "idr");
+        }
+        addIndex(indexes, "edges_default", "idl");
+        addIndex(indexes, "edges_default", "idr");
+        if (Reagan_Main_V4.tClosureDepth > 0) {
+            indexes.put("tclosure_idl_depth", Collections.singletonList(
+                    "CREATE INDEX IF NOT EXISTS tclosure_idl_depth ON tclosure (idl, depth);"));
+            addIndex(indexes, "tclosure", "idr");
+        }
+        // a primary key of a partitioned relation must include the partition key, so each partition of the
+        // nodes has its own (the ids are unique across all of them).
+        for (String label : SchemaTranslate.labelMappings.keySet()) {
+            addPrimaryKey(indexes, label.replace(", ", "_"));
+        }
+        addPrimaryKey(indexes, "nodes_default");
+        // each node appears once in an adjacency list.
+        indexes.put("adjlist_from_leftnode",
+                Collections.singletonList("CREATE UNIQUE INDEX IF NOT EXISTS adjlist_from_leftnode ON adjList_from (leftnode);"));
+        indexes.put("adjlist_to_leftnode",
+                Collections.singletonList("CREATE UNIQUE INDEX IF NOT EXISTS adjlist_to_leftnode ON adjList_to (leftnode);"));
+
+        long timeStart = System.nanoTime();
+        runInParallel(database, "BUILD INDEX", indexes);
+        long timeEnd = System.nanoTime();
+        System.out.println("TIME TO BUILD INDEXES : " + ((timeEnd - timeStart) / 1000000.0) + "ms.");
+
+        Map<String, List<String>> analyze = new LinkedHashMap<>();
+        for (String table : (tables == null) ? getTables() : tables) {
+            analyze.put(table, Collections.singletonList("ANALYZE " + table + ";"));
+        }
+
+        timeStart = System.nanoTime();
+        runInParallel(database, "ANALYZE", analyze);
+        timeEnd = System.nanoTime();
+        System.out.println("TIME TO ANALYZE : " + ((timeEnd - timeStart) / 1000000.0) + "ms.");
+    }
+
+    /**
+     * The primary key is first built as a unique index, and then attached to the relation unless it
+     * already has one.
+     */
+    private static void addPrimaryKey(Map<String, List<String>> indexes, String table) {
+        String name = table.toLowerCase() + "_pkey";
+        indexes.put(name, Arrays.asList(
+                "CREATE UNIQUE INDEX IF NOT EXISTS " + name + " ON " + table + " (id);",
+                "DO $$ BEGIN IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = '" + name + "') THEN " +
+                        "ALTER TABLE " + table + " ADD CONSTRAINT " + name + " PRIMARY KEY USING INDEX " + name +
+                        "; END IF; END $$;"));
+    }
+
+    private static void addIndex(Map<String, List<String>> indexes, String table, String column) {
+        String name = table.toLowerCase() + "_" + column;
+        indexes.put(name, Collections.singletonList(
+                "CREATE INDEX IF NOT EXISTS " + name + " ON " + table + " (" + column + ");"));
+    }
+
+    private static List<String> getTables() {
+        List<String> tables = new ArrayList<>();
+        tables.add("nodes");
+        tables.add("edges");
+        for (String rel : SchemaTranslate.relTypes) {
+            tables.add("e$" + rel);
+        }
+        for (String label : SchemaTranslate.labelMappings.keySet()) {
+            tables.add(label.replace(", ", "_"));
+        }
+        if (Reagan_Main_V4.tClosureDepth > 0) tables.add("tclosure");
+        tables.add("adjList_from");
+        tables.add("adjList_to");
+        return tables;
+    }
+
+    /**
+     * Run each task on one of several connections to the database, printing the time each one takes.
+     *
+     * @param database Name of the database.
+     * @param stage    Description of the tasks, used when printing the times.
+     * @param tasks    SQL statements of each task, by the name of the task.
+     * @throws SQLException Error executing a task (the remaining tasks are not started).
+     */
+    private static void runInParallel(String database, String stage, Map<String, List<String>> tasks)
+            throws SQLException {
+        Queue<Map.Entry<String, List<String>>> queue = new ConcurrentLinkedQueue<>(tasks.entrySet());
+        int workers = Math.max(1, Math.min(tasks.size(),
+                Math.min(MAX_CONNECTIONS, Runtime.getRuntime().availableProcessors())));
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+
+        List<Future<Void>> results = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            results.add(pool.submit(() -> {
+                try (Connection c = DbUtil.openConnection(database); Statement stmt = c.createStatement()) {
+                    Map.Entry<String, List<String>> task;
+                    while ((task = queue.poll()) != null) {
+                        long startNano = System.nanoTime();
+                        for (String sql : task.getValue()) {
+                            stmt.execute(sql);
+                        }
+                        long endNano = System.nanoTime();
+                        System.out.println("TIME TO " + stage + " " + task.getKey() + " : " +
+                                ((endNano - startNano) / 1000000.0) + "ms.");
+                    }
+                } catch (SQLException e) {
+                    // stop the other workers from starting further tasks.
+                    queue.clear();
+                    throw e;
+                }
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) throw (SQLException) e.getCause();
+            throw new SQLException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
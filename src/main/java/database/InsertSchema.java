@@ -1,62 +1,107 @@
 package database;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import production.Reagan_Main_V4;
+import schemaConversion.Checkpoint;
+import schemaConversion.GraphSnapshot;
+import schemaConversion.GraphStatistics;
+import schemaConversion.SchemaCatalog;
 import schemaConversion.SchemaTranslate;
 
 import java.io.*;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Class containing all methods required to store results of schema conversion from Neo4J to
  * a relational backend database.
  */
 public class InsertSchema {
-    private static List<String> fieldsForMetaFile = new ArrayList<>();
-
     /**
-     * Executing the various schema parts one by one to the relational backend.
+     * Executing the various schema parts one by one to the relational backend. Each part is recorded
+     * in the checkpoint once it has completed, so if the conversion fails it can be resumed from the
+     * part that failed.
      *
-     * @param database Name of the database to store the new schema on.
+     * @param database   Name of the database to store the new schema on.
+     * @param checkpoint Progress of the conversion.
      */
-    public static void executeSchemaChange(String database) {
+    public static void executeSchemaChange(String database, Checkpoint checkpoint) {
         DbUtil.createConnection(database);
 
-        String createAdditonalNodeTables = insertEachLabel();
-        String createAdditionalEdgesTables = insertEachRelType();
+        assignLabelIds(Collections.emptyMap());
+        writeMetaFiles();
 
-        long timeStartNodes = System.nanoTime();
-        String sqlInsertNodes = insertNodes();
-        long timeEndNodes = System.nanoTime();
+        try {
+            long timeStartNodes = System.nanoTime();
+            insertNodes(checkpoint);
+            long timeEndNodes = System.nanoTime();
 
-        System.out.println("TIME TO CREATE NODES RELATION : " + ((timeEndNodes - timeStartNodes) / 1000000.0) + "ms.");
+            System.out.println("TIME TO CREATE NODES RELATION : " + ((timeEndNodes - timeStartNodes) / 1000000.0) + "ms.");
 
-        long timeStartEdges = System.nanoTime();
-        String sqlInsertEdges = insertEdges();
-        long timeEndEdges = System.nanoTime();
+            long timeStartEdges = System.nanoTime();
+            insertEdges(checkpoint);
+            long timeEndEdges = System.nanoTime();
 
-        System.out.println("TIME TO CREATE EDGES RELATION : " + ((timeEndEdges - timeStartEdges) / 1000000.0) + "ms.");
+            System.out.println("TIME TO CREATE EDGES RELATION : " + ((timeEndEdges - timeStartEdges) / 1000000.0) + "ms.");
+
+            if (!checkpoint.isDone(Checkpoint.TCLOSURE)) {
+                TransitiveClosure.build(Reagan_Main_V4.tClosureDepth);
+                checkpoint.markDone(Checkpoint.TCLOSURE);
+            }
+
+            if (!checkpoint.isDone(Checkpoint.STATISTICS)) {
+                insertStatistics();
+                checkpoint.markDone(Checkpoint.STATISTICS);
+            }
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+            stopConversion();
+            return;
+        }
 
         String createMappingQuery = "create table query_mapping (cypher TEXT, sql TEXT, object BYTEA, " +
                 "neoT DOUBLE PRECISION, pgT DOUBLE PRECISION);";
 
-        String createAltRep = "CREATE MATERIALIZED VIEW adjList_from AS (select idl as LeftNode, " +
+        String createAltRep = "CREATE TABLE adjList_from AS (select idl as LeftNode, " +
                 "array_agg(idr ORDER BY idr asc) AS RightNode FROM edges e JOIN nodes n on e.idl = n.id GROUP BY idl);";
 
-        String createAltRep2 = "CREATE MATERIALIZED VIEW adjList_to AS (select idr as LeftNode, " +
+        String createAltRep2 = "CREATE TABLE adjList_to AS (select idr as LeftNode, " +
                 "array_agg(idl ORDER BY idl asc) AS RightNode FROM edges e JOIN nodes n on e.idr = n.id GROUP BY idr);";
 
+        // the adjacency lists are kept up to date as relationships are written: once each statement on the
+        // edges relation completes, the lists of the nodes at either end of the rows it changed are rebuilt.
+        String refreshAltRep = "CREATE FUNCTION refresh_adjList(l BIGINT[], r BIGINT[]) RETURNS void AS $$ BEGIN " +
+                "DELETE FROM adjList_from WHERE LeftNode = ANY(l); " +
+                "INSERT INTO adjList_from SELECT idl, array_agg(idr ORDER BY idr asc) FROM edges e " +
+                "JOIN nodes n on e.idl = n.id WHERE idl = ANY(l) GROUP BY idl; " +
+                "DELETE FROM adjList_to WHERE LeftNode = ANY(r); " +
+                "INSERT INTO adjList_to SELECT idr, array_agg(idl ORDER BY idl asc) FROM edges e " +
+                "JOIN nodes n on e.idr = n.id WHERE idr = ANY(r) GROUP BY idr; " +
+                "END; $$ LANGUAGE plpgsql;";
+
+        String maintainAltRep = "CREATE FUNCTION maintain_adjList() RETURNS trigger AS $$ BEGIN " +
+                "IF TG_OP = 'INSERT' THEN " +
+                "PERFORM refresh_adjList(ARRAY(SELECT DISTINCT idl FROM new_edges), " +
+                "ARRAY(SELECT DISTINCT idr FROM new_edges)); " +
+                "ELSIF TG_OP = 'DELETE' THEN " +
+                "PERFORM refresh_adjList(ARRAY(SELECT DISTINCT idl FROM old_edges), " +
+                "ARRAY(SELECT DISTINCT idr FROM old_edges)); " +
+                "ELSE " +
+                "PERFORM refresh_adjList(ARRAY(SELECT idl FROM old_edges UNION SELECT idl FROM new_edges), " +
+                "ARRAY(SELECT idr FROM old_edges UNION SELECT idr FROM new_edges)); " +
+                "END IF; RETURN NULL; END; $$ LANGUAGE plpgsql; " +
+                "CREATE TRIGGER adjList_insert AFTER INSERT ON edges REFERENCING NEW TABLE AS new_edges " +
+                "FOR EACH STATEMENT EXECUTE PROCEDURE maintain_adjList(); " +
+                "CREATE TRIGGER adjList_delete AFTER DELETE ON edges REFERENCING OLD TABLE AS old_edges " +
+                "FOR EACH STATEMENT EXECUTE PROCEDURE maintain_adjList(); " +
+                "CREATE TRIGGER adjList_update AFTER UPDATE ON edges REFERENCING OLD TABLE AS old_edges " +
+                "NEW TABLE AS new_edges FOR EACH STATEMENT EXECUTE PROCEDURE maintain_adjList();";
+
         String forEachFunction = "CREATE FUNCTION doForEachFunc(int[], field TEXT, newV TEXT) RETURNS void AS $$ " +
-                "DECLARE x int; r record; l text; BEGIN if array_length($1, 1) > 0 THEN FOREACH x SLICE 0 " +
-                "IN ARRAY $1 LOOP FOR r IN SELECT label from nodes where id = x LOOP " +
+                "DECLARE x int; BEGIN if array_length($1, 1) > 0 THEN FOREACH x SLICE 0 " +
+                "IN ARRAY $1 LOOP " +
                 "EXECUTE 'UPDATE nodes SET ' || field || '=' || quote_literal(newV) || ' WHERE id = ' || x; " +
-                "l := replace(r.label, ', ', '_'); " +
-                "EXECUTE 'UPDATE ' || l || ' SET ' || field || '=' || quote_literal(newV) || ' WHERE id = ' || x; " +
-                "END LOOP; END LOOP; END IF; END; $$ LANGUAGE plpgsql;";
+                "END LOOP; END IF; END; $$ LANGUAGE plpgsql;";
 
         String cypher_iterate = "CREATE OR REPLACE FUNCTION cypher_iterate(int[]) RETURNS int[] AS $$ \n" +
                 "    DECLARE\n" +
@@ -97,66 +142,58 @@ public class InsertSchema {
         String auto_seq = "CREATE SEQUENCE nodes_id_seq;\n" +
                 "ALTER TABLE nodes ALTER id SET DEFAULT NEXTVAL('nodes_id_seq');";
 
+        String[] additionalQueries = {createMappingQuery, createAltRep, createAltRep2, refreshAltRep, maintainAltRep,
+                forEachFunction, cypher_iterate, unique_array_function, auto_seq};
         try {
-            DbUtil.createInsert(createAdditonalNodeTables);
-            DbUtil.createInsert(createAdditionalEdgesTables);
-            DbUtil.createInsert(sqlInsertNodes);
-            DbUtil.createInsert(sqlInsertEdges);
-            DbUtil.createInsert(createMappingQuery);
-            DbUtil.createInsert(createAltRep);
-            DbUtil.createInsert(createAltRep2);
-            DbUtil.createInsert(forEachFunction);
-            DbUtil.createInsert(cypher_iterate);
-            DbUtil.createInsert(unique_array_function);
-            DbUtil.createInsert(auto_seq);
-        } catch (SQLException e) {
+            for (int i = 0; i < additionalQueries.length; i++) {
+                if (checkpoint.isDone("additional." + i)) continue;
+                DbUtil.createInsert(additionalQueries[i]);
+                checkpoint.markDone("additional." + i);
+            }
+
+            if (!checkpoint.isDone(Checkpoint.INDEXES)) {
+                IndexBuilder.buildIndexes(database);
+                checkpoint.markDone(Checkpoint.INDEXES);
+            }
+        } catch (SQLException | IOException e) {
             e.printStackTrace();
+            stopConversion();
+            return;
         }
 
-        addFieldsToMetaFile();
         DbUtil.closeConnection();
-    }
 
-    private static void addFieldsToMetaFile() {
-        FileOutputStream fos;
+        // store a snapshot of the graph so later versions of it can be converted incrementally.
         try {
-            fos = new FileOutputStream(Reagan_Main_V4.workspaceArea + "/meta.txt");
-
-            //Construct BufferedReader from InputStreamReader
-            BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos));
-            for (String s : fieldsForMetaFile) {
-                bw.write(s);
-                bw.newLine();
-            }
-            bw.close();
-            fos.close();
-
-            fos = new FileOutputStream(Reagan_Main_V4.workspaceArea + "/meta_rels.txt");
-
-            //Construct BufferedReader from InputStreamReader
-            bw = new BufferedWriter(new OutputStreamWriter(fos));
-            for (String s : SchemaTranslate.relTypes) {
-                bw.write(s);
-                bw.newLine();
-            }
-            bw.close();
-            fos.close();
+            GraphSnapshot.build(getNodeColumns()).save(SchemaTranslate.snapshotFile);
+            checkpoint.finish();
         } catch (IOException e) {
             e.printStackTrace();
+            stopConversion();
         }
     }
 
+    private static void stopConversion() {
+        System.err.println("***SCHEMA CONVERSION STOPPED*** : continue from the last checkpoint with -resume.");
+        DbUtil.closeConnection();
+    }
+
     /**
-     * If there is a label which is applied to a node only ever on its own in isolation, then store this as a
-     * relation to remove unnecessary NULLs which slow execution of SQL down.
-     *
-     * @return SQL to execute.
+     * When resuming, a relation may have been created before the failure, so it is only created if it
+     * does not already exist.
      */
-    private static String insertEachLabel() {
-        StringBuilder sb = new StringBuilder();
+    private static String createTable(Checkpoint checkpoint) {
+        return (checkpoint.isResumed()) ? "CREATE TABLE IF NOT EXISTS " : "CREATE TABLE ";
+    }
+
+    /**
+     * Write the meta files describing the converted schema: the label relations and their properties, the
+     * columns of the nodes relation, and the types of relationship. The same schema is saved as the
+     * catalog loaded by the query translator (see SchemaCatalog).
+     */
+    static void writeMetaFiles() {
         FileOutputStream fos;
         FileOutputStream fos2;
-
         try {
             fos = new FileOutputStream(Reagan_Main_V4.workspaceArea + "/meta_tables.txt");
             fos2 = new FileOutputStream(Reagan_Main_V4.workspaceArea + "/meta_labels.txt");
@@ -166,9 +203,6 @@ public class InsertSchema {
 
             for (String label : SchemaTranslate.labelMappings.keySet()) {
                 String tableLabel = label.replace(", ", "_");
-                sb.append("CREATE TABLE ").append(tableLabel).append("(");
-                sb.append(SchemaTranslate.labelMappings.get(label));
-                sb.append("); ");
                 bw2.write("*" + tableLabel + "*");
                 bw2.newLine();
                 for (String y : SchemaTranslate.labelMappings.get(label).replace(" TEXT[]", "")
@@ -184,248 +218,295 @@ public class InsertSchema {
             bw2.close();
             fos.close();
             fos2.close();
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
-        }
 
-        return sb.toString();
-    }
+            fos = new FileOutputStream(Reagan_Main_V4.workspaceArea + "/meta.txt");
 
-    private static String insertEachRelType() {
-        StringBuilder sb = new StringBuilder();
+            //Construct BufferedReader from InputStreamReader
+            bw = new BufferedWriter(new OutputStreamWriter(fos));
+            for (String s : getNodeColumns()) {
+                bw.write(s.split(" ")[0]);
+                bw.newLine();
+            }
+            bw.close();
+            fos.close();
 
-        for (String rel : SchemaTranslate.relTypes) {
-            // specific relationship types will be stored in the following
-            // format, with the name of the relation being e${type of relationship}
-            String relTableName = "e$" + rel;
+            fos = new FileOutputStream(Reagan_Main_V4.workspaceArea + "/meta_rels.txt");
 
-            sb.append("CREATE TABLE ").append(relTableName).append("(");
+            //Construct BufferedReader from InputStreamReader
+            bw = new BufferedWriter(new OutputStreamWriter(fos));
+            for (String s : SchemaTranslate.relTypes) {
+                bw.write(s);
+                bw.newLine();
+            }
+            bw.close();
+            fos.close();
 
-            for (String x : SchemaTranslate.edgesRelLabels) {
-                sb.append(x).append(", ");
+            // the id of each label is its line number (starting at 1).
+            fos = new FileOutputStream(Reagan_Main_V4.workspaceArea + "/meta_label_ids.txt");
+            bw = new BufferedWriter(new OutputStreamWriter(fos));
+            for (String s : SchemaTranslate.labelIds.keySet()) {
+                bw.write(s);
+                bw.newLine();
             }
-            sb.setLength(sb.length() - 2);
-            sb.append("); ");
-        }
+            bw.close();
+            fos.close();
 
-        return sb.toString();
+            SchemaCatalog.build(getNodeColumns()).save(Reagan_Main_V4.workspaceArea);
+            SchemaCatalog.reload();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
-     * For each 'label' relation, insert the appropriate values.
+     * Each combination of labels applied to a node is stored as a partition of the nodes relation, so
+     * queries on a label read only the nodes with that label.
      *
-     * @param sb    Original SQL that will be appended to.
-     * @param label Name of relation.
-     * @param o     JSON object containing data to store.
-     * @return New SQL statement with correct INSERT INTO statement.
+     * @return SQL to execute.
      */
-    private static StringBuilder insertDataForLabels(StringBuilder sb, String label, JsonObject o) {
-        String tableLabel = label.replace(", ", "_");
-        sb.append("INSERT INTO ").append(tableLabel).append("(");
-
-        for (String prop : SchemaTranslate.labelMappings.get(label).split(", ")) {
-            sb.append(prop.replace(" TEXT[]", "").replace(" BIGINT", "").replace(" TEXT", "").replace(" INT", ""))
-                    .append(", ");
-        }
-
-        sb.setLength(sb.length() - 2);
-        sb.append(") VALUES(");
+    private static String insertEachLabel(Checkpoint checkpoint) {
+        StringBuilder sb = new StringBuilder();
 
-        for (String z : SchemaTranslate.labelMappings.get(label).split(", ")) {
-            sb.append(getInsertString(z, o));
+        for (String label : SchemaTranslate.labelMappings.keySet()) {
+            sb.append(createNodePartition(createTable(checkpoint), label));
         }
+        // nodes with a combination of labels not in the dump (created later by the tool) are kept here.
+        sb.append(createTable(checkpoint)).append("nodes_default PARTITION OF nodes DEFAULT; ");
 
-        sb.setLength(sb.length() - 2);
-        sb.append("); ");
-
-        return sb;
+        return sb.toString();
     }
 
     /**
-     * Insert all nodes into relational database.
+     * The nodes with a combination of labels are stored in the partition of the nodes relation named
+     * after the labels (joined by underscores).
      *
-     * @return SQL to execute.
+     * @param create Start of the CREATE TABLE statement.
+     * @param label  Labels of the nodes, separated by commas.
+     * @return SQL creating the partition.
      */
-    private static String insertNodes() {
+    static String createNodePartition(String create, String label) {
+        return create + label.replace(", ", "_") + " PARTITION OF nodes FOR VALUES IN ('" + label + "'); ";
+    }
+
+    private static String insertEachRelType(Checkpoint checkpoint) {
         StringBuilder sb = new StringBuilder();
 
-        sb.append("CREATE TABLE nodes(");
-        for (String x : SchemaTranslate.nodeRelLabels) {
-            if (x.startsWith("mono_time")) x = "mono_time BIGINT";
-            sb.append(x).append(", ");
+        for (String rel : SchemaTranslate.relTypes) {
+            sb.append(createEdgePartition(createTable(checkpoint), rel));
         }
-        sb.setLength(sb.length() - 2);
-        sb.append("); ");
+        // relationships of types not in the dump (created later by the tool) are kept here.
+        sb.append(createTable(checkpoint)).append("edges_default PARTITION OF edges DEFAULT; ");
 
-        sb = insertTableDataNodes(sb);
         return sb.toString();
     }
 
     /**
-     * Data/properties of the nodes to store.
+     * Specific relationship types are stored in the partition of the edges relation named
+     * e${type of relationship}.
      *
-     * @param sb Original SQL to append data t0.
-     * @return New SQL
+     * @param create Start of the CREATE TABLE statement.
+     * @param rel    Type of relationship.
+     * @return SQL creating the partition.
      */
-    private static StringBuilder insertTableDataNodes(StringBuilder sb) {
-        StringBuilder sbLabels = new StringBuilder();
-
-        sb.append("INSERT INTO nodes (");
+    static String createEdgePartition(String create, String rel) {
+        return create + "e$" + rel + " PARTITION OF edges FOR VALUES IN ('" + rel + "'); ";
+    }
 
-        System.out.println(SchemaTranslate.nodeRelLabels);
+    /**
+     * Give each individual label (a node may have several) an integer id, used in the labels column of
+     * the nodes relation. Labels keep any id given to them by an earlier conversion, and new labels are
+     * numbered after them in alphabetical order.
+     *
+     * @param existing Ids given by an earlier conversion, in the order of their ids.
+     */
+    static void assignLabelIds(Map<String, Integer> existing) {
+        Map<String, Integer> ids = new LinkedHashMap<>(existing);
+        SortedSet<String> labels = new TreeSet<>();
+        for (String label : SchemaTranslate.labelMappings.keySet()) {
+            labels.addAll(Arrays.asList(label.split(", ")));
+        }
+        for (String label : labels) {
+            if (!ids.containsKey(label)) ids.put(label, ids.size() + 1);
+        }
+        SchemaTranslate.labelIds.clear();
+        SchemaTranslate.labelIds.putAll(ids);
+    }
 
-        for (String y : SchemaTranslate.nodeRelLabels) {
-            if (y.startsWith("mono_time")) y = "mono_time BIGINT";
-            sb.append(y.split(" ")[0]).append(", ");
-            fieldsForMetaFile.add(y.split(" ")[0]);
+    /**
+     * @return Ids of the labels written by the last conversion, in the order of their ids.
+     * @throws IOException Error reading the meta file.
+     */
+    static Map<String, Integer> readLabelIds() throws IOException {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        File f = new File(Reagan_Main_V4.workspaceArea + "/meta_label_ids.txt");
+        if (!f.exists()) return ids;
+
+        BufferedReader br = new BufferedReader(new FileReader(f));
+        String line;
+        while ((line = br.readLine()) != null) {
+            ids.put(line, ids.size() + 1);
         }
-        sb.setLength(sb.length() - 2);
-        sb.append(")");
+        br.close();
+        return ids;
+    }
 
-        sb.append(" VALUES ");
+    /**
+     * @return Columns loaded into the nodes relation: those of getNodeColumns, followed by the ids of the
+     * labels of the node.
+     */
+    static List<String> getNodeLoadColumns() {
+        List<String> columns = getNodeColumns();
+        columns.add("labels INT[]");
+        return columns;
+    }
 
-        try {
-            FileInputStream fis = new FileInputStream(SchemaTranslate.nodesFile);
-            BufferedReader br = new BufferedReader(new InputStreamReader(fis));
-            String line;
-            while ((line = br.readLine()) != null) {
-                JsonParser parser = new JsonParser();
-                JsonObject o = (JsonObject) parser.parse(line);
-                String label = o.get("label").getAsString();
-                sbLabels = insertDataForLabels(sbLabels, label, o);
-                sb.append("(");
-                for (String z : SchemaTranslate.nodeRelLabels) {
-                    sb.append(getInsertString(z, o));
-                }
-                sb.setLength(sb.length() - 2);
-                sb.append("), ");
+    /**
+     * @param columns Columns loaded into the nodes relation (see getNodeLoadColumns).
+     * @return Fills in the ids of the labels of a node from its label.
+     */
+    static Consumer<Object[]> deriveLabels(List<String> columns) {
+        int labelColumn = columns.indexOf("label TEXT");
+        int labelsColumn = columns.indexOf("labels INT[]");
+        return values -> {
+            if (values[labelColumn] == null) return;
+            String[] labels = values[labelColumn].toString().split(", ");
+            String[] ids = new String[labels.length];
+            for (int i = 0; i < labels.length; i++) {
+                ids[i] = String.valueOf(SchemaTranslate.labelIds.get(labels[i]));
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        sb.setLength(sb.length() - 2);
-        sb.append("; ");
-        sb.append(sbLabels.toString()).append(";");
+            values[labelsColumn] = ids;
+        };
+    }
 
-        return sb;
+    /**
+     * @return Columns of the nodes relation, each in the form "name TYPE".
+     */
+    static List<String> getNodeColumns() {
+        List<String> columns = new ArrayList<>();
+        for (String x : SchemaTranslate.nodeRelLabels) {
+            //OPUS hack
+            if (x.startsWith("mono_time")) x = "mono_time BIGINT";
+            columns.add(x);
+        }
+        return columns;
     }
 
     /**
-     * Insert relationships into SQL.
+     * Insert all nodes into relational database. The nodes relation is partitioned by the labels of the
+     * nodes, so each node is stored once, and is bulk loaded from the converted file.
      *
-     * @return SQL to execute.
+     * @param checkpoint Progress of the conversion.
+     * @throws SQLException Error creating or loading the relations.
+     * @throws IOException  Error reading the converted nodes, or writing the checkpoint.
      */
-    private static String insertEdges() {
-        StringBuilder sb = new StringBuilder();
+    private static void insertNodes(Checkpoint checkpoint) throws SQLException, IOException {
+        List<String> columns = getNodeLoadColumns();
+        System.out.println(SchemaTranslate.nodeRelLabels);
 
-        sb.append("CREATE TABLE edges(");
-        for (String x : SchemaTranslate.edgesRelLabels) {
-            sb.append(x).append(", ");
+        if (!checkpoint.isDone(Checkpoint.NODES)) {
+            DbUtil.createInsert(createTable(checkpoint) + "nodes(" + String.join(", ", columns) +
+                    ") PARTITION BY LIST (label);");
+            DbUtil.createInsert(insertEachLabel(checkpoint));
+            DbUtil.getCopyLoader().copyGraphFile("nodes", columns, SchemaTranslate.nodesFile, null,
+                    deriveLabels(columns), loadedRows("nodes", checkpoint), checkpoint);
+            checkpoint.markDone(Checkpoint.NODES);
         }
-        sb.setLength(sb.length() - 2);
-        sb.append("); ");
-
-        sb = insertTableDataEdges(sb);
-        return sb.toString();
     }
 
+    /**
+     * Each chunk of a COPY is committed as it is sent, so the rows a relation already holds when
+     * resuming are those loaded before the failure.
+     */
+    private static long loadedRows(String table, Checkpoint checkpoint) throws SQLException {
+        if (!checkpoint.isResumed()) return 0;
+        long rows = DbUtil.countRows(table);
+        if (rows > 0) System.out.println("RESUMING " + table + " AFTER " + rows + " ROWS.");
+        return rows;
+    }
 
     /**
-     * Insert properties of the relationships to SQL.
+     * Gather the statistics of the graph, and store them both in the workspace area and in the
+     * graph_statistics relation (kind, label, type, name, value), replacing any gathered before.
      *
-     * @param sb Original SQL to append data to.
-     * @return New SQL with data inserted into it.
+     * @throws SQLException Error creating or loading the relation.
+     * @throws IOException  Error reading the intermediate files, or writing the statistics.
      */
-    private static StringBuilder insertTableDataEdges(StringBuilder sb) {
-        sb.append("INSERT INTO edges (");
-        StringBuilder sbTypes = new StringBuilder();
-
-        String columns = "";
+    static void insertStatistics() throws SQLException, IOException {
+        long timeStart = System.nanoTime();
+        GraphStatistics stats = GraphStatistics.build();
+        stats.save(SchemaTranslate.statisticsFile);
+
+        List<String> columns = Arrays.asList("kind TEXT", "label TEXT", "type TEXT", "name TEXT", "value BIGINT");
+        DbUtil.createInsert("DROP TABLE IF EXISTS graph_statistics;");
+        DbUtil.createInsert("CREATE TABLE graph_statistics(" + String.join(", ", columns) + ");");
+        DbUtil.getCopyLoader().copyValues("graph_statistics", columns, stats.getRows());
+        long timeEnd = System.nanoTime();
+
+        System.out.println("GRAPH STATISTICS : " + stats.getNodeCount("") + " nodes, " + stats.getEdgeCount("") +
+                " relationships, " + stats.getRows().size() + " statistics.");
+        System.out.println("TIME TO GATHER STATISTICS : " + ((timeEnd - timeStart) / 1000000.0) + "ms.");
+        SchemaCatalog.reload();
+    }
 
-        for (String y : SchemaTranslate.edgesRelLabels) {
-            columns = columns + y.split(" ")[0] + ", ";
+    /**
+     * Bring the graph_statistics relation up to date after an incremental conversion. The statistics
+     * are gathered again from the intermediate files, but only those that changed (which are those of
+     * the labels and types of relationship that changed, and of the graph as a whole) are written.
+     *
+     * @throws SQLException Error updating the relation.
+     * @throws IOException  Error reading the intermediate files, or the statistics of the last conversion.
+     */
+    static void updateStatistics() throws SQLException, IOException {
+        GraphStatistics previous = GraphStatistics.load(SchemaTranslate.statisticsFile);
+        if (previous == null) {
+            insertStatistics();
+            return;
         }
-        columns = columns.substring(0, columns.length() - 2);
-        columns = columns + ")";
-        sb.append(columns);
-
-        sb.append(" VALUES ");
-
-        try {
-            FileInputStream fis = new FileInputStream(SchemaTranslate.edgesFile);
-            BufferedReader br = new BufferedReader(new InputStreamReader(fis));
-            String line;
-            while ((line = br.readLine()) != null) {
-                JsonParser parser = new JsonParser();
-                JsonObject o = (JsonObject) parser.parse(line);
-                sb.append("(");
-                String values = "";
-                for (String z : SchemaTranslate.edgesRelLabels) {
-                    String v = getInsertString(z, o);
-                    values = values + v;
-                    sb.append(v);
-                }
-                values = values.substring(0, values.length() - 2);
-                sbTypes = addType(sbTypes, columns, o, values);
-                sb.setLength(sb.length() - 2);
-                sb.append("), ");
 
+        long timeStart = System.nanoTime();
+        GraphStatistics stats = GraphStatistics.build();
+        List<Object[]> changed = stats.getRowsChangedFrom(previous);
+        List<Object[]> removed = stats.getRowsRemovedFrom(previous);
+        if (!changed.isEmpty() || !removed.isEmpty()) {
+            List<String> keyColumns = Arrays.asList("kind TEXT", "label TEXT", "type TEXT", "name TEXT");
+            List<Object[]> keys = new ArrayList<>(removed);
+            for (Object[] row : changed) {
+                keys.add(Arrays.copyOf(row, 4));
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            CopyLoader loader = DbUtil.getCopyLoader();
+            DbUtil.createInsert("CREATE TEMP TABLE c2s_delta_statistics(" + String.join(", ", keyColumns) + ");");
+            loader.copyValues("c2s_delta_statistics", keyColumns, keys);
+            DbUtil.createInsert("DELETE FROM graph_statistics WHERE (kind, label, type, name) IN " +
+                    "(SELECT kind, label, type, name FROM c2s_delta_statistics);");
+            DbUtil.createInsert("DROP TABLE c2s_delta_statistics;");
+            loader.copyValues("graph_statistics", Arrays.asList("kind TEXT", "label TEXT", "type TEXT", "name TEXT",
+                    "value BIGINT"), changed);
         }
+        stats.save(SchemaTranslate.statisticsFile);
+        long timeEnd = System.nanoTime();
 
-        sb.setLength(sb.length() - 2);
-        sb.append(";").append(" ").append(sbTypes.toString());
-
-        return sb;
-    }
-
-    private static StringBuilder addType(StringBuilder sbTypes, String columns, JsonObject o, String values) {
-        sbTypes.append("INSERT INTO ");
-        sbTypes.append("e$").append(o.get("type").getAsString()).append("(").append(columns);
-        sbTypes.append(" VALUES (");
-        sbTypes.append(values);
-        sbTypes.append(");");
-        return sbTypes;
+        System.out.println("GRAPH STATISTICS UPDATED : " + changed.size() + " changed, " + removed.size() +
+                " removed, of " + stats.getRows().size() + " statistics.");
+        System.out.println("TIME TO UPDATE STATISTICS : " + ((timeEnd - timeStart) / 1000000.0) + "ms.");
+        SchemaCatalog.reload();
     }
 
     /**
-     * Get correct insert string based on whether data is INT or TEXT.
+     * Insert relationships into relational database. The edges relation is partitioned by the type of
+     * relationship, so each relationship is stored once, and is bulk loaded from the converted file.
      *
-     * @param z
-     * @param o
-     * @return
+     * @param checkpoint Progress of the conversion.
+     * @throws SQLException Error creating or loading the relations.
+     * @throws IOException  Error reading the converted relationships, or writing the checkpoint.
      */
-    private static String getInsertString(String z, JsonObject o) {
-        String temp;
-        //OPUS hack
-        if (z.startsWith("mono_time")) z = "mono_time BIGINT";
-        try {
-            if (z.endsWith("BIGINT")) {
-                long value = o.get(z.split(" ")[0]).getAsLong();
-                temp = value + ", ";
-            } else if (z.endsWith("INT") && !z.contains("BIGINT")) {
-                int value = o.get(z.split(" ")[0]).getAsInt();
-                temp = value + ", ";
-            } else if (z.endsWith("[]")) {
-                // is text with list property
-                JsonArray value = o.get(z.split(" ")[0]).getAsJsonArray();
-                temp = "ARRAY" + value.toString().replace("\"", "'") + ", ";
-            } else {
-                // is just text
-                String value = o.get(z.split(" ")[0]).getAsString();
-                temp = "'" + value + "', ";
-            }
-        } catch (NumberFormatException nfe) {
-            System.err.println(z);
-            System.err.println(o.toString());
-            temp = "null, ";
-            System.exit(1);
-        } catch (NullPointerException npe) {
-            temp = "null, ";
+    private static void insertEdges(Checkpoint checkpoint) throws SQLException, IOException {
+        if (!checkpoint.isDone(Checkpoint.EDGES)) {
+            DbUtil.createInsert(createTable(checkpoint) + "edges(" +
+                    String.join(", ", SchemaTranslate.edgesRelLabels) + ") PARTITION BY LIST (type);");
+            DbUtil.createInsert(insertEachRelType(checkpoint));
+            DbUtil.getCopyLoader().copyGraphFile("edges", SchemaTranslate.edgesRelLabels, SchemaTranslate.edgesFile,
+                    null, null, loadedRows("edges", checkpoint), checkpoint);
+            checkpoint.markDone(Checkpoint.EDGES);
         }
-        return temp;
     }
 }
@@ -0,0 +1,411 @@
+package database;
+
+import schemaConversion.GraphRecordReader;
+import schemaConversion.SchemaTranslate;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Builds the transitive closure relation tclosure(idl, idr, depth), used by the translations of
+ * variable length relationships (-tc) and of all shortest paths. A row (idl, idr, depth) means there
+ * is a path of exactly depth relationships from idl to idr. Only depths up to a configured maximum are
+ * stored, as the closure of a dense graph grows very quickly with the depth.
+ * <p>
+ * The closure is computed in Java by a breadth first search from every node over the intermediate
+ * edges file. Blocks of source nodes are searched in parallel, and their rows are bulk loaded with
+ * COPY as the blocks complete. After an incremental conversion, only the nodes whose paths may have
+ * changed are searched again (see update).
+ */
+class TransitiveClosure {
+    // number of source nodes searched by a single task.
+    private static final int BLOCK_SOURCES = 64;
+    // number of blocks per core that may be searched ahead of the loader, which bounds the memory used.
+    private static final int WINDOW_PER_CORE = 4;
+    // approximate number of characters of rows sent to the database in one COPY statement.
+    private static final int CHUNK_CHARS = 8 * 1024 * 1024;
+
+    // Neo4J id of each node, by its position in the adjacency lists.
+    private final long[] ids;
+    // the relationships leaving node i lead to targets[offsets[i]] up to targets[offsets[i + 1] - 1].
+    private final int[] offsets;
+    private final int[] targets;
+    // working space of the search, allocated once for each thread.
+    private final ThreadLocal<Scratch> scratch;
+
+    /**
+     * Receives the rows of the closure in the COPY text format.
+     */
+    interface RowConsumer {
+        void accept(StringBuilder rows) throws SQLException;
+    }
+
+    private TransitiveClosure(long[] ids, int[] offsets, int[] targets) {
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(ids.length));
+    }
+
+    /**
+     * (Re)create the tclosure relation for the graph most recently converted by SchemaTranslate, and
+     * report its size and the time taken.
+     *
+     * @param maxDepth Longest path to store, or 0 to not build the relation.
+     * @throws SQLException Error creating or loading the relation.
+     * @throws IOException  Error reading the converted relationships.
+     */
+    static void build(int maxDepth) throws SQLException, IOException {
+        DbUtil.createInsert("DROP TABLE IF EXISTS tclosure;");
+        if (maxDepth < 1) {
+            System.out.println("TCLOSURE NOT BUILT (tClosureDepth is 0).");
+            return;
+        }
+
+        long timeStart = System.nanoTime();
+        TransitiveClosure closure = read(SchemaTranslate.edgesFile);
+
+        List<String> columns = getColumns();
+        DbUtil.createInsert("CREATE TABLE tclosure(" + String.join(", ", columns) + ");");
+        // the depth is recorded, so an incremental conversion knows if the relation can be updated.
+        DbUtil.createInsert("COMMENT ON TABLE tclosure IS '" + maxDepth + "';");
+
+        CopyLoader loader = DbUtil.getCopyLoader();
+        int[] sources = new int[closure.ids.length];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = i;
+        }
+        long[] rowsAtDepth = closure.search(sources, maxDepth, rows -> loader.copyText("tclosure", columns, rows));
+        long timeEnd = System.nanoTime();
+
+        long total = 0;
+        for (int d = 1; d <= maxDepth; d++) {
+            System.out.println("TCLOSURE DEPTH " + d + " : " + rowsAtDepth[d] + " rows.");
+            total += rowsAtDepth[d];
+        }
+        System.out.println("TCLOSURE SIZE : " + total + " rows (" + closure.ids.length + " nodes, " +
+                closure.targets.length + " distinct relationships, depth <= " + maxDepth + ").");
+        System.out.println("TIME TO BUILD TCLOSURE : " + ((timeEnd - timeStart) / 1000000.0) + "ms.");
+    }
+
+    /**
+     * Bring the tclosure relation up to date once relationships have been added or removed by an
+     * incremental conversion. A path of up to maxDepth relationships through a changed relationship
+     * starts at a node that reaches the start of that relationship in fewer than maxDepth steps, so only
+     * the rows of those nodes are removed, and only those nodes are searched again. The relation is
+     * built from scratch if it was built with another depth, or not at all.
+     *
+     * @param maxDepth    Longest path to store, or 0 to not build the relation.
+     * @param changedFrom Ids of the nodes from which relationships were added or removed.
+     * @return True if rows of the relation were written.
+     * @throws SQLException Error updating the relation.
+     * @throws IOException  Error reading the converted relationships.
+     */
+    static boolean update(int maxDepth, Set<Long> changedFrom) throws SQLException, IOException {
+        if (maxDepth < 1 || !String.valueOf(maxDepth).equals(
+                DbUtil.selectValue("SELECT obj_description(to_regclass('tclosure'), 'pg_class');"))) {
+            build(maxDepth);
+            return maxDepth > 0;
+        }
+        if (changedFrom.isEmpty()) return false;
+
+        long timeStart = System.nanoTime();
+        TransitiveClosure closure = read(SchemaTranslate.edgesFile);
+        int[] sources = closure.sourcesReaching(changedFrom, maxDepth - 1);
+
+        // nodes that no longer have any relationships are not in the graph, but may have rows to remove.
+        Set<Long> sourceIds = new HashSet<>(changedFrom);
+        for (int source : sources) {
+            sourceIds.add(closure.ids[source]);
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for (Long id : sourceIds) {
+            rows.add(new Object[]{id});
+        }
+        CopyLoader loader = DbUtil.getCopyLoader();
+        DbUtil.createInsert("CREATE TEMP TABLE c2s_delta_sources (id BIGINT);");
+        loader.copyValues("c2s_delta_sources", Collections.singletonList("id BIGINT"), rows);
+        DbUtil.createInsert("ANALYZE c2s_delta_sources;");
+        DbUtil.createInsert("DELETE FROM tclosure WHERE idl IN (SELECT id FROM c2s_delta_sources);");
+        DbUtil.createInsert("DROP TABLE c2s_delta_sources;");
+
+        List<String> columns = getColumns();
+        long[] rowsAtDepth = closure.search(sources, maxDepth, chunk -> loader.copyText("tclosure", columns, chunk));
+        long timeEnd = System.nanoTime();
+
+        long total = 0;
+        for (int d = 1; d <= maxDepth; d++) {
+            total += rowsAtDepth[d];
+        }
+        System.out.println("TCLOSURE UPDATED : " + sources.length + " of " + closure.ids.length +
+                " nodes searched again, " + total + " rows written.");
+        System.out.println("TIME TO UPDATE TCLOSURE : " + ((timeEnd - timeStart) / 1000000.0) + "ms.");
+        return true;
+    }
+
+    private static List<String> getColumns() {
+        String idType = "INT";
+        for (String col : InsertSchema.getNodeColumns()) {
+            if (col.startsWith("id ")) idType = col.substring(3);
+        }
+        return Arrays.asList("idl " + idType, "idr " + idType, "depth INT");
+    }
+
+    /**
+     * Read the relationships of the graph into adjacency lists, ignoring type, properties and any
+     * repeated relationships between the same nodes.
+     *
+     * @param edgesFile Intermediate edges file.
+     * @return The graph, ready to search.
+     * @throws IOException Error reading the file.
+     */
+    static TransitiveClosure read(String edgesFile) throws IOException {
+        Map<Long, Integer> positions = new HashMap<>();
+        List<Long> ids = new ArrayList<>();
+        int[] from = new int[1024];
+        int[] to = new int[1024];
+        int numEdges = 0;
+
+        GraphRecordReader reader = new GraphRecordReader(edgesFile, Arrays.asList("idL", "idR"));
+        Object[] values = new Object[2];
+        while (reader.next(values)) {
+            if (numEdges == from.length) {
+                from = Arrays.copyOf(from, numEdges * 2);
+                to = Arrays.copyOf(to, numEdges * 2);
+            }
+            from[numEdges] = positionOf(positions, ids, (Long) values[0]);
+            to[numEdges] = positionOf(positions, ids, (Long) values[1]);
+            numEdges++;
+        }
+        reader.close();
+
+        int n = ids.size();
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < numEdges; i++) {
+            offsets[from[i] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] targets = new int[numEdges];
+        int[] fill = Arrays.copyOf(offsets, n);
+        for (int i = 0; i < numEdges; i++) {
+            targets[fill[from[i]]++] = to[i];
+        }
+
+        // remove the repeated relationships from each list.
+        int[] distinctOffsets = new int[n + 1];
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            Arrays.sort(targets, offsets[i], offsets[i + 1]);
+            for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                if (e == offsets[i] || targets[e] != targets[e - 1]) targets[distinct++] = targets[e];
+            }
+            distinctOffsets[i + 1] = distinct;
+        }
+
+        long[] nodeIds = new long[n];
+        for (int i = 0; i < n; i++) {
+            nodeIds[i] = ids.get(i);
+        }
+        return new TransitiveClosure(nodeIds, distinctOffsets, Arrays.copyOf(targets, distinct));
+    }
+
+    private static int positionOf(Map<Long, Integer> positions, List<Long> ids, Long id) {
+        Integer position = positions.get(id);
+        if (position == null) {
+            position = ids.size();
+            positions.put(id, position);
+            ids.add(id);
+        }
+        return position;
+    }
+
+    /**
+     * Find the nodes that reach any of the given nodes in at most maxSteps relationships, by a breadth
+     * first search over the relationships in reverse.
+     *
+     * @param ends     Ids of the nodes to reach.
+     * @param maxSteps Most relationships to follow.
+     * @return Positions of the nodes found (including those of the given nodes in the graph), in order.
+     */
+    int[] sourcesReaching(Set<Long> ends, int maxSteps) {
+        int n = ids.length;
+        // the relationships entering node i come from sources[inOffsets[i]] up to sources[inOffsets[i + 1] - 1].
+        int[] inOffsets = new int[n + 1];
+        for (int target : targets) {
+            inOffsets[target + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            inOffsets[i + 1] += inOffsets[i];
+        }
+        int[] sources = new int[targets.length];
+        int[] fill = Arrays.copyOf(inOffsets, n);
+        for (int node = 0; node < n; node++) {
+            for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+                sources[fill[targets[e]]++] = node;
+            }
+        }
+
+        boolean[] found = new boolean[n];
+        int[] frontier = new int[n];
+        int[] next = new int[n];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            if (ends.contains(ids[i])) {
+                found[i] = true;
+                frontier[size++] = i;
+            }
+        }
+        for (int step = 0; step < maxSteps && size > 0; step++) {
+            int nextSize = 0;
+            for (int f = 0; f < size; f++) {
+                int node = frontier[f];
+                for (int e = inOffsets[node]; e < inOffsets[node + 1]; e++) {
+                    if (found[sources[e]]) continue;
+                    found[sources[e]] = true;
+                    next[nextSize++] = sources[e];
+                }
+            }
+            int[] swap = frontier;
+            frontier = next;
+            next = swap;
+            size = nextSize;
+        }
+
+        int count = 0;
+        for (boolean f : found) {
+            if (f) count++;
+        }
+        int[] reaching = new int[count];
+        for (int i = 0, r = 0; i < n; i++) {
+            if (found[i]) reaching[r++] = i;
+        }
+        return reaching;
+    }
+
+    /**
+     * Search from each of the given nodes in parallel, passing on the rows of the closure in chunks.
+     *
+     * @param sources  Positions of the nodes to search from.
+     * @param maxDepth Longest path to search.
+     * @param out      Receives the rows of the closure.
+     * @return Number of rows at each depth (indexed by depth).
+     * @throws SQLException Error passing on the rows.
+     */
+    long[] search(int[] sources, int maxDepth, RowConsumer out) throws SQLException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(cores);
+        Deque<Future<Block>> inFlight = new ArrayDeque<>();
+        int window = cores * WINDOW_PER_CORE;
+        long[] rowsAtDepth = new long[maxDepth + 1];
+        StringBuilder chunk = new StringBuilder();
+
+        try {
+            for (int first = 0; first < sources.length; first += BLOCK_SOURCES) {
+                if (inFlight.size() == window) addBlock(inFlight.removeFirst().get(), rowsAtDepth, chunk, out);
+                int start = first;
+                inFlight.addLast(pool.submit(() -> searchBlock(sources, start,
+                        Math.min(start + BLOCK_SOURCES, sources.length), maxDepth)));
+            }
+            while (!inFlight.isEmpty()) addBlock(inFlight.removeFirst().get(), rowsAtDepth, chunk, out);
+            if (chunk.length() > 0) out.accept(chunk);
+        } catch (InterruptedException | ExecutionException e) {
+            throw new SQLException("Error searching the graph", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        return rowsAtDepth;
+    }
+
+    private static void addBlock(Block block, long[] rowsAtDepth, StringBuilder chunk, RowConsumer out)
+            throws SQLException {
+        for (int d = 1; d < rowsAtDepth.length; d++) {
+            rowsAtDepth[d] += block.rowsAtDepth[d];
+        }
+        chunk.append(block.rows);
+        if (chunk.length() >= CHUNK_CHARS) {
+            out.accept(chunk);
+            chunk.setLength(0);
+        }
+    }
+
+    /**
+     * Rows of the closure from one block of source nodes.
+     */
+    private static class Block {
+        private final StringBuilder rows = new StringBuilder();
+        private final long[] rowsAtDepth;
+
+        Block(int maxDepth) {
+            this.rowsAtDepth = new long[maxDepth + 1];
+        }
+    }
+
+    /**
+     * Working space of the search for one thread.
+     */
+    private static class Scratch {
+        // seen[i] == level when node i has already been found at the current level of the search.
+        private final int[] seen;
+        private int level = 0;
+        private int[] frontier;
+        private int[] next;
+
+        Scratch(int n) {
+            this.seen = new int[n];
+            this.frontier = new int[n];
+            this.next = new int[n];
+        }
+
+        void nextLevel() {
+            if (++level == Integer.MAX_VALUE) {
+                Arrays.fill(seen, 0);
+                level = 1;
+            }
+        }
+    }
+
+    /**
+     * Breadth first search from each source node in turn. The nodes at each depth are those reachable
+     * in one step from the nodes at the depth before, so a node is found again at a greater depth if
+     * there is also a longer path to it.
+     */
+    private Block searchBlock(int[] sources, int first, int end, int maxDepth) {
+        Block block = new Block(maxDepth);
+        Scratch s = scratch.get();
+
+        for (int i = first; i < end; i++) {
+            int source = sources[i];
+            s.frontier[0] = source;
+            int size = 1;
+
+            for (int depth = 1; depth <= maxDepth && size > 0; depth++) {
+                s.nextLevel();
+                int nextSize = 0;
+                for (int f = 0; f < size; f++) {
+                    int node = s.frontier[f];
+                    for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+                        int target = targets[e];
+                        if (s.seen[target] == s.level) continue;
+                        s.seen[target] = s.level;
+                        s.next[nextSize++] = target;
+                        block.rows.append(ids[source]).append('\t').append(ids[target]).append('\t')
+                                .append(depth).append('\n');
+                    }
+                }
+                block.rowsAtDepth[depth] += nextSize;
+
+                int[] swap = s.frontier;
+                s.frontier = s.next;
+                s.next = swap;
+                size = nextSize;
+            }
+        }
+        return block;
+    }
+}
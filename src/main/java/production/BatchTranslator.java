@@ -0,0 +1,154 @@
+package production;
+
+import database.DbUtil;
+import schemaConversion.SchemaCatalog;
+import translator.TranslationCache;
+import translator.TranslationResult;
+import translator.Translator;
+
+import java.io.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Translates a file of Cypher queries to SQL without running them, so no connection to Neo4J is opened,
+ * and a connection to Postgres only if a database is given to keep the translations in (the
+ * translation_cache relation, as for -translate). The queries are translated in parallel on a pool of
+ * threads sized to the machine, and the SQL is written in the order of the queries file to
+ * {file}_sql.txt, with the queries that could not be translated (and why) written to {file}_failed.txt,
+ * where {file} is the queries file without its extension.
+ */
+class BatchTranslator {
+    /**
+     * Translate every query in the file.
+     *
+     * @param queriesFile   File containing a list of Cypher queries, one per line.
+     * @param typeTranslate Type of translation method to use (-t or -tc).
+     * @param database      Database to load the translations of earlier runs from and store the new
+     *                      translations in, or null to only cache the translations during this run.
+     */
+    static void translateFile(String queriesFile, String typeTranslate, String database) {
+        String sqlFile = outputFile(queriesFile, "_sql.txt");
+        String failFile = outputFile(queriesFile, "_failed.txt");
+        // the queries file is never written over.
+        if (isSameFile(queriesFile, sqlFile) || isSameFile(queriesFile, failFile)) {
+            System.err.println("OUTPUT FILE IS THE QUERIES FILE : " + queriesFile);
+            return;
+        }
+
+        List<String> queries = new ArrayList<>();
+        try {
+            BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(queriesFile)));
+            String line;
+            while ((line = br.readLine()) != null) {
+                // if line is commented out in the read queries file, then do not attempt to convert it.
+                // the values of parameters (:params lines) are not needed to translate the queries.
+                if (!line.startsWith("//") && !line.startsWith(":params") && !line.trim().isEmpty()) queries.add(line);
+            }
+            br.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        // queries repeated in the file (or translated by earlier runs) are only translated once.
+        TranslationCache cache = new TranslationCache(TranslationCache.DEFAULT_CAPACITY,
+                SchemaCatalog.get().getVersion(), typeTranslate);
+        if (database != null) {
+            try {
+                DbUtil.loadTranslationCache(database, cache);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            System.out.println("TRANSLATIONS CACHED : " + cache.size());
+        }
+        Translator translator = new Translator(typeTranslate, cache);
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        List<Object> outcomes;
+
+        long timeStart = System.nanoTime();
+        try {
+            // the parallel stream runs on the pool it is started from, and keeps the order of the queries.
+            outcomes = pool.submit(() -> queries.parallelStream()
+                    .map(q -> translate(translator, q))
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+            return;
+        } finally {
+            pool.shutdownNow();
+        }
+        long timeEnd = System.nanoTime();
+
+        if (database != null) {
+            try {
+                DbUtil.storeTranslationCache(database, cache);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+
+        int failed = 0;
+        try {
+            PrintWriter sqlWriter = new PrintWriter(sqlFile, "UTF-8");
+            PrintWriter failWriter = new PrintWriter(failFile, "UTF-8");
+            for (int i = 0; i < queries.size(); i++) {
+                Object outcome = outcomes.get(i);
+                if (outcome instanceof TranslationResult) {
+                    sqlWriter.println("-- " + queries.get(i));
+                    sqlWriter.println(((TranslationResult) outcome).getSql());
+                } else {
+                    failed++;
+                    failWriter.println(queries.get(i));
+                    failWriter.println("  " + outcome);
+                }
+            }
+            sqlWriter.close();
+            failWriter.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        double ms = (timeEnd - timeStart) / 1000000.0;
+        System.out.println("QUERIES TRANSLATED : " + (queries.size() - failed) + ", FAILED : " + failed);
+        System.out.println("TIME TO TRANSLATE : " + ms + "ms.");
+        if (ms > 0) System.out.println("QUERIES PER SECOND : " + (int) (queries.size() / (ms / 1000.0)));
+    }
+
+    /**
+     * @param queriesFile File containing a list of Cypher queries.
+     * @param suffix      Suffix of the output file, with its extension.
+     * @return The queries file with its extension (if it has one) replaced by the suffix.
+     */
+    static String outputFile(String queriesFile, String suffix) {
+        int name = queriesFile.lastIndexOf(File.separatorChar) + 1;
+        int dot = queriesFile.lastIndexOf('.');
+        // a dot starting the name (a hidden file) does not start an extension.
+        if (dot <= name) dot = queriesFile.length();
+        return queriesFile.substring(0, dot) + suffix;
+    }
+
+    private static boolean isSameFile(String a, String b) {
+        try {
+            return new File(a).getCanonicalPath().equals(new File(b).getCanonicalPath());
+        } catch (IOException e) {
+            return a.equals(b);
+        }
+    }
+
+    /**
+     * @return The translation of the query, or the error translating it.
+     */
+    private static Object translate(Translator translator, String cypher) {
+        try {
+            return translator.translate(cypher);
+        } catch (Exception e) {
+            return e;
+        }
+    }
+}
@@ -17,6 +17,7 @@ class C2SProperties {
     private String nun = null;
     private String npw = null;
     private String lastDB = null;
+    private String tcDepth = null;
 
     /**
      * Get the properties from the properties file.
@@ -30,6 +31,7 @@ class C2SProperties {
      * 5. Neo4J username (usually neo4j)
      * 6. Neo4J password
      * 7. Name of the last database used by the tool (to correct SSL issues with Neo4J).
+     * 8. Maximum depth of the transitive closure relation (optional, 0 to not build it).
      */
     String[] getLocalProperties() {
         try {
@@ -55,9 +57,10 @@ class C2SProperties {
             nun = prop.getProperty("neo4JUser");
             npw = prop.getProperty("neoPW");
             lastDB = prop.getProperty("lastDatabase");
+            tcDepth = prop.getProperty("tClosureDepth");
         } catch (Exception e) {
             e.printStackTrace();
         }
-        return new String[]{cyp, pg, wspace, pun, ppw, nun, npw, lastDB};
+        return new String[]{cyp, pg, wspace, pun, ppw, nun, npw, lastDB, tcDepth};
     }
 }
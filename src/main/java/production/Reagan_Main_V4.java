@@ -1,18 +1,25 @@
 package production;
 
-import clauseObjects.CypForEach;
-import clauseObjects.CypIterate;
-import clauseObjects.DecodedQuery;
 import database.CypherDriver;
 import database.DbUtil;
+import database.DeltaSchema;
 import database.InsertSchema;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
 import org.apache.commons.io.FileUtils;
 import org.neo4j.driver.v1.exceptions.ClientException;
-import query_translation.*;
+import schemaConversion.Checkpoint;
+import schemaConversion.SchemaCatalog;
 import schemaConversion.SchemaTranslate;
-import translator.CypherTokenizer;
+import translator.ParserSnapshot;
+import translator.TranslationCache;
+import translator.TranslationResult;
+import translator.Translator;
 
 import java.io.*;
+import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.util.*;
 
@@ -27,12 +34,6 @@ import java.util.*;
  * Created by Oliver Crawford (ojc37@cam.ac.uk).
  */
 public class Reagan_Main_V4 {
-    // for optimisations based on the return clause of Cypher
-    public static final Map<String, String> mapLabels = new HashMap<>();
-
-    // for use in deleting relationships attached to nodes
-    public static final ArrayList<String> relsList = new ArrayList<>();
-
     // work area for manipulating files if necessary
     // currently used when converting the schema.
     public static String workspaceArea;
@@ -43,6 +44,9 @@ public class Reagan_Main_V4 {
     public static String neoUN;
     public static String neoPW;
 
+    // maximum depth of the transitive closure built when converting the schema (0 to not build it).
+    public static int tClosureDepth = 5;
+
     // used for comparing the outputs from both Neo4J and Postgres
     public static int numResultsNeo = 0;
     public static int numResultsPost = 0;
@@ -50,10 +54,6 @@ public class Reagan_Main_V4 {
     // database name is given to the program as an argument.
     public static String dbName;
 
-    // stores the last decoded query so that the Cypher results module can use it,
-    // without having to rerun computation.
-    private static DecodedQuery lastDQ = null;
-
     // variable set at the command line to turn on/off printing to a file the results of a read query.
     private static boolean printBool = false;
 
@@ -71,7 +71,7 @@ public class Reagan_Main_V4 {
      * Main method when application is launched.
      *
      * @param args arguments to the application.
-     *             <-schema|-translate|-s|-t|-tc> <schemaFile|queriesFile> <databaseName> <-e|-p|-c>
+     *             <-schema|-resume|-delta|-translate|-translate-only|-s|-r|-d|-t|-tc|-to|-toc> <schemaFile|queriesFile> <databaseName> <-e|-p|-c>
      *             View README for additional guidance.
      */
     public static void main(String args[]) {
@@ -87,18 +87,21 @@ public class Reagan_Main_V4 {
         postPW = configProps[4];
         neoUN = configProps[5];
         neoPW = configProps[6];
+        if (configProps[8] != null) tClosureDepth = Integer.parseInt(configProps[8].trim());
 
-        if (args.length < 3 || args.length > 4) {
+        // queries are only translated without a database if no name is given for one.
+        boolean translateOnly = args.length > 0 && Arrays.asList("-translate-only", "-to", "-toc").contains(args[0]);
+        if (args.length < (translateOnly ? 2 : 3) || args.length > 4) {
             // error with the command line arguments
             System.err.println("Incorrect usage of Reagan v4 : " +
-                    "<-schema|-translate|-s|-t|-tc> <schemaFile|queriesFile> <databaseName> <-e|-p|-c>");
+                    "<-schema|-resume|-delta|-translate|-translate-only|-s|-r|-d|-t|-tc|-to|-toc> <schemaFile|queriesFile> <databaseName> <-e|-p|-c>");
             System.exit(1);
         } else {
             // create file objects to store results of the file
             File f_cypher = new File(cypher_results);
             File f_pg = new File(pg_results);
 
-            dbName = args[2];
+            dbName = (args.length > 2) ? args[2] : null;
 
             if (args.length == 4 && args[3].equals("-p")) {
                 System.out.println("WARNING: print to be enabled, are you sure? (Y/N)");
@@ -116,7 +119,7 @@ public class Reagan_Main_V4 {
 
             System.out.println("PRINT TO FILE : " + ((printBool) ? "enabled" : "disabled"));
             System.out.println("EMAILING  : " + ((emailUser) ? "enabled" : "disabled"));
-            System.out.println("DATABASE RUNNING : " + dbName);
+            System.out.println("DATABASE RUNNING : " + ((dbName == null) ? "none" : dbName));
 
             switch (args[0]) {
                 case "-schema":
@@ -124,10 +127,32 @@ public class Reagan_Main_V4 {
                     // perform the schema translation
                     convertNeo4JToSQL(args[1]);
                     break;
+                case "-resume":
+                case "-r":
+                    // continue a schema translation that failed part way through
+                    resumeNeo4JToSQL(args[1]);
+                    break;
+                case "-delta":
+                case "-d":
+                    // apply only the changes in a newer dump to a schema translated earlier
+                    convertNeo4JToSQLDelta(args[1]);
+                    break;
+                case "-translate-only":
+                case "-to":
+                case "-toc":
+                    // translate the queries without running them on either database.
+                    SchemaCatalog.reload();
+                    ParserSnapshot.load(workspaceArea);
+                    BatchTranslator.translateFile(args[1], args[0].equals("-toc") ? "-tc" : "-t", dbName);
+                    ParserSnapshot.save(workspaceArea);
+                    break;
                 case "-translate":
                 case "-t":
                 case "-tc":
-                    getLabelMapping();
+                    // read the schema the queries are translated against, and the parser state saved by
+                    // earlier runs.
+                    SchemaCatalog.reload();
+                    ParserSnapshot.load(workspaceArea);
 
                     // warm up the Cypher caches if the server has just been turned on.
                     // https://neo4j.com/developer/kb/warm-the-cache-to-improve-performance-from-cold-start/
@@ -145,6 +170,16 @@ public class Reagan_Main_V4 {
                     // clear the database test results in preparation for new test data.
                     DbUtil.clearTestContents(dbName);
 
+                    // load the translations made by earlier runs against the same schema.
+                    TranslationCache cache = new TranslationCache(TranslationCache.DEFAULT_CAPACITY,
+                            SchemaCatalog.get().getVersion(), args[0].equals("-tc") ? "-tc" : "-t");
+                    try {
+                        DbUtil.loadTranslationCache(dbName, cache);
+                    } catch (SQLException e) {
+                        e.printStackTrace();
+                    }
+                    System.out.println("TRANSLATIONS CACHED : " + cache.size());
+
                     if (!printBool && !updateInsDel) {
                         // translate Cypher queries to SQL.
                         // first, reorder the queries file to randomise order in which queries are executed
@@ -154,7 +189,7 @@ public class Reagan_Main_V4 {
                         for (int i = -2; i <= 5; i++) {
                             if (i < 1) System.out.println("Warming up - iterations left : " + (i * -1));
                             translateCypherToSQL(args[1].replace(".txt", "_temp.txt"), f_cypher, f_pg,
-                                    cypher_results, pg_results, i, args[0]);
+                                    cypher_results, pg_results, i, cache);
                         }
 
                         // send the results via email
@@ -172,14 +207,15 @@ public class Reagan_Main_V4 {
                         // perform 3 dry runs, then record the times of 5 executions
                         for (int i = -2; i <= 5; i++) {
                             if (i < 1) System.out.println("Warming up - iterations left : " + (i * -1));
-                            translateCypherToSQL(args[1], f_cypher, f_pg, cypher_results, pg_results, i, args[0]);
+                            translateCypherToSQL(args[1], f_cypher, f_pg, cypher_results, pg_results, i, cache);
                         }
                     }
+                    ParserSnapshot.save(workspaceArea);
                     break;
                 default:
                     // error with the command line arguments
                     System.err.println("Incorrect usage of Reagan v4 : " +
-                            "<-schema|-translate|-s|-t|-tc> <schemaFile|queriesFile> <databaseName> <-e|-p|-c>");
+                            "<-schema|-resume|-delta|-translate|-translate-only|-s|-r|-d|-t|-tc|-to|-toc> <schemaFile|queriesFile> <databaseName> <-e|-p|-c>");
                     System.exit(1);
             }
         }
@@ -214,123 +250,94 @@ public class Reagan_Main_V4 {
      * @param dumpFile Generated BY THE USER from Neo4J shell (see README)
      */
     private static void convertNeo4JToSQL(String dumpFile) {
-        System.out.println("\n***CONVERTING THE SCHEMA***\n");
-        SchemaTranslate.translate(dumpFile);
-        System.out.println("\n***INSERTING THE SCHEMA TO THE DATABASE***\n");
-        InsertSchema.executeSchemaChange(dbName);
+        Checkpoint checkpoint;
+        try {
+            checkpoint = Checkpoint.start(dumpFile, dbName);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        convertNeo4JToSQL(dumpFile, checkpoint);
     }
 
     /**
-     * Read local meta files created from the schema translation, and obtain the information stored
-     * within them to help the query translation tool. This includes reading all the possible values
-     * for labels of the nodes (used by the output module), and all the possible types of
-     * relationships (used when deleting nodes from the relational schema).
+     * Continue converting a Neo4J schema from the last checkpoint recorded in the workspace area.
+     *
+     * @param dumpFile The same dump the conversion was started with.
      */
-    private static void getLabelMapping() {
-        // open file and read in property keys, removing duplicates as they are of no use.
-        FileInputStream fis;
+    private static void resumeNeo4JToSQL(String dumpFile) {
+        Checkpoint checkpoint;
         try {
-            fis = new FileInputStream(Reagan_Main_V4.workspaceArea + "/meta_labels.txt");
-            BufferedReader br = new BufferedReader(new InputStreamReader(fis));
-            String line;
-            String currentLabelType = null;
-
-            // ArrayList to keep track of duplicates.
-            ArrayList<String> dupProps = new ArrayList<>();
-
-            while ((line = br.readLine()) != null) {
-                if (line.startsWith("*")) {
-                    // all the following lines in the file are properties belonging to this label type.
-                    currentLabelType = line.substring(1, line.length() - 1);
-                } else {
-                    if (mapLabels.containsKey(line)) {
-                        dupProps.add(line);
-                    } else {
-                        mapLabels.put(line, currentLabelType);
-                    }
-                }
-            }
-
-            for (String s : dupProps) {
-                if (mapLabels.containsKey(s))
-                    mapLabels.remove(s);
-            }
-
-            br.close();
-            fis.close();
-
-            fis = new FileInputStream(Reagan_Main_V4.workspaceArea + "/meta_rels.txt");
-            br = new BufferedReader(new InputStreamReader(fis));
-            while ((line = br.readLine()) != null) relsList.add(line);
-            br.close();
-            fis.close();
+            checkpoint = Checkpoint.resume(dumpFile, dbName);
         } catch (IOException e) {
             e.printStackTrace();
+            return;
+        }
+        if (checkpoint == null) {
+            System.err.println("No schema conversion to resume : convert the schema with -schema.");
+            return;
         }
+        convertNeo4JToSQL(dumpFile, checkpoint);
+    }
+
+    private static void convertNeo4JToSQL(String dumpFile, Checkpoint checkpoint) {
+        System.out.println("\n***CONVERTING THE SCHEMA***\n");
+        if (!SchemaTranslate.translate(dumpFile, checkpoint)) return;
+        System.out.println("\n***INSERTING THE SCHEMA TO THE DATABASE***\n");
+        InsertSchema.executeSchemaChange(dbName, checkpoint);
+    }
+
+    /**
+     * Convert a newer version of a Neo4J graph, applying only the nodes and relationships that have
+     * changed to the relational schema created by an earlier conversion.
+     *
+     * @param dumpFile Newer dump generated BY THE USER from Neo4J shell (see README)
+     */
+    private static void convertNeo4JToSQLDelta(String dumpFile) {
+        System.out.println("\n***CONVERTING THE SCHEMA***\n");
+        if (!SchemaTranslate.translate(dumpFile)) return;
+        System.out.println("\n***APPLYING THE CHANGES TO THE DATABASE***\n");
+        DeltaSchema.executeDeltaChange(dbName);
     }
 
     /**
-     * Translating the queries in the file to SQL and executing them.
+     * Translating the queries in the file to SQL and executing them. A line of the form
+     * :params {"name": value, ...} gives the values of the parameters ($name) of the queries after it.
      *
      * @param translateFile  String file location containing a list of Cypher queries.
      * @param f_cypher       File object - the output from the Neo4J Java driver will be sent here.
      * @param f_pg           File object - the output from the JDBC driver will be sent here.
      * @param cypher_results String file location of f_cypher.
      * @param pg_results     String file location of f_pg.
-     * @param typeTranslate  In version three, stick with this being -t2, as -t will attempt to use the
-     *                       transitive closure relation which probably does not exist in the database.
+     * @param cache          Translations already made, for the type of translation method to use (-t or -tc).
      */
     private static void translateCypherToSQL(String translateFile, File f_cypher, File f_pg, String cypher_results,
-                                             String pg_results, int repeatCount, String typeTranslate) {
+                                             String pg_results, int repeatCount, TranslationCache cache) {
+        Translator translator = new Translator(cache.getTypeTranslate(), cache);
         try {
             FileInputStream fis = new FileInputStream(translateFile);
             BufferedReader br = new BufferedReader(new InputStreamReader(fis));
             String line;
             String sql;
+            Map<String, Object> params = new HashMap<>();
 
             while ((line = br.readLine()) != null) {
                 // if line is commented out in the read queries file, then do not attempt to convert it.
-                if (!line.startsWith("//") && !line.isEmpty() && !denyList.contains(line)) {
-                    Object[] mapping = {null, null};
-                    String[] returnItemsForCypher;
-
-                    if (mapping[0] != null) {
-                        sql = (String) mapping[0];
-                        returnItemsForCypher = (String[]) mapping[1];
-                    } else {
-                        if (line.toLowerCase().contains(" foreach ")) {
-                            sql = convertCypherForEach(line, typeTranslate);
-                        } else if (line.toLowerCase().contains(" with ")) {
-                            sql = convertCypherWith(line, typeTranslate);
-                        } else if (line.toLowerCase().contains("allshortestpaths")) {
-                            sql = convertCypherASP(line);
-                        } else if (line.toLowerCase().contains("shortestpath")) {
-                            sql = convertCypherShortPath(line);
-                        } else if (line.toLowerCase().contains("iterate")) {
-                            sql = convertIterateQuery(line, typeTranslate);
-                        } else {
-                            sql = convertCypherToSQL(line, typeTranslate).getSqlEquiv();
-                        }
-
-                        returnItemsForCypher = null;
-
-                        if (sql != null && !sql.startsWith("INSERT") && !sql.startsWith("DELETE")
-                                && !line.toLowerCase().contains("iterate")) {
-                            returnItemsForCypher = lastDQ.getCypherAdditionalInfo().getReturnClause()
-                                    .replace(" ", "").split(",");
-                        }
-                    }
+                if (line.startsWith(":params")) {
+                    params = parseParameters(line.substring(":params".length()));
+                } else if (!line.startsWith("//") && !line.isEmpty() && !denyList.contains(line)) {
+                    // queries translated before (by this or an earlier run) are taken from the cache.
+                    TranslationResult translation = translator.translate(line).bind(params);
+                    sql = translation.getSql();
+                    String[] returnItemsForCypher = translation.getReturnItems();
 
-                    boolean sqlExecSuccess;
-                    if (sql != null) {
-                        sqlExecSuccess = executeSQL(sql, pg_results,
-                                (printBool || line.toLowerCase().contains("count")));
-                    } else throw new Exception("Conversion of SQL failed");
+                    boolean sqlExecSuccess = executeSQL(translation, pg_results,
+                            (printBool || line.toLowerCase().contains("count")));
 
                     if (!sqlExecSuccess) denyList.add(line);
 
                     if (!line.toLowerCase().contains("iterate"))
-                        CypherDriver.run(line, cypher_results, returnItemsForCypher, printBool);
+                        CypherDriver.run(line, params, cypher_results, returnItemsForCypher, printBool);
 
 
                     // validate the results
@@ -358,11 +365,44 @@ public class Reagan_Main_V4 {
             }
             br.close();
             fis.close();
+            DbUtil.storeTranslationCache(dbName, cache);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * @param json Values of the parameters of the queries, as a JSON object.
+     * @return Value of each parameter by name: whole numbers are read as longs, and other numbers (or
+     * numbers too large for a long) as doubles.
+     */
+    static Map<String, Object> parseParameters(String json) {
+        Map<String, Object> params = new HashMap<>();
+        JsonObject obj = new JsonParser().parse(json.trim()).getAsJsonObject();
+        for (Map.Entry<String, JsonElement> e : obj.entrySet()) {
+            Object value = null;
+            if (e.getValue().isJsonPrimitive()) {
+                JsonPrimitive p = e.getValue().getAsJsonPrimitive();
+                if (p.isBoolean()) {
+                    value = p.getAsBoolean();
+                } else if (p.isNumber()) {
+                    BigDecimal n = p.getAsBigDecimal();
+                    try {
+                        value = n.longValueExact();
+                    } catch (ArithmeticException ex) {
+                        value = n.doubleValue();
+                    }
+                } else {
+                    value = p.getAsString();
+                }
+            } else if (!e.getValue().isJsonNull()) {
+                value = e.getValue().toString();
+            }
+            params.put(e.getKey(), value);
+        }
+        return params;
+    }
+
     private static void translationFail(String line, String sql, File f_cypher, File f_pg) throws IOException {
         System.err.println("\n**********Statements do not appear to " +
                 "be logically correct - please check**********\n"
@@ -371,47 +411,6 @@ public class Reagan_Main_V4 {
         System.exit(1);
     }
 
-    /**
-     * Class to deal with special new query type which is not currently in Cypher.
-     * Details in documentation and dissertation (this is an extension to the main tool).
-     * More information to come.
-     *
-     * @param line (Cypher like) input.
-     *             [NOTE THESE QUERIES CANNOT RUN ON CYPHER, THEY DO NOT EXIST IN THE GRAMMAR!]
-     * @return SQL translation
-     */
-    private static String convertIterateQuery(String line, String typeTranslate) {
-        line = line.toLowerCase();
-        CypIterate cypIter = new CypIterate(line);
-        return SQLIterate.translate(cypIter, typeTranslate);
-    }
-
-    private static String convertCypherShortPath(String line) throws Exception {
-        line = line.toLowerCase();
-        int returnIndex = line.indexOf("return");
-        int whereIndex = line.indexOf("where");
-        String whereClause = null;
-        if (whereIndex != -1) {
-            whereClause = line.substring(whereIndex, returnIndex - 1);
-        }
-        int indexToUse = (whereIndex == -1) ? returnIndex : whereIndex;
-        String path = line.substring(line.indexOf("(") + 1, indexToUse - 2);
-        String returnClause = line.substring(line.indexOf("return"));
-        String cypherPathQuery = "MATCH " + path + ((whereIndex != -1) ? whereClause : "") + " " + returnClause;
-        DecodedQuery dQMainPath = CypherTokenizer.decode(cypherPathQuery, false);
-        lastDQ = dQMainPath;
-        return SQLShortestPath.translate(dQMainPath).toString();
-    }
-
-    private static String convertCypherASP(String line) throws Exception {
-        String path = line.substring(line.indexOf("(") + 1, line.indexOf("RETURN") - 2);
-        String returnClause = line.substring(line.indexOf("RETURN"));
-        String cypherPathQuery = "MATCH " + path + " " + returnClause;
-        DecodedQuery dQMainPath = CypherTokenizer.decode(cypherPathQuery, false);
-        lastDQ = dQMainPath;
-        return SQLAllShortestPaths.translate(dQMainPath).toString();
-    }
-
     /**
      * Print summary of the translation.
      *
@@ -433,22 +432,6 @@ public class Reagan_Main_V4 {
                 " ms.\n**********\n");
     }
 
-    /**
-     * Converting correctly Cypher queries with the keyword FOREACH.
-     *
-     * @param line          Cypher input.
-     * @param typeTranslate Choose type of translation method for the tool to use. -t is standard, -t2
-     *                      uses different methods (view README for more information).
-     * @return SQL equivalent of input.
-     */
-    private static String convertCypherForEach(String line, String typeTranslate) {
-        String changeLine = line.toLowerCase().replace("with", "return");
-        String[] feParts = changeLine.toLowerCase().split(" foreach ");
-        DecodedQuery dQ = convertCypherToSQL(feParts[0].trim() + ";", typeTranslate);
-        CypForEach cypForEach = new CypForEach(feParts[1].trim());
-        return SQLForEach.genQuery(dQ.getSqlEquiv(), cypForEach);
-    }
-
     /**
      * Reset measured performance times.
      */
@@ -459,50 +442,33 @@ public class Reagan_Main_V4 {
         DbUtil.lastExecTimeInsert = 0;
     }
 
-    /**
-     * Converting correctly Cypher queries with the keyword WITH.
-     *
-     * @param line          Cypher input.
-     * @param typeTranslate
-     * @return SQL equivalent.
-     */
-    private static String convertCypherWith(String line, String typeTranslate) {
-        String changeLine = line.toLowerCase().replace("with", "return");
-        String[] withParts = changeLine.toLowerCase().split("where");
-        DecodedQuery dQ = convertCypherToSQL(withParts[0] + ";", typeTranslate);
-
-        String withTemp = null;
-        if (dQ != null) {
-            withTemp = SQLWith.genTemp(dQ.getSqlEquiv());
-        }
-
-        String sqlSelect = SQLWith.createSelect(withParts[1].trim(), dQ);
-        return withTemp + " " + sqlSelect;
-    }
-
     /**
      * Execute the SQL command on the database.
      * If query is a concatenation of multiple queries, then perform then
      * one by one in order that was passed to the method.
      * Type of method call depends on whether or not query begins with CREATE
-     * or not.
+     * or not. If the translation has parameters, each statement is run as a
+     * PreparedStatement with its own parameters.
      *
-     * @param sql         SQL to execute.
+     * @param translation Translation of the query to execute.
      * @param pg_results  File to store the results.
      * @param printOutput Write the results to a file for viewing.
      */
-    private static boolean executeSQL(String sql, String pg_results, boolean printOutput) {
+    private static boolean executeSQL(TranslationResult translation, String pg_results, boolean printOutput) {
+        String sql = translation.getSql();
         try {
-            String indivSQL[] = sql.split(";");
-            for (String q : indivSQL) {
+            for (TranslationResult.Statement statement : translation.getStatements()) {
+                String q = statement.getSql();
+                List<Object> qParams = statement.getParameters();
+
                 if (q.trim().startsWith("CREATE")) {
                     DbUtil.executeCreateView(q + ";", dbName);
                 } else if (q.trim().startsWith("INSERT")) {
-                    DbUtil.insertOrDelete(q + ";", dbName);
+                    DbUtil.insertOrDelete(q + ";", qParams, dbName);
                 } else if (q.trim().startsWith("DELETE")) {
-                    DbUtil.insertOrDelete(q + ";", dbName);
+                    DbUtil.insertOrDelete(q + ";", qParams, dbName);
                 } else
-                    DbUtil.select(q + ";", dbName, pg_results, printOutput);
+                    DbUtil.select(q + ";", qParams, dbName, pg_results, printOutput);
             }
         } catch (SQLException e) {
             System.out.println("FAILED IN executeSQL -- " + sql);
@@ -512,59 +478,4 @@ public class Reagan_Main_V4 {
         }
         return true;
     }
-
-    /**
-     * Convert Cypher queries to SQL
-     *
-     * @param cypher        Original Cypher query to translate.
-     * @param typeTranslate
-     * @return SQL that maps to the Cypher input.
-     */
-    public static DecodedQuery convertCypherToSQL(String cypher, String typeTranslate) {
-        try {
-            if (cypher.toLowerCase().contains(" union all ")) {
-                String[] queries = cypher.toLowerCase().split(" union all ");
-                ArrayList<String> unionSQL = new ArrayList<>();
-                DecodedQuery dQ = null;
-                for (String s : queries) {
-                    dQ = CypherTokenizer.decode(s, false);
-                    unionSQL.add(SQLTranslate.translateRead(dQ, typeTranslate));
-                }
-                dQ.setSqlEquiv(SQLUnion.genUnion(unionSQL, "UNION ALL"));
-                lastDQ = dQ;
-                return dQ;
-            } else if (cypher.toLowerCase().contains(" union ")) {
-                String[] queries = cypher.toLowerCase().split(" union ");
-                ArrayList<String> unionSQL = new ArrayList<>();
-                DecodedQuery dQ = null;
-                for (String s : queries) {
-                    dQ = CypherTokenizer.decode(s, false);
-                    unionSQL.add(SQLTranslate.translateRead(dQ, typeTranslate));
-                }
-                dQ.setSqlEquiv(SQLUnion.genUnion(unionSQL, "UNION"));
-                lastDQ = dQ;
-                return dQ;
-            } else {
-                DecodedQuery dQ = CypherTokenizer.decode(cypher, false);
-
-                if (dQ.getRc() != null) {
-                    // the translation is for a read query.
-                    dQ.setSqlEquiv(SQLTranslate.translateRead(dQ, typeTranslate));
-                } else {
-                    if (dQ.getCypherAdditionalInfo().hasDelete()) {
-                        // the translation is a delete query.
-                        dQ.setSqlEquiv(SQLTranslate.translateDelete(dQ));
-                    } else {
-                        // the translation is an insert query.
-                        dQ.setSqlEquiv(SQLTranslate.translateInsert(dQ));
-                    }
-                }
-                lastDQ = dQ;
-                return dQ;
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
-    }
 }
\ No newline at end of file
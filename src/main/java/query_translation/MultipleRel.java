@@ -142,8 +142,7 @@ class MultipleRel {
                 sql.append(" WHERE ");
                 includesWhere = true;
             }
-            sql.append("n1.label LIKE ");
-            sql.append(TranslateUtils.genLabelLike(leftNode, "n1")).append(" AND ");
+            sql.append(TranslateUtils.genLabelFilter(leftNode, "n1")).append(" AND ");
         }
 
         if (rightNode.getType() != null && nodeLabel2.equals("nodes")) {
@@ -151,8 +150,7 @@ class MultipleRel {
                 sql.append(" WHERE ");
                 includesWhere = true;
             }
-            sql.append("n2.label LIKE ");
-            sql.append(TranslateUtils.genLabelLike(rightNode, "n2")).append(" AND ");
+            sql.append(TranslateUtils.genLabelFilter(rightNode, "n2")).append(" AND ");
         }
 
         if (o != null) {
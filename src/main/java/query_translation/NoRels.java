@@ -1,7 +1,7 @@
 package query_translation;
 
 import clauseObjects.*;
-import production.Reagan_Main_V4;
+import schemaConversion.SchemaCatalog;
 
 import java.util.Map;
 
@@ -10,15 +10,15 @@ import java.util.Map;
  * i.e. MATCH (a:Director) return collect(a);
  */
 class NoRels {
-    private static boolean useOptimalTable = false;
-
     static StringBuilder translate(StringBuilder sql, DecodedQuery decodedQuery) {
-        useOptimalTable = false;
+        // the label filter is not needed when the nodes are read from the relation of their label.
+        String table = TranslateUtils.getLabelType(decodedQuery.getMc().getNodes().get(0).getType());
+        boolean useOptimalTable = !table.equals("nodes");
         sql = getSelect(decodedQuery.getRc(), decodedQuery.getMc(), sql,
                 decodedQuery.getCypherAdditionalInfo().hasDistinct(),
                 decodedQuery.getCypherAdditionalInfo().getAliasMap());
-        sql = getFrom(sql, decodedQuery.getMc(), decodedQuery.getRc());
-        sql = getWhere(sql, decodedQuery.getRc(), decodedQuery.getMc(), decodedQuery.getWc());
+        sql = getFrom(sql, table, decodedQuery.getRc());
+        sql = getWhere(sql, decodedQuery.getRc(), decodedQuery.getMc(), decodedQuery.getWc(), useOptimalTable);
         return sql;
     }
 
@@ -65,21 +65,18 @@ class NoRels {
     }
 
 
-    private static StringBuilder getFrom(StringBuilder sql, MatchClause mc, ReturnClause rc) {
+    private static StringBuilder getFrom(StringBuilder sql, String table, ReturnClause rc) {
         sql.append("FROM ");
-        String table = TranslateUtils.getLabelType(mc.getNodes().get(0).getType());
-        if (!table.equals("nodes")) {
-            useOptimalTable = true;
-        } else {
+        if (table.equals("nodes")) {
             boolean possibleOpti = true;
             String possTable = "nodes";
 
             for (CypReturn cR : rc.getItems()) {
-                if (!Reagan_Main_V4.mapLabels.containsKey(cR.getField())) {
+                String newTable = SchemaCatalog.get().getPropertyTable(cR.getField());
+                if (newTable == null) {
                     possibleOpti = false;
                     break;
                 } else {
-                    String newTable = Reagan_Main_V4.mapLabels.get(cR.getField());
                     if (!possTable.equals(newTable) && !possTable.equals("nodes")) {
                         possibleOpti = false;
                         break;
@@ -97,13 +94,13 @@ class NoRels {
     }
 
     private static StringBuilder getWhere(StringBuilder sql, ReturnClause returnC,
-                                          MatchClause matchC, WhereClause wc) {
+                                          MatchClause matchC, WhereClause wc, boolean useOptimalTable) {
         boolean hasWhere = false;
 
         for (CypReturn cR : returnC.getItems()) {
             if (cR.getNodeID() == null && cR.getField().equals("*")) {
                 CypNode cN = matchC.getNodes().get(0);
-                sql.append(" WHERE n01.label LIKE ").append(TranslateUtils.genLabelLike(cN, "n01"));
+                sql.append(" WHERE ").append(TranslateUtils.genLabelFilter(cN, "n01"));
                 if (cN.getProps() != null) {
                     sql.append(" AND ");
                     sql = TranslateUtils.getWholeWhereClause(sql, cN, wc);
@@ -127,13 +124,12 @@ class NoRels {
 
                     if (cN.getType() != null && !useOptimalTable) {
                         if (!hasWhere) {
-                            sql.append(" WHERE n01.label LIKE");
+                            sql.append(" WHERE ");
                             hasWhere = true;
                         } else {
                             if (!sql.toString().endsWith("AND ")) sql.append(" AND ");
-                            sql.append("n01.label LIKE");
                         }
-                        sql.append(" ").append(TranslateUtils.genLabelLike(cN, "n01"));
+                        sql.append(TranslateUtils.genLabelFilter(cN, "n01"));
                     }
                 }
             }
@@ -4,10 +4,10 @@ import clauseObjects.CypIterate;
 import clauseObjects.CypNode;
 import clauseObjects.DecodedQuery;
 import com.google.gson.JsonObject;
-import production.Reagan_Main_V4;
+import translator.Translator;
 
 public class SQLIterate {
-    public static String translate(CypIterate cypIter, String typeTranslate) {
+    public static String translate(CypIterate cypIter, Translator translator) throws Exception {
         String line = cypIter.getOriginalCypherInput();
         String matchClause = line.substring(8, line.indexOf("loop"));
         String iterable = matchClause + "return ";
@@ -27,9 +27,9 @@ public class SQLIterate {
 
         // generate the traditional translation to SQL for the loop query (store in string as used
         // multiple times)
-        DecodedQuery loopDQ = Reagan_Main_V4.convertCypherToSQL(cypIter.getLoopQuery(), typeTranslate);
+        DecodedQuery loopDQ = translator.translateQuery(cypIter.getLoopQuery());
         String loopSQL = loopDQ.getSqlEquiv();
-        String returnSQL = Reagan_Main_V4.convertCypherToSQL(cypIter.getReturnStatement(), typeTranslate).getSqlEquiv();
+        String returnSQL = translator.translateQuery(cypIter.getReturnStatement()).getSqlEquiv();
         returnSQL = returnSQL.substring(0, returnSQL.length() - 1);
 
         // need to modify loopSQL for the main SQL statement.
@@ -56,7 +56,7 @@ public class SQLIterate {
         System.out.println(obj.toString());
         loopDQ.getMc().getNodes().get(posLoopFrom - 1).setProps(obj);
         try {
-            loopDQ.setSqlEquiv(SQLTranslate.translateRead(loopDQ, typeTranslate));
+            loopDQ.setSqlEquiv(SQLTranslate.translateRead(loopDQ, translator.getTypeTranslate()));
         } catch (Exception e) {
             e.printStackTrace();
         }
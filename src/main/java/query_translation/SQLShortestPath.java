@@ -5,7 +5,7 @@ import clauseObjects.*;
 import java.util.Map;
 
 public class SQLShortestPath {
-    private static char[] alphabet = "abcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final char[] alphabet = "abcdefghijklmnopqrstuvwxyz".toCharArray();
 
     public static StringBuilder translate(DecodedQuery dQMainPath) {
         StringBuilder shortPath = new StringBuilder();
@@ -97,9 +97,9 @@ public class SQLShortestPath {
         boolean hasWhere = false;
 
         if (cN1.getType() != null) {
-            sql.append(" WHERE label LIKE ");
+            sql.append(" WHERE ");
             hasWhere = true;
-            sql.append(TranslateUtils.genLabelLike(cN1, "q"));
+            sql.append(TranslateUtils.genLabelFilter(cN1, "q"));
         }
 
         if (cN1.getProps() != null) {
@@ -151,9 +151,9 @@ public class SQLShortestPath {
         boolean hasWhere = false;
 
         if (cN2.getType() != null) {
-            sql.append(" WHERE label LIKE ");
+            sql.append(" WHERE ");
             hasWhere = true;
-            sql.append(TranslateUtils.genLabelLike(cN2, "n01"));
+            sql.append(TranslateUtils.genLabelFilter(cN2, "n01"));
         }
 
         if (cN2.getProps() != null) {
@@ -1,12 +1,9 @@
 package query_translation;
 
 import clauseObjects.*;
-import production.Reagan_Main_V4;
+import schemaConversion.SchemaCatalog;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 
 /**
@@ -62,7 +59,7 @@ public class SQLTranslate {
         return sql.toString();
     }
 
-    public static String translateInsert(DecodedQuery decodedQuery) {
+    public static String translateInsert(DecodedQuery decodedQuery) throws Exception {
         StringBuilder sql = new StringBuilder();
         MatchClause createC = decodedQuery.getMc();
 
@@ -111,38 +108,30 @@ public class SQLTranslate {
         insertEdgesString.append(selectA).append(", (")
                 .append(selectB).append(", '").append(relType).append("'");
 
-        sql.append("INSERT INTO edges (").append(insertEdgesString.toString()).append("); ");
-        sql.append("INSERT INTO e$").append(relType).append(" (").append(insertEdgesString.toString()).append(");");
+        // the row is stored in the partition of the edges relation for its type.
+        sql.append("INSERT INTO edges (").append(insertEdgesString.toString()).append(");");
 
         return sql;
     }
 
-    private static StringBuilder translateInsertNodes(StringBuilder sql, MatchClause createC) {
+    private static StringBuilder translateInsertNodes(StringBuilder sql, MatchClause createC) throws Exception {
         String[] colsAndValues;
 
+        // the row is stored in the partition of the nodes relation for its labels.
         for (int i = 0; i < 2; i++) {
             String relation = InsertUtils.findRelation(createC, i);
             colsAndValues = InsertUtils.findColsAndValues(createC, i);
 
+            // a label not in the schema has no id, so the node could not be found by its labels again.
+            String labels = TranslateUtils.genLabelArray(relation.replace("_", ", "));
+            if (labels == null) throw new Exception("LABEL NOT IN SCHEMA : " + relation.replace("_", ", "));
+
             sql.append("INSERT INTO nodes");
             sql.append("(");
-            sql.append(colsAndValues[0]).append(", label) ");
-            sql.append("VALUES (");
-            sql.append(colsAndValues[1]).append(", '").append(relation.replace("_", ", ")).append("');");
-
-            sql.append("INSERT INTO ");
-            sql.append(relation).append("(");
-            sql.append(colsAndValues[0]).append(", id, label) ");
+            sql.append(colsAndValues[0]).append(", label, labels) ");
             sql.append("VALUES (");
-            sql.append(colsAndValues[1]).append(", (SELECT id FROM nodes WHERE ");
-
-            String[] values = colsAndValues[1].split(", ");
-            int j = 0;
-            for (String col : colsAndValues[0].split(", ")) {
-                sql.append(col).append(" = ").append(values[j++]).append(" AND ");
-            }
-            sql.setLength(sql.length() - 5);
-            sql.append("), '").append(relation.replace("_", ", ")).append("'); ");
+            sql.append(colsAndValues[1]).append(", '").append(relation.replace("_", ", ")).append("', ")
+                    .append(labels).append("); ");
         }
 
         return sql;
@@ -151,7 +140,6 @@ public class SQLTranslate {
     public static String translateDelete(DecodedQuery decodedQuery) {
         StringBuilder sql = new StringBuilder();
         MatchClause deleteC = decodedQuery.getMc();
-        String relation = InsertUtils.findRelation(deleteC, 0);
         String[] colsAndValues = InsertUtils.findColsAndValues(deleteC, 0);
 
         // delete the relationships belonging to the node/nodes.
@@ -169,17 +157,6 @@ public class SQLTranslate {
 
         sql.append(";");
 
-        sql.append("DELETE FROM ");
-        sql.append(relation).append(" WHERE ");
-        i = 0;
-        for (String col : colsAndValues[0].split(", ")) {
-            sql.append(col).append(" = ").append(values[i++]).append(" AND ");
-        }
-
-        if (sql.toString().endsWith(" AND ")) sql.setLength(sql.length() - 5);
-
-        sql.append(";");
-
         System.out.println(sql.toString());
         return sql.toString();
     }
@@ -199,11 +176,6 @@ public class SQLTranslate {
 
         sql.append(whereString).append(") OR idr in (SELECT id FROM nodes WHERE ").append(whereString).append("); ");
 
-        for (String s : Reagan_Main_V4.relsList) {
-            sql.append(" DELETE FROM e$").append(s).append(" WHERE idl in (SELECT id FROM nodes WHERE ");
-            sql.append(whereString).append("); ");
-        }
-
         return sql;
     }
 
@@ -259,11 +231,8 @@ public class SQLTranslate {
             if (cR.getField() != null && !cR.getCount()) {
                 sql.append("n0").append(nodeTableCount).append(".").append(cR.getField()).append(", ");
             } else if (!cR.getCount()) {
-                FileInputStream fis = new FileInputStream(Reagan_Main_V4.workspaceArea + "/meta.txt");
-                BufferedReader br = new BufferedReader(new InputStreamReader(fis));
-                String line;
-                while ((line = br.readLine()) != null) {
-                    sql.append("n0").append(nodeTableCount).append(".").append(line).append(", ");
+                for (String col : SchemaCatalog.get().getNodeColumns()) {
+                    sql.append("n0").append(nodeTableCount).append(".").append(col).append(", ");
                 }
             }
         }
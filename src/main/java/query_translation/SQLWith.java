@@ -21,7 +21,7 @@ public class SQLWith {
     // current WITH statement setup presumes no aliasing of return in second part of the WITH clause.
     public static String createSelect(String query, DecodedQuery dQ) {
         StringBuilder sWith = new StringBuilder();
-        ArrayList<String> tokens = CypherTokenizer.getTokenList(query, false);
+        ArrayList<String> tokens = CypherTokenizer.getTokenList(query);
 
         // get SELECT
         sWith = getSelectForWith(sWith, tokens, dQ);
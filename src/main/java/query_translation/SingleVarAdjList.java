@@ -5,7 +5,7 @@ import clauseObjects.*;
 import java.util.Map;
 
 class SingleVarAdjList {
-    private static char[] alphabet = "abcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final char[] alphabet = "abcdefghijklmnopqrstuvwxyz".toCharArray();
 
     static StringBuilder translate(StringBuilder sql, DecodedQuery decodedQuery) {
         MatchClause matchC = decodedQuery.getMc();
@@ -107,11 +107,11 @@ class SingleVarAdjList {
 
         if (cn2.getType() != null && table.equals("nodes")) {
             if (!hasWhere) {
-                sql.append(" WHERE n01.label LIKE");
+                sql.append(" WHERE ");
             } else {
-                sql.append(" AND n01.label LIKE");
+                sql.append(" AND ");
             }
-            sql.append(" ").append(TranslateUtils.genLabelLike(cn2, "n01"));
+            sql.append(TranslateUtils.genLabelFilter(cn2, "n01"));
         }
 
         return sql;
@@ -81,7 +81,7 @@ class SingleVarRel {
         boolean usedWhere = false;
 
         if (node.getType() != null) {
-            sql.append(" WHERE n01.label LIKE ").append(TranslateUtils.genLabelLike(node, "n01"));
+            sql.append(" WHERE ").append(TranslateUtils.genLabelFilter(node, "n01"));
             usedWhere = true;
         }
         if (node.getProps() != null) {
@@ -158,7 +158,7 @@ class SingleVarRel {
             } else {
                 getZStep.append(" AND ");
             }
-            getZStep.append("label LIKE ").append(TranslateUtils.genLabelLike(cN, null));
+            getZStep.append(TranslateUtils.genLabelFilter(cN, null));
         }
 
         getZStep.append(";");
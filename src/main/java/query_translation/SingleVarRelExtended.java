@@ -5,7 +5,7 @@ import clauseObjects.DecodedQuery;
 import clauseObjects.MatchClause;
 
 class SingleVarRelExtended {
-    private static char[] alphabet = "abcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final char[] alphabet = "abcdefghijklmnopqrstuvwxyz".toCharArray();
 
     static StringBuilder translate(StringBuilder sql, DecodedQuery decodedQuery,
                                    String direction, int amountLow, int amountHigh, MatchClause matchC) {
@@ -4,11 +4,8 @@ import clauseObjects.*;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import production.Reagan_Main_V4;
+import schemaConversion.SchemaCatalog;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.Map;
 import java.util.Set;
 
@@ -28,7 +25,8 @@ class TranslateUtils {
             String value;
             if (entry.getValue().isJsonArray()) {
                 value = "ARRAY" + entry.getValue().getAsJsonArray().toString();
-            } else if (entry.getKey().equals("name") && Reagan_Main_V4.dbName.startsWith("opus")) {
+            } else if (entry.getKey().equals("name") && Reagan_Main_V4.dbName != null &&
+                    Reagan_Main_V4.dbName.startsWith("opus")) {
                 value = "ARRAY[" + entry.getValue().toString() + "]";
             } else value = entry.getValue().getAsString();
             sql = TranslateUtils.addWhereClause(sql, value);
@@ -140,53 +138,39 @@ class TranslateUtils {
     }
 
     /**
-     * Labels in the current schema conversion are stored as strings. Some nodes have multiple labels.
-     * Thus, need to query labels using string comparison, and this methods helps generate that.
+     * Each node stores the ids of its labels in the labels column of the nodes relation (some nodes have
+     * multiple labels), so a node has all the labels of the query when its labels contain them. No node
+     * has a label that is not in the schema, so the filter is then false.
      *
      * @param cN CypNode with labels attached to it.
-     * @return SQL Like statement (such as n.label LIKE '%person$' AND n.label LIKE '%actor%')
+     * @param id Alias of the nodes relation, or null.
+     * @return SQL filter on the labels (such as n.labels @> ARRAY[2, 5])
      */
-    static String genLabelLike(CypNode cN, String id) {
-        String label = cN.getType();
-        String stmt = "'%";
-        String[] labels = label.split(", ");
-        for (String l : labels) {
-            stmt = stmt + l + "%' AND " + (id == null ? "" : (id + ".")) + "label LIKE '%";
-        }
-        //stmt = stmt.substring(0, stmt.length() - (18 + (id == null ? 0 : 1)));
-        stmt = stmt.substring(0, stmt.substring(0, stmt.length() - 2).lastIndexOf("'") + 1);
-        return stmt;
+    static String genLabelFilter(CypNode cN, String id) {
+        String array = genLabelArray(cN.getType());
+        if (array == null) return "false";
+        return (id == null ? "" : (id + ".")) + "labels @> " + array;
     }
 
-    static String getLabelType(String type) {
-        if (type == null)
-            return "nodes";
-
-        FileInputStream fis;
-
-        // nodes is the default table with all the data inside it.
-        String correctTable = "nodes";
-
-        // integer count to indicate whether or not label type specific enough for this optimisation.
-        int changed = 0;
-
-        try {
-            fis = new FileInputStream(Reagan_Main_V4.workspaceArea + "/meta_tables.txt");
-            BufferedReader br = new BufferedReader(new InputStreamReader(fis));
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (line.contains(type)) {
-                    correctTable = line;
-                    changed++;
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * @param label Labels separated by commas.
+     * @return SQL array of the ids of the labels (such as ARRAY[2, 5]), or null if any of the labels is
+     * not in the schema.
+     */
+    static String genLabelArray(String label) {
+        SchemaCatalog catalog = SchemaCatalog.get();
+        StringBuilder array = new StringBuilder("ARRAY[");
+        for (String l : label.split(", ")) {
+            int labelId = catalog.getLabelId(l);
+            if (labelId == 0) return null;
+            array.append(labelId).append(", ");
         }
+        array.setLength(array.length() - 2);
+        return array.append("]").toString();
+    }
 
-        if (changed > 1) correctTable = "nodes";
-
-        return correctTable;
+    static String getLabelType(String type) {
+        return SchemaCatalog.get().getLabelTable(type);
     }
 
     static String getTable(ReturnClause rc) {
@@ -194,11 +178,11 @@ class TranslateUtils {
         String table = "nodes";
 
         for (CypReturn cR : rc.getItems()) {
-            if (!Reagan_Main_V4.mapLabels.containsKey(cR.getField())) {
+            String newTable = SchemaCatalog.get().getPropertyTable(cR.getField());
+            if (newTable == null) {
                 possibleOpti = false;
                 break;
             } else {
-                String newTable = Reagan_Main_V4.mapLabels.get(cR.getField());
                 if (!table.equals(newTable) && !table.equals("nodes")) {
                     possibleOpti = false;
                     break;
@@ -0,0 +1,175 @@
+package schemaConversion;
+
+import production.Reagan_Main_V4;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Progress of a schema conversion, recorded in the workspace area so that a conversion which fails
+ * part way through can be continued with -resume, rather than repeating the work already done. The
+ * checkpoint records the dump being converted, which steps have completed, how far the dump has been
+ * parsed (along with the length of the intermediate files at that point), and the number of rows
+ * loaded into each relation.
+ * <p>
+ * The checkpoint is written to a temporary file which then replaces the previous one, so a failure
+ * while it is being saved leaves the previous checkpoint intact.
+ */
+public class Checkpoint {
+    // steps of the conversion that are recorded once they have completed.
+    public static final String PARSE = "parse";
+    public static final String NODES = "nodes";
+    public static final String EDGES = "edges";
+    public static final String TCLOSURE = "tclosure";
+    public static final String STATISTICS = "statistics";
+    public static final String INDEXES = "indexes";
+
+    private static final String checkpointFile = Reagan_Main_V4.workspaceArea + "/checkpoint.properties";
+    // types inferred from the part of the dump parsed so far.
+    static final String inferenceFile = Reagan_Main_V4.workspaceArea + "/inference.bin";
+
+    private final Properties props = new Properties();
+    private final boolean resumed;
+
+    private Checkpoint(boolean resumed) {
+        this.resumed = resumed;
+    }
+
+    /**
+     * Start recording the progress of a new conversion, replacing any earlier checkpoint.
+     *
+     * @param dump     Dump File from Neo4J.
+     * @param database Name of the database the schema is stored on.
+     * @return The checkpoint of the new conversion.
+     * @throws IOException Error writing the checkpoint.
+     */
+    public static Checkpoint start(String dump, String database) throws IOException {
+        Checkpoint checkpoint = new Checkpoint(false);
+        checkpoint.props.setProperty("dump", new File(dump).getAbsolutePath());
+        checkpoint.props.setProperty("dump.length", String.valueOf(new File(dump).length()));
+        checkpoint.props.setProperty("dump.modified", String.valueOf(new File(dump).lastModified()));
+        checkpoint.props.setProperty("database", database);
+        new File(inferenceFile).delete();
+        checkpoint.save();
+        return checkpoint;
+    }
+
+    /**
+     * Obtain the checkpoint of a conversion that did not complete.
+     *
+     * @param dump     Dump File from Neo4J, which must be the same dump as the conversion was started with.
+     * @param database Name of the database, which must be the same as the conversion was started with.
+     * @return The checkpoint, or null if there is no conversion to resume.
+     * @throws IOException Error reading the checkpoint, or the checkpoint is for another dump or database.
+     */
+    public static Checkpoint resume(String dump, String database) throws IOException {
+        if (!new File(checkpointFile).exists()) return null;
+
+        Checkpoint checkpoint = new Checkpoint(true);
+        InputStream in = new FileInputStream(checkpointFile);
+        checkpoint.props.load(in);
+        in.close();
+
+        if (!new File(dump).getAbsolutePath().equals(checkpoint.props.getProperty("dump")) ||
+                !String.valueOf(new File(dump).length()).equals(checkpoint.props.getProperty("dump.length")) ||
+                !String.valueOf(new File(dump).lastModified()).equals(checkpoint.props.getProperty("dump.modified"))) {
+            throw new IOException("Checkpoint is for the dump " + checkpoint.props.getProperty("dump") +
+                    ", which is not the same as " + dump);
+        }
+        if (!database.equals(checkpoint.props.getProperty("database"))) {
+            throw new IOException("Checkpoint is for the database " + checkpoint.props.getProperty("database"));
+        }
+        return checkpoint;
+    }
+
+    /**
+     * @return True if this checkpoint was recorded by an earlier run of the tool.
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    public boolean isDone(String step) {
+        return props.containsKey("done." + step);
+    }
+
+    public void markDone(String step) throws IOException {
+        props.setProperty("done." + step, "true");
+        save();
+    }
+
+    public void setRowsLoaded(String table, long rows) throws IOException {
+        props.setProperty("rows." + table, String.valueOf(rows));
+        save();
+    }
+
+    public long getRowsLoaded(String table) {
+        return getLong("rows." + table);
+    }
+
+    /**
+     * @return Position in the dump parsed up to: a byte offset if the dump is mapped, otherwise the
+     * number of statements.
+     */
+    long getParsedPosition() {
+        return getLong("parsed.position");
+    }
+
+    long getNodesBytes() {
+        return getLong("parsed.nodes.bytes");
+    }
+
+    long getEdgesBytes() {
+        return getLong("parsed.edges.bytes");
+    }
+
+    /**
+     * Record how far the dump has been parsed. The intermediate files, dictionary and inferred types
+     * must already have been saved up to at least this position.
+     *
+     * @param position   Position in the dump parsed up to.
+     * @param nodesBytes Length of the nodes file at that position.
+     * @param edgesBytes Length of the edges file at that position.
+     * @throws IOException Error writing the checkpoint.
+     */
+    void setParsed(long position, long nodesBytes, long edgesBytes) throws IOException {
+        props.setProperty("parsed.position", String.valueOf(position));
+        props.setProperty("parsed.nodes.bytes", String.valueOf(nodesBytes));
+        props.setProperty("parsed.edges.bytes", String.valueOf(edgesBytes));
+        save();
+    }
+
+    /**
+     * The conversion has completed, so there is nothing left to resume.
+     */
+    public void finish() {
+        new File(checkpointFile).delete();
+        new File(inferenceFile).delete();
+    }
+
+    private long getLong(String key) {
+        return Long.parseLong(props.getProperty(key, "0"));
+    }
+
+    private void save() throws IOException {
+        OutputStream out = new FileOutputStream(checkpointFile + ".tmp");
+        props.store(out, "Reagan schema conversion checkpoint");
+        out.close();
+        replace(checkpointFile + ".tmp", checkpointFile);
+    }
+
+    /**
+     * Replace a file with a newer version written alongside it.
+     *
+     * @param tmp  Newer version of the file.
+     * @param file File to replace.
+     * @throws IOException Error moving the file.
+     */
+    static void replace(String tmp, String file) throws IOException {
+        Files.move(Paths.get(tmp), Paths.get(file), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
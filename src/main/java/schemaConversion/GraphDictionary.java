@@ -0,0 +1,75 @@
+package schemaConversion;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary shared by all units of work during schema conversion, which maps each property key,
+ * label and relationship type to a small integer used in the binary intermediate files. The
+ * dictionary is written alongside the intermediate files once the dump has been parsed (and at each
+ * checkpoint).
+ */
+class GraphDictionary {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final List<String> entries = new ArrayList<>();
+
+    /**
+     * Obtain the id of a string, adding it to the dictionary if it is new.
+     *
+     * @param s Property key, label or relationship type.
+     * @return Id of the string in the dictionary.
+     */
+    int idOf(String s) {
+        Integer id = ids.get(s);
+        if (id != null) return id;
+
+        synchronized (entries) {
+            id = ids.get(s);
+            if (id == null) {
+                id = entries.size();
+                entries.add(s);
+                ids.put(s, id);
+            }
+            return id;
+        }
+    }
+
+    void save(String file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        synchronized (entries) {
+            out.writeInt(entries.size());
+            for (String s : entries) {
+                out.writeUTF(s);
+            }
+        }
+        out.close();
+    }
+
+    /**
+     * Rebuild a dictionary saved at a checkpoint, so the ids already written are kept.
+     *
+     * @param file Dictionary saved earlier.
+     * @return The dictionary, to which further strings may be added.
+     * @throws IOException Error reading the dictionary.
+     */
+    static GraphDictionary restore(String file) throws IOException {
+        GraphDictionary dictionary = new GraphDictionary();
+        for (String s : load(file)) {
+            dictionary.idOf(s);
+        }
+        return dictionary;
+    }
+
+    static String[] load(String file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        String[] entries = new String[in.readInt()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = in.readUTF();
+        }
+        in.close();
+        return entries;
+    }
+}
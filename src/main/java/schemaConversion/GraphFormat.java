@@ -0,0 +1,167 @@
+package schemaConversion;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Binary format of the intermediate nodes and edges files, written by the parser and read by the
+ * loader. Each record is the number of properties followed by each property as the dictionary id of
+ * its key, a type tag, and the value:
+ * <ul>
+ * <li>NULL - no value.</li>
+ * <li>LONG - zigzag varint.</li>
+ * <li>STRING - varint length followed by UTF-8 bytes.</li>
+ * <li>STRING_ARRAY - varint count followed by that many strings.</li>
+ * <li>DICT - varint dictionary id (used for labels and relationship types).</li>
+ * </ul>
+ * All other counts and ids are unsigned varints. Values keep the types they had in the dump, so the
+ * loader can convert them to whichever column type was inferred.
+ * <p>
+ * The files are gzip compressed. Each unit of work compresses its own records as a separate gzip
+ * member, so compression runs in parallel, and the members are simply concatenated in the file.
+ */
+final class GraphFormat {
+    static final int NULL = 0;
+    static final int LONG = 1;
+    static final int STRING = 2;
+    static final int STRING_ARRAY = 3;
+    static final int DICT = 4;
+
+    private GraphFormat() {
+    }
+
+    /**
+     * Compress the records of a unit of work as one gzip member (favouring speed over size).
+     *
+     * @param records Records of the unit of work.
+     * @return The compressed records.
+     */
+    static ByteArrayOutputStream compress(ByteArrayOutputStream records) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(records.size() / 4 + 64);
+        try {
+            GZIPOutputStream gz = new GZIPOutputStream(compressed, 1 << 16) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            };
+            records.writeTo(gz);
+            gz.close();
+        } catch (IOException e) {
+            // not possible when writing to memory
+            throw new UncheckedIOException(e);
+        }
+        return compressed;
+    }
+
+    /**
+     * @param file Intermediate nodes or edges file.
+     * @return Stream of the uncompressed records in the file.
+     * @throws IOException Error opening the file.
+     */
+    static InputStream openRecords(String file) throws IOException {
+        return new BufferedInputStream(new GZIPInputStream(new FileInputStream(file), 1 << 16), 1 << 16);
+    }
+
+    /**
+     * Append a node or relationship to the output of a unit of work.
+     *
+     * @param out  Output of the unit of work.
+     * @param o    Properties of the node or relationship (including id, label, idL, idR, type).
+     * @param dict Dictionary shared by all the units of work.
+     */
+    static void writeRecord(ByteArrayOutputStream out, JsonObject o, GraphDictionary dict) {
+        writeVarint(out, o.size());
+        for (Map.Entry<String, JsonElement> entry : o.entrySet()) {
+            String key = entry.getKey();
+            JsonElement value = entry.getValue();
+            writeVarint(out, dict.idOf(key));
+
+            if (value.isJsonNull()) {
+                out.write(NULL);
+            } else if (value.isJsonArray()) {
+                out.write(STRING_ARRAY);
+                writeVarint(out, value.getAsJsonArray().size());
+                for (JsonElement e : value.getAsJsonArray()) {
+                    writeString(out, e.getAsString());
+                }
+            } else if ((key.equals("label") || key.equals("type")) && value.isJsonPrimitive()) {
+                out.write(DICT);
+                writeVarint(out, dict.idOf(value.getAsString()));
+            } else if (isLong(value)) {
+                out.write(LONG);
+                long v = value.getAsLong();
+                writeVarint(out, (v << 1) ^ (v >> 63));
+            } else {
+                out.write(STRING);
+                writeString(out, value.isJsonPrimitive() ? value.getAsString() : value.toString());
+            }
+        }
+    }
+
+    /**
+     * A JSON number without a fraction or exponent that fits in a long is stored as a LONG.
+     */
+    private static boolean isLong(JsonElement value) {
+        if (!value.isJsonPrimitive() || !((JsonPrimitive) value).isNumber()) return false;
+        String s = value.getAsString();
+        int start = s.startsWith("-") ? 1 : 0;
+        if (s.length() == start || s.length() - start > 19) return false;
+        for (int i = start; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        if (s.length() - start < 19) return true;
+        // a number of 19 digits may still be too large, and would be wrapped by getAsLong.
+        try {
+            Long.parseLong(s);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    static long readVarint(DataInputStream in) throws IOException {
+        long v = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+
+    static long readZigzag(DataInputStream in) throws IOException {
+        long v = readVarint(in);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[(int) readVarint(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
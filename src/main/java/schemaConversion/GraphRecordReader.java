@@ -0,0 +1,125 @@
+package schemaConversion;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the binary intermediate nodes or edges file written during schema conversion (see
+ * GraphFormat). Each record is read into an array of values lined up with the requested columns,
+ * where each value is a Long, a String, a String[] or null. A hash of the full content of each
+ * record is also computed, which does not depend on the order of its properties.
+ */
+public class GraphRecordReader implements Closeable {
+    private final DataInputStream in;
+    private final String[] dictionary;
+    // position in the requested columns of each dictionary entry, or -1 if not requested.
+    private final int[] columnOf;
+    private long recordHash;
+
+    /**
+     * @param file    Intermediate nodes or edges file.
+     * @param columns Columns to read, each in the form "name TYPE" (or just the name).
+     * @throws IOException Error opening the file or its dictionary.
+     */
+    public GraphRecordReader(String file, List<String> columns) throws IOException {
+        this.dictionary = GraphDictionary.load(SchemaTranslate.dictionaryFile);
+        this.in = new DataInputStream(GraphFormat.openRecords(file));
+
+        this.columnOf = new int[dictionary.length];
+        Arrays.fill(columnOf, -1);
+        for (int i = 0; i < dictionary.length; i++) {
+            for (int j = 0; j < columns.size(); j++) {
+                if (columns.get(j).split(" ")[0].equals(dictionary[i])) columnOf[i] = j;
+            }
+        }
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @param values Filled with the values of the record, lined up with the requested columns.
+     * @return False if there are no records left.
+     * @throws IOException Error reading the file.
+     */
+    public boolean next(Object[] values) throws IOException {
+        int numProps;
+        try {
+            numProps = (int) GraphFormat.readVarint(in);
+        } catch (EOFException e) {
+            return false;
+        }
+
+        Arrays.fill(values, null);
+        recordHash = 0;
+        for (int p = 0; p < numProps; p++) {
+            int key = (int) GraphFormat.readVarint(in);
+            int tag = in.readUnsignedByte();
+            Object value;
+            long valueHash;
+
+            switch (tag) {
+                case GraphFormat.LONG:
+                    long v = GraphFormat.readZigzag(in);
+                    value = v;
+                    valueHash = mix(v);
+                    break;
+                case GraphFormat.STRING:
+                    value = GraphFormat.readString(in);
+                    valueHash = hashString((String) value);
+                    break;
+                case GraphFormat.STRING_ARRAY:
+                    String[] array = new String[(int) GraphFormat.readVarint(in)];
+                    valueHash = array.length;
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = GraphFormat.readString(in);
+                        valueHash = valueHash * 31 + hashString(array[i]);
+                    }
+                    value = array;
+                    break;
+                case GraphFormat.DICT:
+                    value = dictionary[(int) GraphFormat.readVarint(in)];
+                    valueHash = hashString((String) value);
+                    break;
+                default:
+                    value = null;
+                    valueHash = 0;
+            }
+
+            int column = columnOf[key];
+            if (column >= 0) values[column] = value;
+            // summing the hashes of the properties makes the hash independent of their order.
+            recordHash += mix(hashString(dictionary[key]) * 31 + valueHash * 7 + tag);
+        }
+        return true;
+    }
+
+    /**
+     * @return Hash of all the properties of the record last read by next().
+     */
+    public long getRecordHash() {
+        return recordHash;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long hashString(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+}
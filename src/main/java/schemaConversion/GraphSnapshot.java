@@ -0,0 +1,225 @@
+package schemaConversion;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Snapshot of a converted graph, used to work out what has changed when a newer dump is converted
+ * incrementally. It stores the schema the graph was converted to, a hash of each node by its Neo4J
+ * id, and, as relationships have no ids of their own, a hash of each group of relationships sharing
+ * the same (idL, idR, type). The hash of a group is the sum of the hashes of its relationships, so it
+ * does not depend on their order and identical relationships are counted as a multiset.
+ */
+public class GraphSnapshot {
+    public final List<String> nodeColumns;
+    public final List<String> edgeColumns;
+    public final Map<String, String> labelColumns;
+    public final List<String> relTypes;
+    private final Map<Long, Long> nodes;
+    private final Map<EdgeKey, Long> edges;
+
+    /**
+     * Identifies a group of relationships of the same type between the same pair of nodes.
+     */
+    public static class EdgeKey {
+        public final long idL;
+        public final long idR;
+        public final String type;
+
+        public EdgeKey(long idL, long idR, String type) {
+            this.idL = idL;
+            this.idR = idR;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof EdgeKey)) return false;
+            EdgeKey k = (EdgeKey) o;
+            return idL == k.idL && idR == k.idR && type.equals(k.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (idL * 31 + idR) * 31 + type.hashCode();
+        }
+    }
+
+    private GraphSnapshot(List<String> nodeColumns, List<String> edgeColumns, Map<String, String> labelColumns,
+                          List<String> relTypes, Map<Long, Long> nodes, Map<EdgeKey, Long> edges) {
+        this.nodeColumns = nodeColumns;
+        this.edgeColumns = edgeColumns;
+        this.labelColumns = labelColumns;
+        this.relTypes = relTypes;
+        this.nodes = nodes;
+        this.edges = edges;
+    }
+
+    /**
+     * Build the snapshot of the graph most recently converted by SchemaTranslate.
+     *
+     * @param nodeColumns Columns of the nodes relation.
+     * @return Snapshot of the current intermediate nodes and edges files.
+     * @throws IOException Error reading the intermediate files.
+     */
+    public static GraphSnapshot build(List<String> nodeColumns) throws IOException {
+        Map<Long, Long> nodes = new HashMap<>();
+        Object[] values = new Object[1];
+        GraphRecordReader reader = new GraphRecordReader(SchemaTranslate.nodesFile, Collections.singletonList("id"));
+        while (reader.next(values)) {
+            nodes.put((Long) values[0], reader.getRecordHash());
+        }
+        reader.close();
+
+        Map<EdgeKey, Long> edges = new HashMap<>();
+        values = new Object[3];
+        reader = new GraphRecordReader(SchemaTranslate.edgesFile, Arrays.asList("idL", "idR", "type"));
+        while (reader.next(values)) {
+            edges.merge(new EdgeKey((Long) values[0], (Long) values[1], (String) values[2]),
+                    reader.getRecordHash(), Long::sum);
+        }
+        reader.close();
+
+        return new GraphSnapshot(new ArrayList<>(nodeColumns), new ArrayList<>(SchemaTranslate.edgesRelLabels),
+                new HashMap<>(SchemaTranslate.labelMappings), new ArrayList<>(SchemaTranslate.relTypes), nodes, edges);
+    }
+
+    /**
+     * @param newer Snapshot of a newer version of the graph.
+     * @return Ids of the nodes that were added, changed or removed in the newer version.
+     */
+    public Set<Long> diffNodes(GraphSnapshot newer) {
+        return diff(nodes, newer.nodes);
+    }
+
+    /**
+     * @param newer Snapshot of a newer version of the graph.
+     * @return Groups of relationships that were added, changed or removed in the newer version.
+     */
+    public Set<EdgeKey> diffEdges(GraphSnapshot newer) {
+        return diff(edges, newer.edges);
+    }
+
+    /**
+     * @param newer   Snapshot of a newer version of the graph.
+     * @param changed Groups of relationships that were added, changed or removed (see diffEdges).
+     * @return Ids of the nodes from which there is a relationship (of any type) to some node in only one
+     * of the versions, so the paths from them may have changed.
+     */
+    public Set<Long> diffLinks(GraphSnapshot newer, Set<EdgeKey> changed) {
+        // pairs of nodes are keyed without a type.
+        Set<EdgeKey> pairs = new HashSet<>();
+        for (EdgeKey key : changed) {
+            pairs.add(new EdgeKey(key.idL, key.idR, ""));
+        }
+        Set<EdgeKey> older = linked(edges, pairs);
+        Set<EdgeKey> newerLinked = linked(newer.edges, pairs);
+
+        Set<Long> from = new HashSet<>();
+        for (EdgeKey pair : pairs) {
+            if (older.contains(pair) != newerLinked.contains(pair)) from.add(pair.idL);
+        }
+        return from;
+    }
+
+    // the pairs of nodes with a relationship between them, of those given.
+    private static Set<EdgeKey> linked(Map<EdgeKey, Long> edges, Set<EdgeKey> pairs) {
+        Set<EdgeKey> linked = new HashSet<>();
+        for (EdgeKey key : edges.keySet()) {
+            EdgeKey pair = new EdgeKey(key.idL, key.idR, "");
+            if (pairs.contains(pair)) linked.add(pair);
+        }
+        return linked;
+    }
+
+    /**
+     * @param nodeColumns Columns of the nodes relation.
+     * @return This snapshot, with the schema the graph is now converted to (held in SchemaTranslate).
+     */
+    public GraphSnapshot withSchema(List<String> nodeColumns) {
+        return new GraphSnapshot(new ArrayList<>(nodeColumns), new ArrayList<>(SchemaTranslate.edgesRelLabels),
+                new HashMap<>(SchemaTranslate.labelMappings), new ArrayList<>(SchemaTranslate.relTypes), nodes, edges);
+    }
+
+    private static <K> Set<K> diff(Map<K, Long> older, Map<K, Long> newer) {
+        Set<K> changed = new HashSet<>();
+        for (Map.Entry<K, Long> e : newer.entrySet()) {
+            if (!e.getValue().equals(older.get(e.getKey()))) changed.add(e.getKey());
+        }
+        for (K key : older.keySet()) {
+            if (!newer.containsKey(key)) changed.add(key);
+        }
+        return changed;
+    }
+
+    public void save(String file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        writeList(out, nodeColumns);
+        writeList(out, edgeColumns);
+        writeList(out, relTypes);
+        out.writeInt(labelColumns.size());
+        for (Map.Entry<String, String> e : labelColumns.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeUTF(e.getValue());
+        }
+
+        out.writeInt(nodes.size());
+        for (Map.Entry<Long, Long> e : nodes.entrySet()) {
+            out.writeLong(e.getKey());
+            out.writeLong(e.getValue());
+        }
+        out.writeInt(edges.size());
+        for (Map.Entry<EdgeKey, Long> e : edges.entrySet()) {
+            out.writeLong(e.getKey().idL);
+            out.writeLong(e.getKey().idR);
+            out.writeUTF(e.getKey().type);
+            out.writeLong(e.getValue());
+        }
+        out.close();
+    }
+
+    /**
+     * @param file Snapshot saved by an earlier conversion.
+     * @return The snapshot, or null if there is no snapshot.
+     * @throws IOException Error reading the snapshot.
+     */
+    public static GraphSnapshot load(String file) throws IOException {
+        if (!new File(file).exists()) return null;
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        List<String> nodeColumns = readList(in);
+        List<String> edgeColumns = readList(in);
+        List<String> relTypes = readList(in);
+        Map<String, String> labelColumns = new HashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            labelColumns.put(in.readUTF(), in.readUTF());
+        }
+
+        Map<Long, Long> nodes = new HashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            nodes.put(in.readLong(), in.readLong());
+        }
+        Map<EdgeKey, Long> edges = new HashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            edges.put(new EdgeKey(in.readLong(), in.readLong(), in.readUTF()), in.readLong());
+        }
+        in.close();
+
+        return new GraphSnapshot(nodeColumns, edgeColumns, labelColumns, relTypes, nodes, edges);
+    }
+
+    private static void writeList(DataOutputStream out, List<String> list) throws IOException {
+        out.writeInt(list.size());
+        for (String s : list) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static List<String> readList(DataInputStream in) throws IOException {
+        List<String> list = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            list.add(in.readUTF());
+        }
+        return list;
+    }
+}
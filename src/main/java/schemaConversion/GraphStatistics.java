@@ -0,0 +1,404 @@
+package schemaConversion;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Statistics of a converted graph, gathered from the intermediate nodes and edges files once the dump
+ * has been parsed, so that translations can be chosen on the size and shape of the graph. Each
+ * statistic is a count identified by its kind, and by the label, type of relationship and name it is
+ * for (any of which may be empty):
+ * <ul>
+ * <li>nodes (label): number of nodes with the label, or of all nodes for the empty label.</li>
+ * <li>edges (type): number of relationships of the type, or of all relationships for the empty type.</li>
+ * <li>out_degree / in_degree (label, type, lowest degree): number of nodes with the label whose number
+ * of relationships of the type leaving / entering them falls in the bucket starting at that degree
+ * (0, 1, 2-3, 4-7, ...), or the total number of those relationships for the empty name.</li>
+ * <li>max_out_degree / max_in_degree (label, type): highest degree of the nodes with the label.</li>
+ * <li>distinct (label or type, property): estimated number of distinct values of the property.</li>
+ * <li>nulls (label or type, property): number of nodes or relationships without the property.</li>
+ * <li>hub (label, id): number of relationships of one of the nodes with the most relationships.</li>
+ * </ul>
+ * The statistics of nodes are kept for each individual label, so a node with several labels counts
+ * towards each of them. While gathering them, the nodes are held in arrays indexed by their sorted ids
+ * (found by binary search), taking 16 bytes a node and 8 more for each type of relationship.
+ */
+public class GraphStatistics {
+    public static final String NODES = "nodes";
+    public static final String EDGES = "edges";
+    public static final String OUT_DEGREE = "out_degree";
+    public static final String IN_DEGREE = "in_degree";
+    public static final String MAX_OUT_DEGREE = "max_out_degree";
+    public static final String MAX_IN_DEGREE = "max_in_degree";
+    public static final String DISTINCT = "distinct";
+    public static final String NULLS = "nulls";
+    public static final String HUB = "hub";
+
+    // number of nodes listed as hubs.
+    private static final int HUBS = 20;
+
+    // each statistic, by its kind, label, type and name joined by tabs.
+    private final Map<String, Long> stats;
+
+    private GraphStatistics(Map<String, Long> stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Gather the statistics of the graph most recently converted by SchemaTranslate.
+     *
+     * @return The statistics.
+     * @throws IOException Error reading the intermediate files.
+     */
+    public static GraphStatistics build() throws IOException {
+        Map<String, Long> stats = new LinkedHashMap<>();
+
+        // id and set of labels of each node, in the order read, and the sketch of each property of each label.
+        long[] readIds = new long[1024];
+        int[] labelSets = new int[1024];
+        int n = 0;
+        Map<String, Integer> labelSetIds = new HashMap<>();
+        List<String[]> labelSetLabels = new ArrayList<>();
+        Map<String, Sketch> sketches = new TreeMap<>();
+        List<String> nodeColumns = new ArrayList<>(SchemaTranslate.nodeRelLabels);
+        int idColumn = indexOf(nodeColumns, "id");
+        int labelColumn = indexOf(nodeColumns, "label");
+        Object[] values = new Object[nodeColumns.size()];
+
+        GraphRecordReader reader = new GraphRecordReader(SchemaTranslate.nodesFile, nodeColumns);
+        while (reader.next(values)) {
+            String labelText = (values[labelColumn] == null) ? null : values[labelColumn].toString();
+            String[] labels = (labelText == null) ? new String[0] : labelText.split(", ");
+            Integer labelSet = labelSetIds.get(labelText);
+            if (labelSet == null) {
+                labelSet = labelSetLabels.size();
+                labelSetIds.put(labelText, labelSet);
+                labelSetLabels.add(labels);
+            }
+            if (n == readIds.length) {
+                readIds = Arrays.copyOf(readIds, n * 2);
+                labelSets = Arrays.copyOf(labelSets, n * 2);
+            }
+            readIds[n] = (Long) values[idColumn];
+            labelSets[n++] = labelSet;
+            add(stats, key(NODES, "", "", ""), 1);
+            for (String label : labels) {
+                add(stats, key(NODES, label, "", ""), 1);
+                addProperties(sketches, nodeColumns, values, label, "", idColumn, labelColumn);
+            }
+        }
+        reader.close();
+
+        // the nodes are indexed by their position in the sorted ids, found by binary search.
+        long[] ids = Arrays.copyOf(readIds, n);
+        Arrays.sort(ids);
+        int[] labelSetOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            labelSetOf[Arrays.binarySearch(ids, readIds[i])] = labelSets[i];
+        }
+        readIds = null;
+        labelSets = null;
+
+        // number of relationships of each type leaving and entering each node, and of all types.
+        Map<String, int[]> outDegrees = new TreeMap<>();
+        Map<String, int[]> inDegrees = new TreeMap<>();
+        int[] degrees = new int[n];
+        List<String> edgeColumns = new ArrayList<>(SchemaTranslate.edgesRelLabels);
+        int idLColumn = indexOf(edgeColumns, "idL");
+        int idRColumn = indexOf(edgeColumns, "idR");
+        int typeColumn = indexOf(edgeColumns, "type");
+        values = new Object[edgeColumns.size()];
+
+        reader = new GraphRecordReader(SchemaTranslate.edgesFile, edgeColumns);
+        while (reader.next(values)) {
+            String type = (String) values[typeColumn];
+            add(stats, key(EDGES, "", "", ""), 1);
+            add(stats, key(EDGES, "", type, ""), 1);
+            // relationships of nodes that are not in the nodes file do not count towards any degree.
+            int from = Arrays.binarySearch(ids, (Long) values[idLColumn]);
+            int to = Arrays.binarySearch(ids, (Long) values[idRColumn]);
+            if (from >= 0) {
+                outDegrees.computeIfAbsent(type, t -> new int[ids.length])[from]++;
+                degrees[from]++;
+            }
+            if (to >= 0) {
+                inDegrees.computeIfAbsent(type, t -> new int[ids.length])[to]++;
+                degrees[to]++;
+            }
+            addProperties(sketches, edgeColumns, values, "", type, idLColumn, idRColumn, typeColumn);
+        }
+        reader.close();
+
+        addDegrees(stats, OUT_DEGREE, MAX_OUT_DEGREE, outDegrees, labelSetOf, labelSetLabels);
+        addDegrees(stats, IN_DEGREE, MAX_IN_DEGREE, inDegrees, labelSetOf, labelSetLabels);
+
+        for (Map.Entry<String, Sketch> e : sketches.entrySet()) {
+            String[] k = e.getKey().split("\t", -1);
+            long rows = stats.getOrDefault(k[0].isEmpty() ? key(EDGES, "", k[1], "") : key(NODES, k[0], "", ""), 0L);
+            stats.put(key(DISTINCT, k[0], k[1], k[2]), e.getValue().estimate());
+            stats.put(key(NULLS, k[0], k[1], k[2]), rows - e.getValue().count);
+        }
+
+        for (int hub : hubs(degrees)) {
+            String[] labels = labelSetLabels.get(labelSetOf[hub]);
+            stats.put(key(HUB, String.join(", ", labels), "", String.valueOf(ids[hub])), (long) degrees[hub]);
+        }
+
+        return new GraphStatistics(stats);
+    }
+
+    /**
+     * @param degrees Number of relationships of each node.
+     * @return Positions of the nodes with the most relationships (and the lowest ids among those with
+     * as many), most first.
+     */
+    private static int[] hubs(int[] degrees) {
+        // the fewest relationships (and then the highest id) of the hubs found so far is at the head.
+        PriorityQueue<Integer> heap = new PriorityQueue<>((a, b) -> (degrees[a] != degrees[b]) ?
+                Integer.compare(degrees[a], degrees[b]) : Integer.compare(b, a));
+        for (int i = 0; i < degrees.length; i++) {
+            if (degrees[i] == 0) continue;
+            if (heap.size() < HUBS) {
+                heap.add(i);
+            } else if (degrees[i] > degrees[heap.peek()]) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        int[] hubs = new int[heap.size()];
+        for (int i = hubs.length - 1; i >= 0; i--) {
+            hubs[i] = heap.poll();
+        }
+        return hubs;
+    }
+
+    private static void addProperties(Map<String, Sketch> sketches, List<String> columns, Object[] values,
+                                      String label, String type, int... skip) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (values[i] == null || contains(skip, i)) continue;
+            String name = columns.get(i).split(" ")[0];
+            Object v = values[i];
+            sketches.computeIfAbsent(label + "\t" + type + "\t" + name, k -> new Sketch())
+                    .add((v instanceof String[]) ? Arrays.toString((String[]) v) : v.toString());
+        }
+    }
+
+    private static void addDegrees(Map<String, Long> stats, String kind, String maxKind,
+                                   Map<String, int[]> degreesByType, int[] labelSetOf, List<String[]> labelSetLabels) {
+        for (Map.Entry<String, int[]> e : degreesByType.entrySet()) {
+            String type = e.getKey();
+            int[] degreeOf = e.getValue();
+            Map<String, Long> withEdges = new HashMap<>();
+
+            for (int i = 0; i < degreeOf.length; i++) {
+                int degree = degreeOf[i];
+                if (degree == 0) continue;
+                // the lowest degree of the bucket is the highest power of two not above the degree.
+                String bucket = String.valueOf(Integer.highestOneBit(degree));
+                for (String label : labelSetLabels.get(labelSetOf[i])) {
+                    add(stats, key(kind, label, type, bucket), 1);
+                    add(stats, key(kind, label, type, ""), degree);
+                    withEdges.merge(label, 1L, Long::sum);
+                    stats.merge(key(maxKind, label, type, ""), (long) degree, Math::max);
+                }
+            }
+
+            // nodes of the labels with no relationships of the type.
+            for (Map.Entry<String, Long> label : withEdges.entrySet()) {
+                long nodes = stats.getOrDefault(key(NODES, label.getKey(), "", ""), 0L);
+                if (nodes > label.getValue()) stats.put(key(kind, label.getKey(), type, "0"), nodes - label.getValue());
+            }
+        }
+    }
+
+    private static boolean contains(int[] columns, int column) {
+        for (int c : columns) {
+            if (c == column) return true;
+        }
+        return false;
+    }
+
+    private static int indexOf(List<String> columns, String name) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).split(" ")[0].equals(name)) return i;
+        }
+        return -1;
+    }
+
+    private static String key(String kind, String label, String type, String name) {
+        return kind + "\t" + label + "\t" + type + "\t" + name;
+    }
+
+    private static void add(Map<String, Long> stats, String key, long n) {
+        stats.merge(key, n, Long::sum);
+    }
+
+    /**
+     * @param kind  Kind of statistic.
+     * @param label Label it is for, or the empty string.
+     * @param type  Type of relationship it is for, or the empty string.
+     * @param name  Name it is for, or the empty string.
+     * @return The statistic, or 0 if it was not gathered.
+     */
+    public long get(String kind, String label, String type, String name) {
+        return stats.getOrDefault(key(kind, label, type, name), 0L);
+    }
+
+    /**
+     * @param label Label of the nodes, or the empty string for all nodes.
+     * @return Number of nodes with the label.
+     */
+    public long getNodeCount(String label) {
+        return get(NODES, label, "", "");
+    }
+
+    /**
+     * @param type Type of relationship, or the empty string for all relationships.
+     * @return Number of relationships of the type.
+     */
+    public long getEdgeCount(String type) {
+        return get(EDGES, "", type, "");
+    }
+
+    /**
+     * @param label    Label of the nodes.
+     * @param type     Type of relationship.
+     * @param outgoing True for the relationships leaving the nodes, otherwise those entering them.
+     * @return Average number of relationships of the type leaving or entering a node with the label.
+     */
+    public double getAverageDegree(String label, String type, boolean outgoing) {
+        long nodes = getNodeCount(label);
+        if (nodes == 0) return 0;
+        return (double) get(outgoing ? OUT_DEGREE : IN_DEGREE, label, type, "") / nodes;
+    }
+
+    /**
+     * @param labelOrType Label of the nodes, or type of the relationships, having the property.
+     * @param property    Name of the property.
+     * @return Estimated number of distinct values of the property.
+     */
+    public long getDistinctValues(String labelOrType, String property) {
+        long distinct = get(DISTINCT, labelOrType, "", property);
+        return (distinct > 0) ? distinct : get(DISTINCT, "", labelOrType, property);
+    }
+
+    /**
+     * @return Each statistic as a row of (kind, label, type, name, value).
+     */
+    public List<Object[]> getRows() {
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<String, Long> e : stats.entrySet()) {
+            String[] k = e.getKey().split("\t", -1);
+            rows.add(new Object[]{k[0], k[1], k[2], k[3], e.getValue()});
+        }
+        return rows;
+    }
+
+    /**
+     * @param older Statistics of an earlier version of the graph.
+     * @return The statistics that are new, or have changed since the older version, as rows of (kind,
+     * label, type, name, value).
+     */
+    public List<Object[]> getRowsChangedFrom(GraphStatistics older) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<String, Long> e : stats.entrySet()) {
+            if (e.getValue().equals(older.stats.get(e.getKey()))) continue;
+            String[] k = e.getKey().split("\t", -1);
+            rows.add(new Object[]{k[0], k[1], k[2], k[3], e.getValue()});
+        }
+        return rows;
+    }
+
+    /**
+     * @param older Statistics of an earlier version of the graph.
+     * @return The statistics of the older version that are no longer gathered, as rows of (kind, label,
+     * type, name).
+     */
+    public List<Object[]> getRowsRemovedFrom(GraphStatistics older) {
+        List<Object[]> rows = new ArrayList<>();
+        for (String key : older.stats.keySet()) {
+            if (!stats.containsKey(key)) rows.add(key.split("\t", -1));
+        }
+        return rows;
+    }
+
+    /**
+     * Write the statistics as text, one statistic per line with its kind, label, type, name and value
+     * separated by tabs.
+     */
+    public void save(String file) throws IOException {
+        BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        for (Map.Entry<String, Long> e : stats.entrySet()) {
+            bw.write(e.getKey() + "\t" + e.getValue());
+            bw.newLine();
+        }
+        bw.close();
+    }
+
+    /**
+     * @param file Statistics saved by an earlier conversion.
+     * @return The statistics, or null if there are none.
+     * @throws IOException Error reading the statistics.
+     */
+    public static GraphStatistics load(String file) throws IOException {
+        if (!new File(file).exists()) return null;
+
+        Map<String, Long> stats = new LinkedHashMap<>();
+        BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        String line;
+        while ((line = br.readLine()) != null) {
+            int split = line.lastIndexOf('\t');
+            stats.put(line.substring(0, split), Long.parseLong(line.substring(split + 1)));
+        }
+        br.close();
+        return new GraphStatistics(stats);
+    }
+
+    /**
+     * HyperLogLog sketch of the distinct values of a property, which estimates their number in a fixed
+     * amount of memory (4096 registers, with a standard error of about 1.6%).
+     */
+    private static class Sketch {
+        private static final int BITS = 12;
+        private static final int REGISTERS = 1 << BITS;
+
+        private final byte[] registers = new byte[REGISTERS];
+        private long count = 0;
+
+        void add(String value) {
+            count++;
+            long h = hash(value);
+            int register = (int) (h >>> (64 - BITS));
+            int rank = Math.min(Long.numberOfLeadingZeros(h << BITS), 64 - BITS) + 1;
+            if (rank > registers[register]) registers[register] = (byte) rank;
+        }
+
+        long estimate() {
+            double sum = 0;
+            int zeros = 0;
+            for (byte r : registers) {
+                sum += 1.0 / (1L << r);
+                if (r == 0) zeros++;
+            }
+            double estimate = (0.7213 / (1 + 1.079 / REGISTERS)) * REGISTERS * REGISTERS / sum;
+            // few distinct values are better estimated by the number of registers still empty.
+            if (estimate <= 2.5 * REGISTERS && zeros > 0) estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+            return Math.min(Math.round(estimate), count);
+        }
+    }
+
+    // 64 bit FNV-1a, with the bits then mixed (as in MurmurHash3) so that the high bits are well spread.
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb3f97a6d1a2fL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,173 @@
+package schemaConversion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Memory-mapped view of the dump file from Neo4J. The file is divided into byte ranges that each
+ * begin with a create statement, so the ranges can be parsed independently. Each range is mapped
+ * and parsed in place when its unit of work runs. The line breaks inside a statement are
+ * removed and quotes are escaped for SQL at the same time, so no preprocessed copy of the dump is
+ * written.
+ * <p>
+ * A MappedByteBuffer can address at most 2GB, so no range is made larger than MAX_RANGE bytes.
+ */
+class MappedDump {
+    // largest number of bytes (before alignment to a statement) mapped at once.
+    private static final long MAX_RANGE = 1L << 30;
+    // number of bytes read at a time when looking for the start of a statement.
+    private static final int SCAN_WINDOW = 64 * 1024;
+    private static final byte[] CREATE = "create".getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final long size;
+    private final AtomicLong bytesParsed = new AtomicLong(0);
+    private int previousPercent = 0;
+
+    MappedDump(String file) throws IOException {
+        this.channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    /**
+     * Divide the dump, from a given position onwards, into ranges of roughly equal size, where every
+     * range but the first starts at the beginning of a line starting with create.
+     *
+     * @param from      Position to start from, which is 0 or the start of a statement (such as the end
+     *                  of a range parsed before a checkpoint).
+     * @param rangeSize Approximate size of each range in bytes (capped at MAX_RANGE).
+     * @param minRanges Minimum number of ranges to create.
+     * @return List of {start, end} byte offsets, in the order of the dump.
+     * @throws IOException Error reading the dump.
+     */
+    List<long[]> split(long from, long rangeSize, int minRanges) throws IOException {
+        rangeSize = Math.min(rangeSize, MAX_RANGE);
+        long remaining = size - from;
+        long numRanges = Math.max(minRanges, (remaining + rangeSize - 1) / rangeSize);
+        List<long[]> ranges = new ArrayList<>();
+        bytesParsed.set(from);
+
+        long start = from;
+        for (long i = 1; i <= numRanges && start < size; i++) {
+            long end = (i == numRanges) ? size : nextStatement(Math.max(start, from + remaining * i / numRanges));
+            if (end > start) ranges.add(new long[]{start, end});
+            start = end;
+        }
+        return ranges;
+    }
+
+    /**
+     * Find the first statement beginning at or after a position in the dump.
+     *
+     * @param from Position in the dump.
+     * @return Offset of the start of the statement, or the size of the dump if there is none.
+     * @throws IOException Error reading the dump.
+     */
+    private long nextStatement(long from) throws IOException {
+        if (from == 0) return 0;
+
+        ByteBuffer buf = ByteBuffer.allocate(SCAN_WINDOW);
+        // start on the byte before, so a line break immediately before from is seen.
+        long pos = from - 1;
+
+        while (true) {
+            buf.clear();
+            int n = channel.read(buf, pos);
+            if (n <= CREATE.length) return size;
+
+            for (int i = 0; i + CREATE.length < n; i++) {
+                if (isLineBreak(buf.get(i)) && startsWithCreate(buf, i + 1, n)) return pos + i + 1;
+            }
+
+            if (pos + n >= size) return size;
+            // overlap the windows so a statement start is not missed across the boundary.
+            pos += n - CREATE.length;
+        }
+    }
+
+    /**
+     * Parse one range of the dump in place. Lines beginning with create start a new statement, empty
+     * lines are ignored, and any other line is joined on to the current statement (the dump from Neo4J
+     * contains line breaks within property values).
+     *
+     * @param range  {start, end} byte offsets of the range.
+     * @param action Work to perform on each complete statement.
+     * @throws IOException Error mapping the dump.
+     */
+    void forEachStatement(long[] range, Consumer<String> action) throws IOException {
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, range[0], range[1] - range[0]);
+        ByteBuffer view = map.duplicate();
+        int limit = map.limit();
+
+        byte[] statement = new byte[4096];
+        // -1 until the first create statement of the range has been found.
+        int length = -1;
+        int lineStart = 0;
+
+        for (int i = 0; i <= limit; i++) {
+            if (i < limit && !isLineBreak(map.get(i))) continue;
+
+            int lineLength = i - lineStart;
+            if (lineLength > 0) {
+                if (startsWithCreate(map, lineStart, limit)) {
+                    if (length >= 0) action.accept(decode(statement, length));
+                    length = 0;
+                }
+                if (length >= 0) {
+                    if (length + lineLength > statement.length) {
+                        byte[] larger = new byte[Math.max(statement.length * 2, length + lineLength)];
+                        System.arraycopy(statement, 0, larger, 0, length);
+                        statement = larger;
+                    }
+                    view.position(lineStart);
+                    view.get(statement, length, lineLength);
+                    length += lineLength;
+                }
+            }
+            lineStart = i + 1;
+        }
+        if (length >= 0) action.accept(decode(statement, length));
+
+        printProgress(bytesParsed.addAndGet(range[1] - range[0]));
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    private synchronized void printProgress(long parsed) {
+        int percent = (int) (parsed * 100 / size);
+        if ((previousPercent + 5) < percent) {
+            System.out.println(percent + "% read.");
+            previousPercent = percent;
+        }
+    }
+
+    /**
+     * Convert a statement to text, escaping characters that will not work in SQL (' replaced with '').
+     */
+    private static String decode(byte[] statement, int length) {
+        return new String(statement, 0, length, StandardCharsets.UTF_8).replace("'", "''");
+    }
+
+    private static boolean isLineBreak(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    private static boolean startsWithCreate(ByteBuffer buf, int index, int limit) {
+        if (index + CREATE.length > limit) return false;
+        for (int k = 0; k < CREATE.length; k++) {
+            if (buf.get(index + k) != CREATE[k]) return false;
+        }
+        return true;
+    }
+}
@@ -4,267 +4,178 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
-import java.io.BufferedWriter;
-import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.util.ArrayList;
+import java.io.OutputStream;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 
 /**
- * Each dump file is split into chunks which are operated on by individual threads using this
- * class.
+ * A unit of work in the schema conversion pipeline. Each unit is either a small byte range of the
+ * memory-mapped dump, which is parsed in place, or (when the dump cannot be mapped) a batch of
+ * statements read from the stream. Units are parsed in parallel and their output is held until the
+ * unit is written to the final nodes and edges files, in the order of the dump.
  */
-class PerformWork implements Runnable {
-    private ArrayList<String> lines;
-    private BufferedWriter bwNodes;
-    private BufferedWriter bwEdges;
-
-    PerformWork(ArrayList<String> strings, String file) {
-        this.lines = strings;
-
-        FileOutputStream fosNodes;
-        FileOutputStream fosEdges;
-
-        try {
-            //Construct BufferedReader from InputStreamReader
-            fosNodes = new FileOutputStream(SchemaTranslate.nodesFile.replace(".txt", file + ".txt"));
-            this.bwNodes = new BufferedWriter(new OutputStreamWriter(fosNodes));
-
-            //Construct BufferedReader from InputStreamReader
-            fosEdges = new FileOutputStream(SchemaTranslate.edgesFile.replace(".txt", file + ".txt"));
-            this.bwEdges = new BufferedWriter(new OutputStreamWriter(fosEdges));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+class PerformWork implements Callable<PerformWork> {
+    private MappedDump dump;
+    private long[] range;
+    private List<String> statements;
+    // position in the dump at the end of this unit: a byte offset if the dump is mapped, otherwise
+    // the number of statements read so far.
+    final long position;
+    // parsed nodes and relationships, in the binary intermediate format (see GraphFormat), which
+    // are compressed once the whole unit has been parsed.
+    private ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+    private ByteArrayOutputStream edges = new ByteArrayOutputStream();
+    private GraphDictionary dictionary;
+    // types of the columns seen in this unit, merged into the shared inference when parsed.
+    private SchemaInference inference;
+    private SchemaInference.Local types = new SchemaInference.Local();
+
+    PerformWork(MappedDump dump, long[] range, SchemaInference inference, GraphDictionary dictionary) {
+        this.dump = dump;
+        this.range = range;
+        this.position = range[1];
+        this.inference = inference;
+        this.dictionary = dictionary;
+    }
+
+    PerformWork(List<String> statements, long position, SchemaInference inference, GraphDictionary dictionary) {
+        this.statements = statements;
+        this.position = position;
+        this.inference = inference;
+        this.dictionary = dictionary;
     }
 
     /**
-     * Runnable methods that parses the Neo4J dump into a JSON representation that is used later on
+     * Parses the unit of the Neo4J dump into the intermediate representation that is used later on
      * when executing the new relations on Postgres.
+     *
+     * @return This unit, now holding the parsed output.
+     * @throws IOException Error mapping the dump.
+     */
+    public PerformWork call() throws IOException {
+        if (dump != null) {
+            dump.forEachStatement(range, this::parseStatement);
+        } else {
+            for (String s : statements) {
+                parseStatement(s);
+            }
+        }
+
+        inference.merge(types);
+        nodes = GraphFormat.compress(nodes);
+        edges = GraphFormat.compress(edges);
+        return this;
+    }
+
+    /**
+     * Append the output of this unit to the final files.
+     *
+     * @param osNodes Output of the nodes file.
+     * @param osEdges Output of the edges file.
+     * @throws IOException Error writing to the files.
      */
-    public void run() {
-        Set<Map.Entry<String, JsonElement>> entries;
+    void writeTo(OutputStream osNodes, OutputStream osEdges) throws IOException {
+        nodes.writeTo(osNodes);
+        edges.writeTo(osEdges);
+    }
+
+    /**
+     * Parse a single create statement of the dump.
+     *
+     * @param s Create statement for one node or relationship.
+     */
+    private void parseStatement(String s) {
         Matcher m;
 
-        int totalLines = lines.size();
-        int linesRead = 0;
-        int previousPercent = 0;
+        // remove CREATE characters
+        s = s.substring(7).toLowerCase();
 
-        // temporary hack for the OPUS graphs where some names are lists and others are not.
-        // intend to store in postgres as an array, and therefore single names not in list
-        // format will be converted to a singleton list.
-        boolean opusLists = false;
+        //using regex to decide between node or relationship
+        m = SchemaTranslate.patternN.matcher(s);
 
-        for (String s : lines) {
-            // remove CREATE characters
-            s = s.substring(7).toLowerCase();
+        // is a node
+        if (m.find()) {
+            // firstSplit[0] contains id and node label
+            // firstSplit[1] contains properties of the node
+            String[] firstSplit = s.split("` ");
 
-            //using regex to decide between node or relationship
-            m = SchemaTranslate.patternN.matcher(s);
+            String[] idAndTable = firstSplit[0].split(":`");
+            int id = Integer.parseInt(idAndTable[0].substring(2));
 
-            // is a node
-            if (m.find()) {
-                // firstSplit[0] contains id and node label
-                // firstSplit[1] contains properties of the node
-                String[] firstSplit = s.split("` ");
-
-                String[] idAndTable = firstSplit[0].split(":`");
-                int id = Integer.parseInt(idAndTable[0].substring(2));
-
-                for (int i = 2; i < idAndTable.length; i++) {
-                    idAndTable[1] += idAndTable[i];
-                }
-
-                String nodeLabel;
-                idAndTable[1] = idAndTable[1].replace("`", ", ");
-                nodeLabel = idAndTable[1];
-                if (nodeLabel.equals("process")) opusLists = true;
-
-                String props = firstSplit[1].replace("`", "");
-
-                JsonObject o = (JsonObject) SchemaTranslate.parser.parse(props.substring(0, props.length() - 1));
-
-                if (o.has("name") && !o.get("name").isJsonArray()) {
-                    String name = o.get("name").getAsString();
-                    JsonArray j_array = new JsonArray();
-                    j_array.add(name);
-                    o.remove("name");
-                    o.add("name", j_array);
-                }
-
-                o.addProperty("id", id);
-                o.addProperty("label", nodeLabel);
-
-                entries = o.entrySet();
-
-                for (Map.Entry<String, JsonElement> entry : entries) {
-                    addToLabelMap(nodeLabel, entry.getKey(), entry.getValue());
-
-                    if (!SchemaTranslate.nodeRelLabels.contains(entry.getKey() + " TEXT") &&
-                            !SchemaTranslate.nodeRelLabels.contains(entry.getKey() + " INT") &&
-                            !SchemaTranslate.nodeRelLabels.contains(entry.getKey() + " BIGINT") &&
-                            !SchemaTranslate.nodeRelLabels.contains(entry.getKey() + " TEXT[]")) {
-                        if (entry.getValue().isJsonArray()) {
-                            SchemaTranslate.nodeRelLabels.add(entry.getKey() + " TEXT[]");
-                        } else {
-                            try {
-                                // another OPUS hack
-                                if (entry.getKey().equals("mono_time")) throw new NumberFormatException();
-                                Integer.parseInt(entry.getValue().getAsString());
-                                SchemaTranslate.nodeRelLabels.add(entry.getKey() + " INT");
-                            } catch (NumberFormatException nfe) {
-                                try {
-                                    Long.parseLong(entry.getValue().getAsString());
-                                    SchemaTranslate.nodeRelLabels.add(entry.getKey() + " BIGINT");
-                                } catch (NumberFormatException nfe2) {
-                                    String textToAdd = entry.getKey() + " TEXT";
-                                    SchemaTranslate.nodeRelLabels.add(textToAdd);
-                                }
-                            }
-                        }
-                    }
-                }
-
-                try {
-                    bwNodes.write(o.toString());
-                    bwNodes.newLine();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            } else {
-                // relationship to add to SQL
-                s = s.replace("`", "");
-
-                //items[0] is left part of relationship
-                //items[1] is relationship identifier
-                //items[2] is the right part (has direction in example but ignoring currently)
-                String[] items = s.split("\\)-");
-
-                int idL = Integer.parseInt(items[0].substring(2, items[0].length()));
-
-                String[] innerItems = items[1].split("->");
-                int idR = Integer.parseInt(innerItems[1].substring(2, innerItems[1].length() - 1));
-
-                String relationship = innerItems[0].substring(2, innerItems[0].length() - 1);
-
-                // does the relationship have properties
-                m = SchemaTranslate.patternR.matcher(s);
-
-                JsonObject o = null;
-
-                if (m.find()) {
-                    String[] relAndProps = relationship.split(" \\{");
-                    relationship = relAndProps[0];
-                    relAndProps[1] = "{".concat(relAndProps[1]);
-                    o = (JsonObject) SchemaTranslate.parser.parse(relAndProps[1]);
-                }
-
-                if (o == null) o = new JsonObject();
-
-                o.addProperty("idL", idL);
-                o.addProperty("idR", idR);
-                o.addProperty("type", relationship);
-
-                if (!SchemaTranslate.relTypes.contains(relationship)) {
-                    SchemaTranslate.relTypes.add(relationship);
-                }
-
-                entries = o.entrySet();
-
-
-                for (Map.Entry<String, JsonElement> entry : entries) {
-                    if (!SchemaTranslate.edgesRelLabels.contains(entry.getKey() + " TEXT") &&
-                            !SchemaTranslate.edgesRelLabels.contains(entry.getKey() + " INT") &&
-                            !SchemaTranslate.edgesRelLabels.contains(entry.getKey() + " BIGINT") &&
-                            !SchemaTranslate.edgesRelLabels.contains(entry.getKey() + " TEXT[]")) {
-                        try {
-                            Integer.parseInt(entry.getValue().getAsString());
-                            SchemaTranslate.edgesRelLabels.add(entry.getKey() + " INT");
-                        } catch (NumberFormatException nfe) {
-                            try {
-                                Long.parseLong(entry.getValue().getAsString());
-                                SchemaTranslate.edgesRelLabels.add(entry.getKey() + " BIGINT");
-                            } catch (NumberFormatException nfe2) {
-                                String textToAdd = entry.getKey() + " TEXT";
-                                if (entry.getKey().equals("name") && opusLists) textToAdd = textToAdd + "[]";
-                                SchemaTranslate.edgesRelLabels.add(textToAdd);
-                            }
-                        }
-                    }
-                }
-
-                try {
-                    bwEdges.write(o.toString());
-                    bwEdges.newLine();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+            for (int i = 2; i < idAndTable.length; i++) {
+                idAndTable[1] += idAndTable[i];
             }
 
-            linesRead++;
-            int percent = (linesRead * 100 / totalLines);
-            if (previousPercent < (percent - 5)) {
-                System.out.println(percent + "% read.");
-                previousPercent = percent;
+            String nodeLabel;
+            idAndTable[1] = idAndTable[1].replace("`", ", ");
+            nodeLabel = idAndTable[1];
+
+            String props = firstSplit[1].replace("`", "");
+
+            JsonObject o = (JsonObject) SchemaTranslate.parser.parse(props.substring(0, props.length() - 1));
+
+            // temporary hack for the OPUS graphs where some names are lists and others are not.
+            // intend to store in postgres as an array, and therefore single names not in list
+            // format will be converted to a singleton list.
+            if (o.has("name") && !o.get("name").isJsonArray()) {
+                String name = o.get("name").getAsString();
+                JsonArray j_array = new JsonArray();
+                j_array.add(name);
+                o.remove("name");
+                o.add("name", j_array);
             }
-        }
 
-        try {
-            bwNodes.close();
-            bwEdges.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
+            o.addProperty("id", id);
+            o.addProperty("label", nodeLabel);
 
-    private void addToLabelMap(String nodeLabel, String key, JsonElement value) {
-        if (SchemaTranslate.labelMappings.keySet().contains(nodeLabel)) {
-            String currentValue = SchemaTranslate.labelMappings.get(nodeLabel);
-
-            if (!currentValue.contains(key)) {
-                if (value.isJsonArray()) {
-                    SchemaTranslate.labelMappings.put(nodeLabel, currentValue + ", " + key + " TEXT[]");
-                } else {
-                    String testValue = value.getAsString();
-                    try {
-                        // another OPUS hack
-                        if (key.equals("mono_time")) throw new NumberFormatException();
-                        Integer.parseInt(testValue);
-                        SchemaTranslate.labelMappings.put(nodeLabel, currentValue + ", " + key + " INT");
-                    } catch (NumberFormatException nfe) {
-                        try {
-                            Long.parseLong(testValue);
-                            SchemaTranslate.labelMappings.put(nodeLabel, currentValue + ", " + key + " BIGINT");
-                        } catch (NumberFormatException nfe2) {
-                            String textToAdd = currentValue + ", " + key + " TEXT";
-                            SchemaTranslate.labelMappings.put(nodeLabel, textToAdd);
-                        }
-                    }
-                }
+            for (Map.Entry<String, JsonElement> entry : o.entrySet()) {
+                types.addNodeProperty(nodeLabel, entry.getKey(), entry.getValue());
             }
+
+            GraphFormat.writeRecord(nodes, o, dictionary);
         } else {
-            if (value.isJsonArray()) {
-                SchemaTranslate.labelMappings.put(nodeLabel, "id INT, " + key + " TEXT[]");
-            } else {
-                String testValue = value.getAsString();
-                try {
-                    // another OPUS hack
-                    if (key.equals("mono_time")) throw new NumberFormatException();
-                    Integer.parseInt(testValue);
-                    SchemaTranslate.labelMappings.put(nodeLabel, "id INT, " + key + " INT");
-                } catch (NumberFormatException nfe) {
-                    try {
-                        Long.parseLong(testValue);
-                        SchemaTranslate.labelMappings.put(nodeLabel, "id INT, " + key + " BIGINT");
-                    } catch (NumberFormatException nfe2) {
-                        String textToAdd = "id INT, " + key + " TEXT";
-                        SchemaTranslate.labelMappings.put(nodeLabel, textToAdd);
-                    }
-                }
+            // relationship to add to SQL
+            s = s.replace("`", "");
+
+            //items[0] is left part of relationship
+            //items[1] is relationship identifier
+            //items[2] is the right part (has direction in example but ignoring currently)
+            String[] items = s.split("\\)-");
+
+            int idL = Integer.parseInt(items[0].substring(2, items[0].length()));
+
+            String[] innerItems = items[1].split("->");
+            int idR = Integer.parseInt(innerItems[1].substring(2, innerItems[1].length() - 1));
+
+            String relationship = innerItems[0].substring(2, innerItems[0].length() - 1);
+
+            // does the relationship have properties
+            m = SchemaTranslate.patternR.matcher(s);
+
+            JsonObject o = null;
+
+            if (m.find()) {
+                String[] relAndProps = relationship.split(" \\{");
+                relationship = relAndProps[0];
+                relAndProps[1] = "{".concat(relAndProps[1]);
+                o = (JsonObject) SchemaTranslate.parser.parse(relAndProps[1]);
             }
+
+            if (o == null) o = new JsonObject();
+
+            o.addProperty("idL", idL);
+            o.addProperty("idR", idR);
+            o.addProperty("type", relationship);
+
+            for (Map.Entry<String, JsonElement> entry : o.entrySet()) {
+                types.addEdgeProperty(relationship, entry.getKey(), entry.getValue());
+            }
+
+            GraphFormat.writeRecord(edges, o, dictionary);
         }
     }
 }
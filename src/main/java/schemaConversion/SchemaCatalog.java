@@ -0,0 +1,325 @@
+package schemaConversion;
+
+import production.Reagan_Main_V4;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The schema of the converted graph, as needed when translating queries: the columns of the nodes
+ * relation (with their types), the relation each label is stored in, the label relation holding
+ * each property that belongs to a single label, the types of relationship, the ids of the labels and
+ * the statistics of the graph. The catalog is loaded once and never changes, so it may be read by
+ * several threads at once without locking.
+ * <p>
+ * It is saved by the schema conversion as catalog.bin in the workspace area, alongside the meta
+ * files it replaces. The binary file starts with a version number, and if it is missing or of
+ * another version the catalog is read from the meta files instead.
+ */
+public final class SchemaCatalog {
+    private static final int MAGIC = 0x43325343;
+    private static final int VERSION = 1;
+    private static final String catalogFile = "/catalog.bin";
+
+    // catalog of the workspace area, loaded when first used.
+    private static volatile SchemaCatalog current = null;
+
+    private final List<String> nodeColumns;
+    private final Map<String, String> propertyTypes;
+    private final List<String> tables;
+    private final Map<String, String> propertyTables;
+    private final List<String> relTypes;
+    private final Map<String, Integer> labelIds;
+    private final GraphStatistics statistics;
+    private final long version;
+    // relation resolved for each label asked about so far.
+    private final Map<String, String> labelTables = new ConcurrentHashMap<>();
+
+    private SchemaCatalog(List<String> nodeColumns, Map<String, String> propertyTypes, List<String> tables,
+                          Map<String, String> propertyTables, List<String> relTypes, Map<String, Integer> labelIds,
+                          GraphStatistics statistics) {
+        this.nodeColumns = Collections.unmodifiableList(nodeColumns);
+        this.propertyTypes = Collections.unmodifiableMap(propertyTypes);
+        this.tables = Collections.unmodifiableList(tables);
+        this.propertyTables = Collections.unmodifiableMap(propertyTables);
+        this.relTypes = Collections.unmodifiableList(relTypes);
+        this.labelIds = Collections.unmodifiableMap(labelIds);
+        this.statistics = statistics;
+        // the types of the columns and the statistics do not change the translations, so are left out.
+        this.version = GraphStatistics.hash(nodeColumns + "\n" + tables + "\n" + new TreeMap<>(propertyTables) +
+                "\n" + relTypes + "\n" + labelIds);
+    }
+
+    /**
+     * @return The catalog of the schema in the workspace area.
+     */
+    public static SchemaCatalog get() {
+        SchemaCatalog catalog = current;
+        if (catalog == null) {
+            synchronized (SchemaCatalog.class) {
+                if (current == null) current = load(Reagan_Main_V4.workspaceArea);
+                catalog = current;
+            }
+        }
+        return catalog;
+    }
+
+    /**
+     * Load the catalog of the workspace area again, as the schema has been converted since it was last
+     * loaded.
+     */
+    public static synchronized void reload() {
+        current = load(Reagan_Main_V4.workspaceArea);
+    }
+
+    /**
+     * Build the catalog of the graph most recently converted by SchemaTranslate.
+     *
+     * @param columns Columns of the nodes relation, each in the form "name TYPE".
+     * @return The catalog.
+     */
+    public static SchemaCatalog build(List<String> columns) {
+        List<String> nodeColumns = new ArrayList<>();
+        Map<String, String> propertyTypes = new HashMap<>();
+        for (String col : columns) {
+            String name = col.split(" ")[0];
+            nodeColumns.add(name);
+            propertyTypes.put(name, col.substring(name.length() + 1));
+        }
+
+        Map<String, List<String>> labelProperties = new LinkedHashMap<>();
+        for (Map.Entry<String, String> label : new TreeMap<>(SchemaTranslate.labelMappings).entrySet()) {
+            List<String> props = new ArrayList<>();
+            for (String prop : label.getValue().split(", ")) {
+                props.add(prop.split(" ")[0]);
+            }
+            labelProperties.put(label.getKey().replace(", ", "_"), props);
+        }
+
+        return new SchemaCatalog(nodeColumns, propertyTypes, new ArrayList<>(labelProperties.keySet()),
+                getPropertyTables(labelProperties), new ArrayList<>(SchemaTranslate.relTypes),
+                new LinkedHashMap<>(SchemaTranslate.labelIds), null);
+    }
+
+    /**
+     * A property only gets a relation of its own when it belongs to a single label.
+     */
+    private static Map<String, String> getPropertyTables(Map<String, List<String>> labelProperties) {
+        Map<String, String> propertyTables = new HashMap<>();
+        Set<String> shared = new HashSet<>();
+        for (Map.Entry<String, List<String>> label : labelProperties.entrySet()) {
+            for (String prop : label.getValue()) {
+                if (propertyTables.containsKey(prop)) shared.add(prop);
+                else propertyTables.put(prop, label.getKey());
+            }
+        }
+        propertyTables.keySet().removeAll(shared);
+        return propertyTables;
+    }
+
+    /**
+     * @param type Labels of a node, separated by commas, or null.
+     * @return Relation storing the nodes with the labels, which is the label relation if exactly one
+     * label relation matches, and otherwise the nodes relation.
+     */
+    public String getLabelTable(String type) {
+        if (type == null) return "nodes";
+        return labelTables.computeIfAbsent(type, t -> {
+            String table = "nodes";
+            int matches = 0;
+            for (String candidate : tables) {
+                if (candidate.contains(t)) {
+                    table = candidate;
+                    matches++;
+                }
+            }
+            return (matches > 1) ? "nodes" : table;
+        });
+    }
+
+    /**
+     * @param property Name of a property.
+     * @return The label relation holding the property, or null if the property belongs to several labels
+     * (or none).
+     */
+    public String getPropertyTable(String property) {
+        return (property == null) ? null : propertyTables.get(property);
+    }
+
+    /**
+     * @return Names of the columns of the nodes relation.
+     */
+    public List<String> getNodeColumns() {
+        return nodeColumns;
+    }
+
+    /**
+     * @return Names of the properties of the nodes, which are the columns other than id and label.
+     */
+    public List<String> getNodeProperties() {
+        List<String> props = new ArrayList<>(nodeColumns);
+        props.remove("id");
+        props.remove("label");
+        return props;
+    }
+
+    /**
+     * @param property Name of a column of the nodes relation.
+     * @return SQL type of the column, or null if it is not known.
+     */
+    public String getPropertyType(String property) {
+        return propertyTypes.get(property);
+    }
+
+    public List<String> getRelTypes() {
+        return relTypes;
+    }
+
+    /**
+     * @param label A single label.
+     * @return Id of the label, or 0 if the label is not in the schema (the ids start at 1).
+     */
+    public int getLabelId(String label) {
+        return labelIds.getOrDefault(label, 0);
+    }
+
+    /**
+     * @return Statistics of the graph, or null if they were not gathered.
+     */
+    public GraphStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return Version of the schema, which differs whenever the schema has changed in a way that may
+     * change the translation of a query.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public void save(String workspace) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(workspace + catalogFile + ".tmp")));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(nodeColumns.size());
+        for (String col : nodeColumns) {
+            out.writeUTF(col);
+            out.writeUTF(propertyTypes.getOrDefault(col, ""));
+        }
+        writeList(out, tables);
+        out.writeInt(propertyTables.size());
+        for (Map.Entry<String, String> e : propertyTables.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeUTF(e.getValue());
+        }
+        writeList(out, relTypes);
+        writeList(out, new ArrayList<>(labelIds.keySet()));
+        out.close();
+        Checkpoint.replace(workspace + catalogFile + ".tmp", workspace + catalogFile);
+    }
+
+    /**
+     * @param workspace Workspace area of the conversion.
+     * @return The catalog saved by the conversion, or read from its meta files if it was not saved.
+     */
+    static SchemaCatalog load(String workspace) {
+        GraphStatistics statistics = null;
+        try {
+            statistics = GraphStatistics.load(workspace + "/statistics.txt");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        File file = new File(workspace + catalogFile);
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+                    List<String> nodeColumns = new ArrayList<>();
+                    Map<String, String> propertyTypes = new HashMap<>();
+                    int n = in.readInt();
+                    for (int i = 0; i < n; i++) {
+                        String col = in.readUTF();
+                        nodeColumns.add(col);
+                        propertyTypes.put(col, in.readUTF());
+                    }
+                    List<String> tables = readList(in);
+                    Map<String, String> propertyTables = new HashMap<>();
+                    n = in.readInt();
+                    for (int i = 0; i < n; i++) {
+                        propertyTables.put(in.readUTF(), in.readUTF());
+                    }
+                    List<String> relTypes = readList(in);
+                    return new SchemaCatalog(nodeColumns, propertyTypes, tables, propertyTables, relTypes,
+                            toIds(readList(in)), statistics);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return loadMetaFiles(workspace, statistics);
+    }
+
+    /**
+     * Read the catalog from the meta files, which do not record the types of the columns.
+     */
+    private static SchemaCatalog loadMetaFiles(String workspace, GraphStatistics statistics) {
+        Map<String, List<String>> labelProperties = new LinkedHashMap<>();
+        List<String> current = null;
+        for (String line : readLines(workspace + "/meta_labels.txt")) {
+            if (line.startsWith("*")) {
+                // all the following lines in the file are properties belonging to this label type.
+                current = new ArrayList<>();
+                labelProperties.put(line.substring(1, line.length() - 1), current);
+            } else if (current != null) {
+                current.add(line);
+            }
+        }
+
+        return new SchemaCatalog(readLines(workspace + "/meta.txt"), new HashMap<>(),
+                readLines(workspace + "/meta_tables.txt"), getPropertyTables(labelProperties),
+                readLines(workspace + "/meta_rels.txt"), toIds(readLines(workspace + "/meta_label_ids.txt")),
+                statistics);
+    }
+
+    private static List<String> readLines(String file) {
+        List<String> lines = new ArrayList<>();
+        if (!new File(file).exists()) return lines;
+        try {
+            BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
+            String line;
+            while ((line = br.readLine()) != null) lines.add(line);
+            br.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return lines;
+    }
+
+    // the id of each label is its position in the list (starting at 1).
+    private static Map<String, Integer> toIds(List<String> labels) {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        for (String label : labels) {
+            ids.put(label, ids.size() + 1);
+        }
+        return ids;
+    }
+
+    private static void writeList(DataOutputStream out, List<String> list) throws IOException {
+        out.writeInt(list.size());
+        for (String s : list) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static List<String> readList(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        List<String> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            list.add(in.readUTF());
+        }
+        return list;
+    }
+}
@@ -0,0 +1,230 @@
+package schemaConversion;
+
+import com.google.gson.JsonElement;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Infers the column types of the relations created from the dump. Types are kept per (label, property)
+ * for nodes and per (relationship type, property) for relationships, and form the lattice
+ * INT < BIGINT < TEXT < TEXT[], so a column always takes the widest type seen for it.
+ * <p>
+ * Each parser thread records into its own Local instance with no locking, and merges it into the
+ * shared instance once it has finished, so type inference does not serialise the parallel parse.
+ */
+class SchemaInference {
+    // the lattice of types, ordered from narrowest to widest.
+    static final byte INT = 0;
+    static final byte BIGINT = 1;
+    static final byte TEXT = 2;
+    static final byte TEXT_ARRAY = 3;
+    private static final String[] SQL_TYPES = {"INT", "BIGINT", "TEXT", "TEXT[]"};
+
+    private final Map<String, Map<String, Byte>> nodeTypes = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Byte>> edgeTypes = new ConcurrentHashMap<>();
+    // temporary hack for the OPUS graphs (which have 'process' nodes), where the names of relationships
+    // are also stored as arrays.
+    private volatile boolean opusLists = false;
+
+    /**
+     * Types inferred by a single parser thread.
+     */
+    static class Local {
+        private final Map<String, Map<String, Byte>> nodeTypes = new HashMap<>();
+        private final Map<String, Map<String, Byte>> edgeTypes = new HashMap<>();
+        private boolean opusLists = false;
+
+        void addNodeProperty(String label, String key, JsonElement value) {
+            if (label.equals("process")) opusLists = true;
+            byte type = typeOf(value);
+            // another OPUS hack
+            if (key.equals("mono_time") && type == INT) type = BIGINT;
+            add(nodeTypes, label, key, type);
+        }
+
+        void addEdgeProperty(String relType, String key, JsonElement value) {
+            add(edgeTypes, relType, key, typeOf(value));
+        }
+
+        private static void add(Map<String, Map<String, Byte>> types, String owner, String key, byte type) {
+            Map<String, Byte> props = types.get(owner);
+            if (props == null) {
+                props = new HashMap<>();
+                types.put(owner, props);
+            }
+            // a null value gives no information about the type, but the column must still exist.
+            Byte current = props.get(key);
+            if (current == null) props.put(key, (type < 0) ? TEXT : type);
+            else if (type > current) props.put(key, type);
+        }
+    }
+
+    /**
+     * Merge the types inferred by one parser thread. Safe to call from several threads at once.
+     *
+     * @param local Types inferred by the thread.
+     */
+    void merge(Local local) {
+        merge(nodeTypes, local.nodeTypes);
+        merge(edgeTypes, local.edgeTypes);
+        if (local.opusLists) opusLists = true;
+    }
+
+    private static void merge(Map<String, Map<String, Byte>> shared, Map<String, Map<String, Byte>> local) {
+        for (Map.Entry<String, Map<String, Byte>> owner : local.entrySet()) {
+            Map<String, Byte> props = shared.computeIfAbsent(owner.getKey(), k -> new ConcurrentHashMap<>());
+            for (Map.Entry<String, Byte> prop : owner.getValue().entrySet()) {
+                props.merge(prop.getKey(), prop.getValue(), SchemaInference::widest);
+            }
+        }
+    }
+
+    private static Byte widest(Byte a, Byte b) {
+        return (a >= b) ? a : b;
+    }
+
+    /**
+     * Classify a property value. Numbers are checked without relying on exceptions, as this is
+     * called for every property in the dump.
+     *
+     * @param value Value of the property.
+     * @return Type of the value, or -1 if the value is null.
+     */
+    static byte typeOf(JsonElement value) {
+        if (value.isJsonNull()) return -1;
+        if (value.isJsonArray()) return TEXT_ARRAY;
+
+        String s = value.getAsString();
+        int start = (s.startsWith("-") || s.startsWith("+")) ? 1 : 0;
+        if (start == s.length() || s.length() - start > 19) return TEXT;
+        for (int i = start; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return TEXT;
+        }
+
+        long v;
+        try {
+            v = Long.parseLong(s);
+        } catch (NumberFormatException nfe) {
+            // too large for a BIGINT
+            return TEXT;
+        }
+        return (v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE) ? INT : BIGINT;
+    }
+
+    /**
+     * Save the types inferred so far, so that a conversion can be resumed from a checkpoint.
+     *
+     * @param file File to save the types to.
+     * @throws IOException Error writing the file.
+     */
+    void save(String file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        out.writeBoolean(opusLists);
+        writeTypes(out, nodeTypes);
+        writeTypes(out, edgeTypes);
+        out.close();
+    }
+
+    /**
+     * @param file Types saved earlier.
+     * @return Inference holding the saved types, to which further types may be merged.
+     * @throws IOException Error reading the file.
+     */
+    static SchemaInference load(String file) throws IOException {
+        SchemaInference inference = new SchemaInference();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        inference.opusLists = in.readBoolean();
+        readTypes(in, inference.nodeTypes);
+        readTypes(in, inference.edgeTypes);
+        in.close();
+        return inference;
+    }
+
+    private static void writeTypes(DataOutputStream out, Map<String, Map<String, Byte>> types) throws IOException {
+        // copied first, as other threads may still be merging into the types.
+        Map<String, Map<String, Byte>> copy = new HashMap<>();
+        for (Map.Entry<String, Map<String, Byte>> owner : types.entrySet()) {
+            copy.put(owner.getKey(), new HashMap<>(owner.getValue()));
+        }
+
+        out.writeInt(copy.size());
+        for (Map.Entry<String, Map<String, Byte>> owner : copy.entrySet()) {
+            out.writeUTF(owner.getKey());
+            out.writeInt(owner.getValue().size());
+            for (Map.Entry<String, Byte> prop : owner.getValue().entrySet()) {
+                out.writeUTF(prop.getKey());
+                out.writeByte(prop.getValue());
+            }
+        }
+    }
+
+    private static void readTypes(DataInputStream in, Map<String, Map<String, Byte>> types) throws IOException {
+        for (int i = in.readInt(); i > 0; i--) {
+            Map<String, Byte> props = new ConcurrentHashMap<>();
+            types.put(in.readUTF(), props);
+            for (int j = in.readInt(); j > 0; j--) {
+                props.put(in.readUTF(), in.readByte());
+            }
+        }
+    }
+
+    /**
+     * @return Columns of the nodes relation, in the form "name TYPE".
+     */
+    List<String> getNodeColumns() {
+        return toColumns(joinAll(nodeTypes));
+    }
+
+    /**
+     * @return Columns of the edges relation, in the form "name TYPE".
+     */
+    List<String> getEdgeColumns() {
+        Map<String, Byte> columns = joinAll(edgeTypes);
+        if (opusLists && Byte.valueOf(TEXT).equals(columns.get("name"))) columns.put("name", TEXT_ARRAY);
+        return toColumns(columns);
+    }
+
+    /**
+     * @return For each label, the columns of its own relation joined in the form "id INT, name TYPE, ...".
+     */
+    Map<String, String> getLabelColumns() {
+        Map<String, String> labels = new HashMap<>();
+        for (Map.Entry<String, Map<String, Byte>> label : nodeTypes.entrySet()) {
+            Map<String, Byte> columns = new TreeMap<>(label.getValue());
+            columns.remove("id");
+            List<String> cols = new ArrayList<>();
+            cols.add("id INT");
+            cols.addAll(toColumns(columns));
+            labels.put(label.getKey(), String.join(", ", cols));
+        }
+        return labels;
+    }
+
+    /**
+     * @return Types of relationship found in the dump.
+     */
+    List<String> getRelTypes() {
+        return new ArrayList<>(new TreeSet<>(edgeTypes.keySet()));
+    }
+
+    private static Map<String, Byte> joinAll(Map<String, Map<String, Byte>> types) {
+        Map<String, Byte> columns = new TreeMap<>();
+        for (Map<String, Byte> props : types.values()) {
+            for (Map.Entry<String, Byte> prop : props.entrySet()) {
+                columns.merge(prop.getKey(), prop.getValue(), SchemaInference::widest);
+            }
+        }
+        return columns;
+    }
+
+    private static List<String> toColumns(Map<String, Byte> columns) {
+        List<String> cols = new ArrayList<>();
+        for (Map.Entry<String, Byte> col : columns.entrySet()) {
+            cols.add(col.getKey() + " " + SQL_TYPES[col.getValue()]);
+        }
+        return cols;
+    }
+}
@@ -5,7 +5,11 @@ import production.Reagan_Main_V4;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Class that translates the graph database schema that Neo4J uses, into a set of relations
@@ -15,25 +19,33 @@ import java.util.regex.Pattern;
  * of Reagan.
  * <p>
  * The class makes use of parallel processing on the original dump file to optimise speed up.
- * The original dump file from Neo4J needs to be parsed beforehand, as it contains unnecessary
- * line breaks, as well as characters that will not work in SQL. The config.properties file
- * states the location of the 'work area', which is used as scratch space for this method.
+ * The dump is memory-mapped and divided into small ranges of whole statements, which are parsed in
+ * place on a pool of threads sized to the machine, so the file is only read once. The original dump
+ * file from Neo4J contains unnecessary line breaks, as well as characters that will not work in SQL,
+ * which are dealt with as the statements are read. The config.properties file states the location of the 'work area',
+ * which is used as scratch space for this method.
  */
 public class SchemaTranslate {
-    // storing all the labels for nodes and edges.
+    // storing all the labels for nodes and edges (filled in from the inferred types once parsed).
     public static List<String> nodeRelLabels = Collections.synchronizedList(new ArrayList<>());
     public static List<String> edgesRelLabels = Collections.synchronizedList(new ArrayList<>());
     // storing separate information for types of nodes
     public static Map<String, String> labelMappings = Collections.synchronizedMap(new HashMap<>());
+    // ids given to each individual label, stored in the labels column of the nodes relation.
+    public static Map<String, Integer> labelIds = Collections.synchronizedMap(new LinkedHashMap<>());
     // storing separate information on the types of relationships
     public static List<String> relTypes = Collections.synchronizedList(new ArrayList<>());
-    // workspace area for both nodes and edges
-    public static String nodesFile = Reagan_Main_V4.workspaceArea + "/nodes.txt";
-    public static String edgesFile = Reagan_Main_V4.workspaceArea + "/edges.txt";
+    // workspace area for both nodes and edges, in the binary intermediate format read by GraphRecordReader.
+    public static String nodesFile = Reagan_Main_V4.workspaceArea + "/nodes.bin.gz";
+    public static String edgesFile = Reagan_Main_V4.workspaceArea + "/edges.bin.gz";
+    static String dictionaryFile = Reagan_Main_V4.workspaceArea + "/dictionary.bin";
+    // snapshot of the last graph converted, used when converting a newer version incrementally.
+    public static String snapshotFile = Reagan_Main_V4.workspaceArea + "/snapshot.bin";
+    // statistics of the last graph converted (see GraphStatistics).
+    public static String statisticsFile = Reagan_Main_V4.workspaceArea + "/statistics.txt";
     // JSON Parser for creating JSON objects from the text file.
     // passed to all of the threads
     static JsonParser parser = new JsonParser();
-    private static char[] alphabet = "abcdefghijklmnopqrstuvwxyz".toCharArray();
     // regex for deciding whether a line is a node or a relationship
     private static String patternForNode = "(_\\d+:.*)";
     static Pattern patternN = Pattern.compile(patternForNode);
@@ -42,207 +54,225 @@ public class SchemaTranslate {
     private static String patternForRel = "\\{.+\\}";
     static Pattern patternR = Pattern.compile(patternForRel);
 
+    // approximate size in bytes of the unit of work parsed by a single task, kept small so a few
+    // large statements (such as the process nodes of OPUS graphs) do not leave the other cores idle.
+    private static final long UNIT_BYTES = 4L * 1024 * 1024;
+    // minimum number of units of work per core.
+    private static final int UNITS_PER_CORE = 4;
+    // number of statements in a unit of work when the dump is streamed.
+    private static final int BATCH_SIZE = 1000;
+    // number of units per core that may be parsed ahead of the writer, which bounds the memory used.
+    private static final int WINDOW_PER_CORE = 4;
+    // number of units written between checkpoints of the parse.
+    private static final int CHECKPOINT_UNITS = 64;
+
     /**
-     * Main method for translating the schema.
+     * Main method for translating the schema, without recording checkpoints.
      *
      * @param file Dump File from Neo4J.
+     * @return True if the dump was parsed successfully.
      */
-    public static void translate(String file) {
-        // perform initial preprocess of the file to remove content such as new file markers
-        // and other aspects that will break the schema converter.
-        // return number of lines if no issue, else -1
-        int count = performPreProcessFile(file);
-        if (count == -1) return;
-
-        // number of concurrent threads to work on dump file. Currently 4. Test.
-        final int segments = 4;
-        final int amountPerSeg = (int) Math.ceil(count / segments);
-        ArrayList<String>[] group = new ArrayList[segments];
-
-        for (int i = 0; i < segments; i++) {
-            group[i] = new ArrayList<>();
-        }
+    public static boolean translate(String file) {
+        return translate(file, null);
+    }
 
-        try {
-            // open correctly preparsed file
-            FileInputStream fis = new FileInputStream(file.replace(".txt", "_new.txt"));
-
-            //Construct BufferedReader from InputStreamReader
-            BufferedReader br = new BufferedReader(new InputStreamReader(fis));
-            String line;
-
-            int segNum = 0;
-            int amountInSeg = 0;
-
-            System.out.println("***SPLITTING FILE INTO SEGMENTS***");
-            while ((line = br.readLine()) != null) {
-                if (amountInSeg++ <= amountPerSeg) {
-                    group[segNum].add(line);
-                } else {
-                    segNum++;
-                    group[segNum].add(line);
-                    amountInSeg = 1;
-                }
+    /**
+     * Main method for translating the schema. The dump is divided into units of work (read), which are
+     * parsed and their types inferred in parallel on a pool sized to the machine (parse, type-infer), and
+     * then appended in order to the final nodes and edges files (write).
+     * <p>
+     * Every CHECKPOINT_UNITS units the progress is recorded in the checkpoint, and if the checkpoint
+     * is from an earlier run that failed, parsing continues from the last position recorded.
+     *
+     * @param file       Dump File from Neo4J.
+     * @param checkpoint Progress of the conversion, or null if it is not to be recorded.
+     * @return True if the dump was parsed successfully.
+     */
+    public static boolean translate(String file, Checkpoint checkpoint) {
+        SchemaInference inference;
+        if (checkpoint != null && checkpoint.isDone(Checkpoint.PARSE)) {
+            System.out.println("***PARSING ALREADY COMPLETE***\n");
+            try {
+                inference = SchemaInference.load(Checkpoint.inferenceFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
             }
-            System.out.println("\n***SPLITTING COMPLETE***\n");
+            setSchema(inference);
+            return true;
+        }
 
-            // file indicators for the threads to output on.
-            String[] files = new String[segments];
-            for (int j = 0; j < segments; j++) {
-                files[j] = String.valueOf(alphabet[j]);
-            }
+        int cores = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(cores);
+        inference = new SchemaInference();
+        GraphDictionary dictionary = new GraphDictionary();
+        boolean parsed = false;
 
-            Thread[] ts = new Thread[segments];
-            for (int i = 0; i < ts.length; i++) {
-                ts[i] = new Thread(new PerformWork(group[i], files[i]));
+        System.out.println("***PARSING***");
+        try {
+            // position in the dump parsed up to: a byte offset if it is mapped, otherwise a number of statements.
+            long position = 0;
+            long nodesBytes = 0;
+            long edgesBytes = 0;
+            if (checkpoint != null && checkpoint.getParsedPosition() > 0) {
+                position = checkpoint.getParsedPosition();
+                nodesBytes = checkpoint.getNodesBytes();
+                edgesBytes = checkpoint.getEdgesBytes();
+                inference = SchemaInference.load(Checkpoint.inferenceFile);
+                dictionary = GraphDictionary.restore(dictionaryFile);
+                System.out.println("RESUMING PARSING FROM POSITION : " + position);
             }
 
-            System.out.println("***PARSING***");
-            for (Thread q : ts) {
-                q.start();
+            UnitWriter writer = new UnitWriter(nodesBytes, edgesBytes, checkpoint, inference, dictionary);
+            // units that have been submitted but not yet written, in the order of the dump.
+            Deque<Future<PerformWork>> inFlight = new ArrayDeque<>();
+            int window = cores * WINDOW_PER_CORE;
+
+            if (new File(file).isFile() && !isCompressed(file)) {
+                // parse the dump in place from memory-mapped ranges.
+                MappedDump dump = new MappedDump(file);
+                for (long[] range : dump.split(position, UNIT_BYTES, cores * UNITS_PER_CORE)) {
+                    if (inFlight.size() == window) writer.write(inFlight.removeFirst().get());
+                    inFlight.addLast(pool.submit(new PerformWork(dump, range, inference, dictionary)));
+                }
+                while (!inFlight.isEmpty()) writer.write(inFlight.removeFirst().get());
+                dump.close();
+            } else {
+                // cannot be mapped (such as a pipe or a compressed dump), so read it in batches of
+                // statements, decompressing as it is read.
+                StreamedDump dump = new StreamedDump(openDump(file));
+                dump.skip(position);
+                List<String> batch;
+                while ((batch = dump.nextBatch(BATCH_SIZE)) != null) {
+                    position += batch.size();
+                    if (inFlight.size() == window) writer.write(inFlight.removeFirst().get());
+                    inFlight.addLast(pool.submit(new PerformWork(batch, position, inference, dictionary)));
+                }
+                while (!inFlight.isEmpty()) writer.write(inFlight.removeFirst().get());
             }
 
-            int done = 0;
-            while (done < ts.length) {
-                try {
-                    ts[done].join();
-                    done++;
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+            writer.close();
+            dictionary.save(dictionaryFile);
+            if (checkpoint != null) {
+                inference.save(Checkpoint.inferenceFile);
+                checkpoint.markDone(Checkpoint.PARSE);
             }
-            System.out.println("***PARSING COMPLETE***\n");
-
-            combineWork(files);
-
-            // remove strange duplicates appearing in the ArrayList
-            Set<String> hs = new HashSet<>();
-            hs.addAll(nodeRelLabels);
-            nodeRelLabels.clear();
-            nodeRelLabels.addAll(hs);
-            hs.clear();
-
-            hs.addAll(edgesRelLabels);
-            edgesRelLabels.clear();
-            edgesRelLabels.addAll(hs);
-            hs.clear();
-
-            hs.addAll(relTypes);
-            relTypes.clear();
-            relTypes.addAll(hs);
-        } catch (IOException e) {
+            parsed = true;
+        } catch (IOException | InterruptedException | ExecutionException e) {
             e.printStackTrace();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (!parsed) {
+            System.err.println("***PARSING FAILED***" + ((checkpoint == null) ? "" :
+                    " : continue from the last checkpoint with -resume."));
+            return false;
         }
+        System.out.println("***PARSING COMPLETE***\n");
+        setSchema(inference);
+        return true;
+    }
+
+    private static void setSchema(SchemaInference inference) {
+        nodeRelLabels.clear();
+        nodeRelLabels.addAll(inference.getNodeColumns());
+        edgesRelLabels.clear();
+        edgesRelLabels.addAll(inference.getEdgeColumns());
+        labelMappings.clear();
+        labelMappings.putAll(inference.getLabelColumns());
+        relTypes.clear();
+        relTypes.addAll(inference.getRelTypes());
     }
 
     /**
-     * Preprocess the original file to remove weird line breaks and to format
-     * correctly for insertion into a relational backend.
-     *
-     * @param file Location of the dump file.
-     * @return Number of lines in the file, or -1 if there was a failure in this method.
+     * Appends the parsed units to the nodes and edges files in the order of the dump, recording a
+     * checkpoint every CHECKPOINT_UNITS units.
      */
-    private static int performPreProcessFile(String file) {
-        System.out.println("***PRE PROCESSING FILE***");
-
-        FileInputStream fis;
-        FileOutputStream fos;
-        int count = 0;
+    private static class UnitWriter {
+        private final FileOutputStream fosNodes;
+        private final FileOutputStream fosEdges;
+        private final OutputStream osNodes;
+        private final OutputStream osEdges;
+        private final Checkpoint checkpoint;
+        private final SchemaInference inference;
+        private final GraphDictionary dictionary;
+        private int unitsSinceCheckpoint = 0;
+
+        UnitWriter(long nodesBytes, long edgesBytes, Checkpoint checkpoint, SchemaInference inference,
+                   GraphDictionary dictionary) throws IOException {
+            this.fosNodes = openAt(nodesFile, nodesBytes);
+            this.fosEdges = openAt(edgesFile, edgesBytes);
+            this.osNodes = new BufferedOutputStream(fosNodes);
+            this.osEdges = new BufferedOutputStream(fosEdges);
+            this.checkpoint = checkpoint;
+            this.inference = inference;
+            this.dictionary = dictionary;
+        }
 
-        try {
-            fis = new FileInputStream(file);
-
-            //Construct BufferedReader from InputStreamReader
-            BufferedReader br = new BufferedReader(new InputStreamReader(fis));
-            String line;
-
-            long totalBytes = new File(file).length();
-            long bytesRead = 0;
-            int previousPercent = 0;
-
-            fos = new FileOutputStream(file.replace(".txt", "_new.txt"));
-
-            //Construct BufferedReader from InputStreamReader
-            BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos));
-            String output = "";
-            boolean firstLine = true;
-
-            while ((line = br.readLine()) != null) {
-                count++;
-
-                // escape character in SQL (' replaced with '')
-                line = line.replace("'", "''");
-
-                if (line.startsWith("create")) {
-                    if (firstLine) {
-                        firstLine = false;
-                    } else {
-                        bw.write(output);
-                        bw.newLine();
-                    }
-                    output = line;
-                } else if (line.isEmpty()) {
-                    // do nothing intentionally
-                } else {
-                    output += line;
-                }
+        /**
+         * Open an intermediate file to continue writing at a given length, discarding anything written
+         * after that point.
+         */
+        private static FileOutputStream openAt(String file, long length) throws IOException {
+            FileOutputStream fos = new FileOutputStream(file, length > 0);
+            fos.getChannel().truncate(length);
+            return fos;
+        }
 
-                bytesRead += line.length();
-                int percent = (int) (bytesRead * 100 / totalBytes);
-                if ((previousPercent + 5) < percent) {
-                    System.out.println(percent + "% read.");
-                    previousPercent = percent;
-                }
+        void write(PerformWork unit) throws IOException {
+            unit.writeTo(osNodes, osEdges);
+            if (checkpoint != null && ++unitsSinceCheckpoint == CHECKPOINT_UNITS) {
+                unitsSinceCheckpoint = 0;
+                osNodes.flush();
+                osEdges.flush();
+                fosNodes.getFD().sync();
+                fosEdges.getFD().sync();
+
+                // units after this one may already have added to the dictionary and the types, which does
+                // no harm as they are parsed again (to the same ids and types) when resuming.
+                dictionary.save(dictionaryFile + ".tmp");
+                Checkpoint.replace(dictionaryFile + ".tmp", dictionaryFile);
+                inference.save(Checkpoint.inferenceFile + ".tmp");
+                Checkpoint.replace(Checkpoint.inferenceFile + ".tmp", Checkpoint.inferenceFile);
+
+                checkpoint.setParsed(unit.position, fosNodes.getChannel().position(),
+                        fosEdges.getChannel().position());
             }
-
-            br.close();
-            bw.write(output);
-            bw.flush();
-            bw.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return -1;
         }
 
-        // delete the original file as no longer needed.
-        File f = new File(file);
-        f.delete();
+        void close() throws IOException {
+            osNodes.close();
+            osEdges.close();
+        }
+    }
 
-        System.out.println("***PRE PROCESSING COMPLETE***\n");
-        return count;
+    private static boolean isCompressed(String file) {
+        return file.endsWith(".gz") || file.endsWith(".zst");
     }
 
     /**
-     * Concatenate result of individual threads to one file. One method call does this
-     * for both the nodes and relationships.
+     * Open the dump as a stream, decompressing it if it is gzip (.gz) or Zstandard (.zst) compressed.
+     * Zstandard requires the zstd-jni library to be on the classpath.
      *
-     * @param files n files resulted from reading initial dump. (where n is the number of files created from
-     *              the last step).
-     * @throws IOException Error with the text files being written to.
+     * @param file Dump File from Neo4J.
+     * @return Stream of the uncompressed dump.
+     * @throws IOException Error opening the dump.
      */
-    private static void combineWork(String[] files) throws IOException {
-        System.out.println("***COMBINING FILES***");
-        OutputStream out = null;
-        byte[] buf;
-
-        for (int i = 0; i < 2; i++) {
-            String file = (i == 0) ? nodesFile : edgesFile;
-            out = new FileOutputStream(file);
-            buf = new byte[1024];
-
-            for (String indivFile : files) {
-                InputStream in = new FileInputStream(file.replace(".txt", indivFile + ".txt"));
-                int b;
-                while ((b = in.read(buf)) >= 0) {
-                    out.write(buf, 0, b);
-                    out.flush();
-                }
+    private static InputStream openDump(String file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        if (file.endsWith(".gz")) {
+            return new GZIPInputStream(in, 1 << 16);
+        } else if (file.endsWith(".zst")) {
+            try {
+                Class<?> zstd = Class.forName("com.github.luben.zstd.ZstdInputStream");
+                return (InputStream) zstd.getConstructor(InputStream.class).newInstance(new BufferedInputStream(in));
+            } catch (ReflectiveOperationException e) {
                 in.close();
-                File f = new File(file.replace(".txt", indivFile + ".txt"));
-                f.delete();
+                throw new IOException("Reading .zst dumps requires zstd-jni (com.github.luben:zstd-jni) " +
+                        "on the classpath", e);
             }
         }
-        out.close();
-        System.out.println("\n***COMBINING COMPLETE***");
+        return in;
     }
 }
@@ -0,0 +1,69 @@
+package schemaConversion;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sequential view of a dump file from Neo4J that cannot be memory-mapped (such as a pipe or a
+ * compressed dump). The dump is read line by line and handed out in batches of complete statements,
+ * with the line breaks inside statements removed and characters that will not work in SQL escaped.
+ */
+class StreamedDump {
+    private final BufferedReader br;
+    // statement still being read, as it may continue on the following lines.
+    private String output = null;
+    private boolean finished = false;
+
+    StreamedDump(InputStream in) {
+        this.br = new BufferedReader(new InputStreamReader(in), 1 << 16);
+    }
+
+    /**
+     * Read past statements that have already been parsed (such as those before a checkpoint).
+     *
+     * @param statements Number of statements to skip.
+     * @throws IOException Error reading the dump.
+     */
+    void skip(long statements) throws IOException {
+        while (statements > 0) {
+            List<String> batch = nextBatch((int) Math.min(statements, 100000));
+            if (batch == null) return;
+            statements -= batch.size();
+        }
+    }
+
+    /**
+     * Read the next batch of statements.
+     *
+     * @param batchSize Maximum number of statements in the batch.
+     * @return Statements of the batch, or null once the dump is exhausted.
+     * @throws IOException Error reading the dump.
+     */
+    List<String> nextBatch(int batchSize) throws IOException {
+        if (finished) return null;
+
+        List<String> batch = new ArrayList<>(batchSize);
+        String line;
+
+        while (batch.size() < batchSize && (line = br.readLine()) != null) {
+            // escape character in SQL (' replaced with '')
+            line = line.replace("'", "''");
+
+            if (line.startsWith("create")) {
+                if (output != null) batch.add(output);
+                output = line;
+            } else if (!line.isEmpty() && output != null) {
+                output += line;
+            }
+        }
+
+        if (batch.size() < batchSize) {
+            // reached the end of the dump
+            finished = true;
+            br.close();
+            if (output != null) batch.add(output);
+        }
+        return batch;
+    }
+}
@@ -1,9 +1,9 @@
 package translator;
 
 import clauseObjects.DecodedQuery;
-import org.antlr.v4.runtime.ANTLRInputStream;
-import org.antlr.v4.runtime.CommonToken;
-import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import parsing_lexing.CypherLexer;
@@ -13,9 +13,18 @@ import java.util.ArrayList;
 
 /**
  * Generates tokens from the Cypher input. Uses ANTLRv4 tool.
+ * <p>
+ * The parse tree of a query is walked once by a CypherWalker, and its internal representation built
+ * from the parts of the tree the walker records (see CypherTranslator).
+ * <p>
+ * Each thread keeps its own lexer and parser, which are given the input of every query rather than
+ * created again. Queries are first parsed with the faster SLL prediction, giving up at the first
+ * syntax error, and only parsed again with full LL prediction if that fails. A syntax error found
+ * with full LL prediction is thrown as a ParseCancellationException. The prediction DFA of the parser
+ * is shared by all parsers, so stays warm from one query to the next.
  */
 public class CypherTokenizer {
-    private static CypherWalker cypherWalker;
+    private static final ThreadLocal<Parsing> parsing = ThreadLocal.withInitial(Parsing::new);
 
     /**
      * Takes Cypher query as input and returns a DecodedQuery object representing it.
@@ -26,50 +35,111 @@ public class CypherTokenizer {
      * @throws Exception
      */
     public static DecodedQuery decode(String cyp, boolean DEBUG_PRINT) throws Exception {
-        return CypherTranslator.generateDecodedQuery(getTokenList(cyp, DEBUG_PRINT), cypherWalker);
+        Parsing p = parsing.get();
+        CypherWalker cypherWalker = new CypherWalker();
+        ParseTreeWalker.DEFAULT.walk(cypherWalker, p.parse(cyp));
+
+        if (DEBUG_PRINT) cypherWalker.printInformation();
+
+        return CypherTranslator.generateDecodedQuery(cypherWalker, p.tokens);
     }
 
     /**
-     * Extract the token list from the Cypher input. Uses ANTLR classes to perform this. Some tokens
-     * are excluded, such as EOF and semi colons.
+     * Extract the token list from part of a Cypher input, without parsing it. Some tokens are
+     * excluded, such as EOF and semi colons.
      *
-     * @param cyp         Cypher input as text.
-     * @param DEBUG_PRINT Print out debug statements or not.
-     * @return A list of tokens as deciphered by the ANTLR classes, based on the openCypher grammar.
+     * @param cyp Cypher input as text.
+     * @return A list of tokens as deciphered by the ANTLR lexer, based on the openCypher grammar.
      */
-    public static ArrayList<String> getTokenList(String cyp, boolean DEBUG_PRINT) {
-        CypherLexer lexer = new CypherLexer(new ANTLRInputStream(cyp));
+    public static ArrayList<String> getTokenList(String cyp) {
+        CypherLexer lexer = parsing.get().lexer;
+        lexer.setInputStream(new ANTLRInputStream(cyp));
 
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        tokens.fill();
-        CypherParser parser = new CypherParser(tokens);
+        ArrayList<String> tokenList = new ArrayList<>();
 
-        // dangerous - take out only when sure.
-        parser.removeErrorListeners();
+        for (Token tok = lexer.nextToken(); tok.getType() != Token.EOF; tok = lexer.nextToken()) {
+            String s = tok.getText().toLowerCase();
 
-        ParseTree tree = parser.cypher();
-        ParseTreeWalker walker = new ParseTreeWalker();
+            // exclude some tokens from the list of tokens. This includes semi-colons
+            // and alias artifacts.
+            if (!" ".equals(s) && !";".equals(s) && !"as".equals(s) && !"detach".equals(s)) {
+                tokenList.add(s);
+            }
+        }
+
+        return tokenList;
+    }
 
-        cypherWalker = null;
-        cypherWalker = new CypherWalker();
-        walker.walk(cypherWalker, tree);
+    /**
+     * Lexer and parser of a thread, reset with the input of each query.
+     */
+    private static class Parsing {
+        // token types of '[' and ']', which the grammar does not name.
+        private static final int LEFT_BRACKET = CypherLexer.T__7;
+        private static final int RIGHT_BRACKET = CypherLexer.T__9;
 
-        if (DEBUG_PRINT) cypherWalker.printInformation();
+        private final CypherLexer lexer = new CypherLexer(new ANTLRInputStream(""));
+        private final CypherParser parser = new CypherParser(new CommonTokenStream(lexer));
+        private final ANTLRErrorStrategy bail = new BailErrorStrategy();
+        private final ANTLRErrorStrategy recover = new DefaultErrorStrategy();
+        // tokens of the last input parsed (a token stream cannot be reset once it has read to EOF).
+        private CommonTokenStream tokens;
 
-        ArrayList<String> tokenList = new ArrayList<>();
+        Parsing() {
+            parser.removeErrorListeners();
+            parser.addErrorListener(new BaseErrorListener() {
+                @Override
+                public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                        int charPositionInLine, String msg, RecognitionException e) {
+                    // the grammar cannot parse what follows DELETE (it expects NOT), but only the MATCH
+                    // of a delete query is translated, so errors there are recovered from.
+                    for (RuleContext ctx = parser.getContext(); ctx != null; ctx = ctx.parent) {
+                        if (ctx instanceof CypherParser.DeleteContext) return;
+                    }
+                    throw new ParseCancellationException("line " + line + ":" + charPositionInLine + " " + msg);
+                }
+            });
+        }
 
-        for (Object t : tokens.getTokens()) {
-            CommonToken tok = (CommonToken) t;
-            String s = tok.getText().toLowerCase();
+        /**
+         * @param cyp Cypher input as text.
+         * @return Parse tree of the input, with every token of the input in tokens.
+         */
+        ParseTree parse(String cyp) {
+            lexer.setInputStream(new ANTLRInputStream(cyp));
+            tokens = new CommonTokenStream(lexer);
+            tokens.fill();
+            hideBracketWhitespace(tokens);
+            parser.setInputStream(tokens);
 
-            // exclude some tokens from the list of tokens. This includes the EOF pointer,
-            // semi-colons, and alias artifacts.
-            if (!" ".equals(s) && !"<eof>".equals(s) && !";".equals(s) && !"as".equals(s) &&
-                    !cypherWalker.getAlias().contains(s) && !"detach".equals(s)) {
-                tokenList.add(s);
+            parser.setErrorHandler(bail);
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            try {
+                return parser.cypher();
+            } catch (ParseCancellationException e) {
+                // parse again with full LL, where a syntax error is thrown by the error listener.
+                parser.reset();
+                parser.setErrorHandler(recover);
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                return parser.cypher();
             }
         }
 
-        return tokenList;
+        /**
+         * The grammar allows no whitespace within the brackets of a relationship (such as before its
+         * properties in -[r:TYPE {key:value}]-), so whitespace within brackets is hidden from the parser.
+         */
+        private static void hideBracketWhitespace(CommonTokenStream tokens) {
+            int depth = 0;
+            for (Token t : tokens.getTokens()) {
+                if (t.getType() == LEFT_BRACKET) {
+                    depth++;
+                } else if (t.getType() == RIGHT_BRACKET) {
+                    depth = Math.max(depth - 1, 0);
+                } else if (depth > 0 && t.getType() == CypherLexer.WHITESPACE) {
+                    ((CommonToken) t).setChannel(Token.HIDDEN_CHANNEL);
+                }
+            }
+        }
     }
 }
@@ -1,13 +1,25 @@
 package translator;
 
 import clauseObjects.*;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.internal.LazilyParsedNumber;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import parsing_lexing.CypherParser;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 /**
  * Main class for translating the Cypher input to its internal representation.
@@ -15,144 +27,64 @@ import java.util.Map;
  * out what needs to be returned, seeing if they have any important constraints
  * etc. A DecodedQuery object is returned containing all the relevant information
  * for the SQL generation module.
+ * <p>
+ * The representation is built from the parts of the parse tree recorded by the
+ * CypherWalker as it walked the tree, so the query is not scanned again: the nodes,
+ * relationships, properties and conditions are read from their own subtrees.
  */
 class CypherTranslator {
-    private static final JsonParser parser = new JsonParser();
+    private static final Pattern NUMBER = Pattern.compile("-?[0-9]+(\\.[0-9]+)?");
 
-    static DecodedQuery generateDecodedQuery(ArrayList<String> tokenList, CypherWalker cypherQ) throws Exception {
-        // find positions of the tokens in the query (-1 means not found)
-        int posOfMatch = tokenList.indexOf("match");
-        int posOfWhere = tokenList.indexOf("where");
-        int posOfReturn = tokenList.indexOf("return");
+    /**
+     * @param cypherQ CypherWalker that has walked the parse tree of the query.
+     * @param tokens  Tokens of the query (only read for CASE, which is not part of the grammar).
+     * @return DecodedQuery object with all relevant information.
+     * @throws Exception Something goes wrong.
+     */
+    static DecodedQuery generateDecodedQuery(CypherWalker cypherQ, TokenStream tokens) throws Exception {
+        MatchClause matchC = matchDecode(cypherQ);
 
         // if no RETURN keyword is present then Cypher has to contain a CREATE OR DELETE keyword.
-        if (posOfReturn == -1) {
-            return generateDQCreateDelete(tokenList, cypherQ, posOfMatch, posOfWhere);
-        } else {
-            int posOfOrder = tokenList.indexOf("order");
-            int posOfSkip = tokenList.indexOf("skip");
-            int posOfLimit = tokenList.indexOf("limit");
-
-            // MATCH and RETURN always present
-            List<String> matchClause;
-            List<String> returnClause;
-
-            // ORDER BY may or may not be present, hence must be initialised to NULL.
-            List<String> orderClause = null;
-
-            if (cypherQ.doesCluaseHaveWhere())
-                matchClause = tokenList.subList(posOfMatch + 1, posOfWhere);
-            else
-                matchClause = tokenList.subList(posOfMatch + 1, posOfReturn);
-
-            if (posOfOrder == -1) {
-                if (posOfSkip == -1 && posOfLimit == -1) {
-                    returnClause = tokenList.subList(posOfReturn + 1 +
-                            ((cypherQ.hasDistinct()) ? 1 : 0), tokenList.size());
-                } else if (posOfLimit == -1) {
-                    returnClause = tokenList.subList(posOfReturn + 1 + ((cypherQ.hasDistinct()) ? 1 : 0), posOfSkip);
-                } else if (posOfSkip == -1) {
-                    returnClause = tokenList.subList(posOfReturn + 1 + ((cypherQ.hasDistinct()) ? 1 : 0), posOfLimit);
-                } else {
-                    returnClause = tokenList.subList(posOfReturn + 1 + ((cypherQ.hasDistinct()) ? 1 : 0), posOfSkip);
-                }
-            } else {
-                returnClause = tokenList.subList(posOfReturn + 1 + ((cypherQ.hasDistinct()) ? 1 : 0), posOfOrder);
-
-                if (posOfSkip == -1 && posOfLimit == -1) {
-                    orderClause = tokenList.subList(posOfOrder + 2, tokenList.size());
-                } else if (posOfLimit == -1) {
-                    orderClause = tokenList.subList(posOfOrder + 2, posOfSkip);
-                } else if (posOfSkip == -1) {
-                    orderClause = tokenList.subList(posOfOrder + 2, posOfLimit);
-                } else {
-                    orderClause = tokenList.subList(posOfOrder + 2, posOfSkip);
-                }
-            }
-
-            MatchClause matchC = matchDecode(matchClause);
-            ReturnClause returnC = returnDecode(returnClause, matchC, cypherQ);
-
-            // if ORDER BY is present in the query
-            OrderClause orderC = null;
-            if (orderClause != null) orderC = orderDecode(orderClause);
-
-            int skipAmount = (posOfSkip != -1) ? cypherQ.getSkipAmount() : -1;
-            int limitAmount = (posOfLimit != -1) ? cypherQ.getLimitAmount() : -1;
-
-            WhereClause wc = null;
-            if (cypherQ.doesCluaseHaveWhere()) {
-                wc = whereDecode(matchC, cypherQ);
-            }
-
-            return new DecodedQuery(matchC, returnC, orderC, wc, skipAmount, limitAmount, cypherQ);
+        if (cypherQ.getReturnItems() == null) {
+            if (!cypherQ.hasCreate() && !cypherQ.hasDelete()) throw new Exception("QUERY HAS NO RETURN, CREATE OR DELETE");
+            // conditions on the nodes to create are added to their properties.
+            if (!cypherQ.hasDelete() && cypherQ.doesCluaseHaveWhere()) whereDecode(matchC, cypherQ);
+            return new DecodedQuery(matchC, null, null, null, -1, -1, cypherQ);
         }
-    }
 
-    /**
-     * Generate a DecodedQuery object for Cypher statements with CREATE or DELETE keywords.
-     *
-     * @param tokenList  List of tokens in the Cypher query.
-     * @param cypherQ    CypherWalker object.
-     * @param posOfMatch Index in token list where MATCH keyword is present (-1 if not).
-     * @param posOfWhere Index in token list where WHERE keyword is present (-1 if not).
-     * @return DecodedQuery object with all revelant information.
-     * @throws Exception Something goes wrong.
-     */
-    private static DecodedQuery generateDQCreateDelete(ArrayList<String> tokenList, CypherWalker cypherQ,
-                                                       int posOfMatch, int posOfWhere) throws Exception {
-        int posOfCreate = tokenList.indexOf("create");
-        int posOfDelete = tokenList.indexOf("delete");
-
-        MatchClause createOrDelete;
-
-        if (posOfCreate == -1) {
-            // delete statement.
-            List<String> deleteClause;
-            deleteClause = tokenList.subList(posOfMatch + 1, posOfDelete);
-            createOrDelete = matchDecode(deleteClause);
-        } else {
-            List<String> matchCreate;
+        ReturnClause returnC = returnDecode(matchC, cypherQ, tokens);
 
-            if (cypherQ.doesCluaseHaveWhere()) {
-                matchCreate = tokenList.subList(posOfCreate + 1, posOfWhere);
-                createOrDelete = matchDecode(matchCreate);
-                whereDecode(createOrDelete, cypherQ);
-            } else {
-                matchCreate = tokenList.subList(posOfCreate + 1, tokenList.size());
-                createOrDelete = matchDecode(matchCreate);
-            }
+        // if ORDER BY is present in the query
+        OrderClause orderC = null;
+        if (!cypherQ.getSortItems().isEmpty()) orderC = orderDecode(cypherQ.getSortItems());
+        else if (cypherQ.hasCase()) orderC = caseOrderDecode(cypherQ, tokens);
+
+        WhereClause wc = null;
+        if (cypherQ.doesCluaseHaveWhere()) {
+            wc = whereDecode(matchC, cypherQ);
         }
 
-        return new DecodedQuery(createOrDelete, null, null, null, -1, -1, cypherQ);
+        return new DecodedQuery(matchC, returnC, orderC, wc, cypherQ.getSkipAmount(), cypherQ.getLimitAmount(),
+                cypherQ);
     }
 
     /**
-     * Translate MATCH part of the Cypher input.
+     * Translate MATCH (or CREATE) part of the Cypher input.
      *
-     * @param matchClause The tokens comprising the MATCH clause of Cypher.
+     * @param cypherQ CypherWalker holding the patterns of the clause.
      * @return MatchClause object with all the important information inside it.
-     * @throws Exception Error in the clause.
      */
-    private static MatchClause matchDecode(List<String> matchClause) throws Exception {
+    private static MatchClause matchDecode(CypherWalker cypherQ) {
         MatchClause m = new MatchClause();
 
         // extract the nodes from the match clause
-        m.setNodes(extractNodes(matchClause, m));
+        m.setNodes(extractNodes(cypherQ.getNodePatterns(), m));
 
         // reset ID between method calls
         m.resetInternalID();
 
         // extract any relationships from the match clause
-        m.setRels(extractRels(matchClause, m));
-
-//        for (CypNode c : m.getNodes()) {
-//            System.out.println(c.toString());
-//        }
-//
-//        for (CypRel c : m.getRels()) {
-//            System.out.println(c.toString());
-//        }
+        m.setRels(extractRels(cypherQ.getRelPatterns(), m));
 
         return m;
     }
@@ -160,75 +92,37 @@ class CypherTranslator {
     /**
      * Extract nodes from the MATCH clause.
      *
-     * @param clause Tokens that formed original MATCH part of Cypher.
-     * @param m      Needed for the internal ID representation.
+     * @param patterns Node patterns of the MATCH clause, in order.
+     * @param m        Needed for the internal ID representation.
      * @return List of internal node objects extracted.
      */
-    private static ArrayList<CypNode> extractNodes(List<String> clause, MatchClause m) {
+    private static ArrayList<CypNode> extractNodes(List<CypherParser.NodePatternContext> patterns, MatchClause m) {
         // nodes to return at the end of the function.
         ArrayList<CypNode> nodes = new ArrayList<>();
         // keep track of current nodes if node of the same ID reappears later on in the query.
         Map<String, Integer> nodeIDS = new HashMap<>();
 
-        JsonObject o;
-        List<String> nodeString;
-        List<String> propsString;
-
-        String id;
-        String labels;
-
-        while (!clause.isEmpty()) {
-            nodeString = null;
-            propsString = null;
-            o = null;
-
-            // find nodes in the clause
-            int lBrack = clause.indexOf("(");
-            int rBrack = clause.indexOf(")");
-
-            // check if node structure valid
-            if (lBrack != -1 && rBrack != -1) {
-                // extract the inner node tokens
-                nodeString = clause.subList(lBrack + 1, rBrack);
-
-                // keep rest of clause safe
-                clause = clause.subList(rBrack + 1, clause.size());
-
-                while (!nodeString.isEmpty()) {
-                    // extract any properties from the nodes
-                    int lCurly = nodeString.indexOf("{");
-                    int rCurly = nodeString.indexOf("}");
-
-                    if (lCurly != -1 && rCurly != -1) {
-                        propsString = nodeString.subList(lCurly + 1, rCurly);
-                        nodeString = nodeString.subList(0, lCurly);
-                    } else {
-                        break;
-                    }
+        for (CypherParser.NodePatternContext node : patterns) {
+            String id = (node.variable() == null) ? null : textOf(node.variable()).toLowerCase();
+            String labels = null;
+            if (node.nodeLabels() != null) {
+                for (CypherParser.NodeLabelContext label : node.nodeLabels().nodeLabel()) {
+                    labels = addName(labels, textOf(label.labelName()));
                 }
             }
+            JsonObject o = getJSONProps(node.properties());
 
-            if (nodeString != null) {
-                if (propsString != null) {
-                    o = getJSONProps(propsString);
-                }
-
-                String[] idAndLabels = extractIdAndLabels(nodeString);
-                id = idAndLabels[0];
-                labels = idAndLabels[1];
-
-                // add the formatted node object to list of nodes
-                // associated with the match clause
-                int internalID = m.getInternalID();
+            // add the formatted node object to list of nodes
+            // associated with the match clause
+            int internalID = m.getInternalID();
 
-                if (id != null && !nodeIDS.containsKey(id)) {
-                    nodeIDS.put(id, internalID);
-                } else if (nodeIDS.containsKey(id)) {
-                    labels = nodes.get(nodeIDS.get(id) - 1).getType();
-                    o = nodes.get(nodeIDS.get(id) - 1).getProps();
-                }
-                nodes.add(new CypNode(internalID, id, labels, o));
+            if (id != null && !nodeIDS.containsKey(id)) {
+                nodeIDS.put(id, internalID);
+            } else if (nodeIDS.containsKey(id)) {
+                labels = nodes.get(nodeIDS.get(id) - 1).getType();
+                o = nodes.get(nodeIDS.get(id) - 1).getProps();
             }
+            nodes.add(new CypNode(internalID, id, labels, o));
         }
         return nodes;
     }
@@ -236,12 +130,12 @@ class CypherTranslator {
     /**
      * Extract the relationships from the MATCH clause.
      *
-     * @param clause Token version of the clause.
-     * @param m      Internal representation of the MATCH clause.
+     * @param patterns Relationship patterns of the MATCH clause, in order.
+     * @param m        Internal representation of the MATCH clause.
      * @return An ArrayList of CypRel objects that correspond to the relationships (if any) described by Cypher.
-     * @throws Exception Error in the clause.
      */
-    private static ArrayList<CypRel> extractRels(List<String> clause, MatchClause m) throws Exception {
+    private static ArrayList<CypRel> extractRels(List<CypherParser.RelationshipPatternContext> patterns,
+                                                 MatchClause m) {
         ArrayList<CypRel> rels = new ArrayList<>();
 
         /*
@@ -268,284 +162,276 @@ class CypherTranslator {
           <-[*3..4]-        (id: null     type: null      props: null     direction : var3-4)
          */
 
-        String id;
-        String type;
-        JsonObject o;
-        String direction;
-        List<String> relString;
-        List<String> propsString;
-
-        while (!clause.isEmpty()) {
-            id = null;
-            type = null;
-            propsString = null;
-            o = null;
-            direction = null;
-            boolean varAdded = false;
-
-            if (!clause.contains("-")) {
-                // no relationships left to consider.
-                break;
-            } else {
-                int posOfHyphen = clause.indexOf("-");
-
-                if (clause.get(posOfHyphen + 2).equals("*")) {
-                    String varD = "none";
-                    m.setVarRel(true);
-
-                    int posOfLHypher = clause.indexOf("-");
-                    if (clause.get(posOfLHypher - 1).equals("<")) varD = "left";
-                    int posOfRSq = clause.indexOf("]");
-                    if (clause.get(posOfRSq + 2).equals(">")) varD = (varD.equals("left")) ? "none" : "right";
-
-                    List<String> varRel = clause.subList(posOfLHypher + 2, posOfRSq);
-                    if (varD.equals("right")) {
-                        clause = clause.subList(posOfRSq + 3, clause.size());
-                    } else {
-                        clause = clause.subList(posOfRSq + 2, clause.size());
-                    }
-
-                    // add the variable to the set of relationships.
-                    rels.add(extractVarRel(varRel, m, varD));
-                    varAdded = true;
-                } else if (clause.get(posOfHyphen - 1).equals("<")) {
-                    direction = "left";
-
-                    int lSq = clause.indexOf("[");
-                    int rSq = clause.indexOf("]");
-
-                    if (lSq != -1 && rSq != -1) {
-                        relString = clause.subList(lSq + 1, rSq);
-
-                        if (relString.contains("{")) {
-                            int lCurly = relString.indexOf("{");
-                            int rCurly = relString.indexOf("}");
+        for (CypherParser.RelationshipPatternContext rel : patterns) {
+            boolean left = rel.leftArrowHead() != null;
+            boolean right = rel.rightArrowHead() != null;
+            CypherParser.RelationshipDetailContext detail = rel.relationshipDetail();
 
-                            if (lCurly != -1 && rCurly != -1) {
-                                propsString = relString.subList(lCurly + 1, rCurly);
-                                relString = relString.subList(0, lCurly);
-                            }
-                        }
+            if (detail != null && detail.rangeLiteral() != null) {
+                m.setVarRel(true);
+                String varD = (left == right) ? "none" : (left) ? "left" : "right";
+                // add the variable to the set of relationships.
+                rels.add(extractVarRel(detail.rangeLiteral(), m, varD));
+                continue;
+            }
 
-                        String[] temp = extractIdAndLabels(relString);
-                        id = temp[0];
-                        type = temp[1];
+            String direction = (left) ? "left" : (right) ? "right" : "none";
+            String id = null;
+            String type = null;
+            JsonObject o = null;
 
-                        if (propsString != null) {
-                            o = getJSONProps(propsString);
-                        }
-                        clause = clause.subList(rSq + 2, clause.size());
-                    } else {
-                        clause = clause.subList(posOfHyphen + 2, clause.size());
+            if (detail != null) {
+                if (detail.variable() != null) id = textOf(detail.variable()).toLowerCase();
+                if (detail.relationshipTypes() != null) {
+                    for (CypherParser.RelTypeNameContext relType : detail.relationshipTypes().relTypeName()) {
+                        type = addName(type, textOf(relType));
                     }
-                } else if (clause.get(posOfHyphen + 1).equals("-") &&
-                        clause.get(posOfHyphen + 2).equals("(")) {
-                    direction = "none";
-                    clause = clause.subList(posOfHyphen + 2, clause.size());
-                } else if (clause.get(posOfHyphen + 1).equals("-") &&
-                        clause.get(posOfHyphen + 2).equals(">")) {
-                    direction = "right";
-                    clause = clause.subList(posOfHyphen + 3, clause.size());
-                } else if (clause.get(posOfHyphen + 1).equals("[")) {
-                    int lSq = clause.indexOf("[");
-                    int rSq = clause.indexOf("]");
-
-                    if (lSq != -1 && rSq != -1) {
-                        relString = clause.subList(lSq + 1, rSq);
-
-                        if (relString.contains("{")) {
-                            int lCurly = relString.indexOf("{");
-                            int rCurly = relString.indexOf("}");
-
-                            if (lCurly != -1 && rCurly != -1) {
-                                propsString = relString.subList(lCurly + 1, rCurly);
-                                relString = relString.subList(0, lCurly);
-                            }
-                        }
-
-                        String[] temp = extractIdAndLabels(relString);
-                        id = temp[0];
-                        type = temp[1];
-
-                        if (propsString != null) {
-                            o = getJSONProps(propsString);
-                        }
-
-                        if (clause.get(rSq + 1).equals("-") && clause.get(rSq + 2).equals(">")) {
-                            direction = "right";
-                            clause = clause.subList(rSq + 3, clause.size());
-                        } else if (clause.get(rSq + 1).equals("-")) {
-                            direction = "none";
-                            clause = clause.subList(rSq + 2, clause.size());
-                        }
-                    }
-                } else {
-                    throw new Exception("RELATIONSHIP STRUCTURE IS INVALID");
                 }
-                if (!varAdded) rels.add(new CypRel(m.getInternalID(), id, type, o, direction));
+                o = getJSONProps(detail.properties());
             }
+            rels.add(new CypRel(m.getInternalID(), id, type, o, direction));
         }
         return rels;
     }
 
+    // labels and types are lower cased, and several are separated by commas.
+    private static String addName(String names, String name) {
+        return (names == null) ? name.toLowerCase() : names + ", " + name.toLowerCase();
+    }
+
+    private static CypRel extractVarRel(CypherParser.RangeLiteralContext range, MatchClause m, String varD) {
+        String direction;
+        String bounds = textOf(range).replace(" ", "").substring(1);
+
+        if (bounds.isEmpty()) {
+            // hack that deals with arbitrary long paths
+            direction = "var1-100" + "#" + varD;
+        } else if (!bounds.contains("..")) {
+            direction = "var" + bounds + "#" + varD;
+        } else {
+            String[] minAndMax = bounds.split("\\.\\.", -1);
+            direction = "var" + (minAndMax[0].isEmpty() ? "1" : minAndMax[0]) + "-"
+                    + (minAndMax[1].isEmpty() ? "100" : minAndMax[1]) + "#" + varD;
+        }
+
+        return new CypRel(m.getInternalID(), null, null, null, direction);
+    }
+
     /**
-     * Takes token list of JSON based properties string, and convert this to an actual JSON object.
+     * Convert the map of properties of a node or relationship to a JSON object. Keys and strings
+     * are lower cased.
      *
-     * @param propsString Token list in form similar to ["{", "key", ":", "value", "}"]
-     * @return JSONObject matching the propsString argument.
+     * @param properties Properties of the node or relationship, or null if it has none.
+     * @return JSONObject matching the properties, or null if there are none.
      */
-    private static JsonObject getJSONProps(List<String> propsString) {
-        StringBuilder json = new StringBuilder();
-
-        json.append("{");
+    private static JsonObject getJSONProps(CypherParser.PropertiesContext properties) {
+        if (properties == null || properties.mapLiteral() == null) return null;
+        CypherParser.MapLiteralContext map = properties.mapLiteral();
+        if (map.propertyKeyName().isEmpty()) return null;
+
+        JsonObject o = new JsonObject();
+        for (int i = 0; i < map.propertyKeyName().size(); i++) {
+            o.add(textOf(map.propertyKeyName(i)).toLowerCase(), getJSONValue(map.expression(i)));
+        }
+        return o;
+    }
 
-        boolean listSyntax = propsString.contains("[");
+    private static JsonElement getJSONValue(CypherParser.ExpressionContext value) {
+        CypherParser.Expression2Context e = expression2Of(value);
+        CypherParser.AtomContext atom = (e != null && e.getChildCount() == 1) ? e.atom() : null;
 
-        int i = 0;
+        if (atom != null) {
+            if (atom.StringLiteral() != null) return new JsonPrimitive(unquote(atom.StringLiteral().getText().toLowerCase()));
+            if (atom.numberLiteral() != null) {
+                return new JsonPrimitive(new LazilyParsedNumber(textOf(atom.numberLiteral()).toLowerCase()));
+            }
+            if (atom.TRUE() != null || atom.FALSE() != null) return new JsonPrimitive(atom.TRUE() != null);
+            if (atom.NULL() != null) return JsonNull.INSTANCE;
+            if (atom.getChild(0).getText().equals("[") && atom.listComprehension() == null) {
+                JsonArray list = new JsonArray();
+                for (CypherParser.ExpressionContext item : atom.expression()) list.add(getJSONValue(item));
+                return list;
+            }
+        }
+        // negative numbers, and anything else taken as text.
+        String text = textOf(value).toLowerCase();
+        if (NUMBER.matcher(text).matches()) return new JsonPrimitive(new LazilyParsedNumber(text));
+        return new JsonPrimitive(text);
+    }
 
-        for (String a : propsString) {
-            if (a.equals(",")) {
-                continue;
-            } else if (a.equals("[")) {
-                json.append("[");
+    // text of a string literal, without its quotes and with any escapes replaced.
+    private static String unquote(String literal) {
+        StringBuilder sb = new StringBuilder(literal.length());
+        for (int i = 1; i < literal.length() - 1; i++) {
+            char c = literal.charAt(i);
+            if (c != '\\' || i + 1 >= literal.length() - 1) {
+                sb.append(c);
                 continue;
-            } else if (a.equals("]")) {
-                json.setLength(json.length() - 2);
-                json.append("]").append(", ");
-            } else if (i % 3 == 0) {
-                json.append("\"").append(a).append("\"");
-            } else if (i % 3 == 1) {
-                json.append(":");
-            } else if (i % 3 == 2) {
-                json.append(a).append(", ");
-                if (listSyntax) continue;
             }
-            i++;
+            char next = literal.charAt(++i);
+            switch (next) {
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 'u':
+                    if (i + 4 < literal.length() - 1) {
+                        sb.append((char) Integer.parseInt(literal.substring(i + 1, i + 5), 16));
+                        i += 4;
+                    } else {
+                        // too short to be an escape, so is taken as it is.
+                        sb.append(next);
+                    }
+                    break;
+                default:
+                    sb.append(next);
+            }
         }
-
-        // remove trailing comma
-        json.setLength(json.length() - 2);
-        json.append("}");
-        return parser.parse(json.toString()).getAsJsonObject();
+        return sb.toString();
     }
 
-    private static String[] extractIdAndLabels(List<String> tokens) {
-        String[] idAndLabels = {null, null};
+    /**
+     * The text a part of the query was parsed from. This is the same as ParserRuleContext.getText (but
+     * with any whitespace hidden from the parser), without the text being built again at every level
+     * of the many nested rules an expression is made up of.
+     */
+    private static String textOf(ParserRuleContext ctx) {
+        if (ctx.stop == null || ctx.stop.getStopIndex() < ctx.start.getStartIndex()) return ctx.getText();
+        return ctx.start.getInputStream().getText(Interval.of(ctx.start.getStartIndex(), ctx.stop.getStopIndex()));
+    }
 
-        if (tokens.isEmpty()) return idAndLabels;
+    /**
+     * @param ctx Expression, or part of one.
+     * @return The single Expression2Context (an atom followed by any property lookups) the expression
+     * is made up of, or null if it is made up of more (such as a comparison or arithmetic).
+     */
+    private static CypherParser.Expression2Context expression2Of(ParserRuleContext ctx) {
+        ParseTree node = ctx;
+        while (!(node instanceof CypherParser.Expression2Context)) {
+            if (node.getChildCount() != 1) return null;
+            node = node.getChild(0);
+        }
+        return (CypherParser.Expression2Context) node;
+    }
 
-        if (tokens.get(0).equals(":")) {
-            // no id, just label(s)
-            for (String label : tokens) {
-                if (!label.equals(":")) {
-                    if (idAndLabels[1] == null) {
-                        idAndLabels[1] = label;
-                    } else {
-                        idAndLabels[1] = idAndLabels[1] + ", " + label;
-                    }
-                }
-            }
-            return idAndLabels;
-        } else {
-            idAndLabels[0] = tokens.get(0);
-            if (tokens.size() == 1) {
-                return idAndLabels;
-            } else {
-                tokens = tokens.subList(1, tokens.size());
-                for (String label : tokens) {
-                    if (!label.equals(":")) {
-                        if (idAndLabels[1] == null) {
-                            idAndLabels[1] = label;
-                        } else {
-                            idAndLabels[1] = idAndLabels[1] + ", " + label;
-                        }
-                    }
-                }
-                return idAndLabels;
-            }
+    /**
+     * @param e Expression2Context of an expression.
+     * @return The id and property of a property lookup (id.prop), the id alone for a variable, or null
+     * for anything else.
+     */
+    private static String[] idAndProp(CypherParser.Expression2Context e) {
+        if (e == null || e.atom().variable() == null) return null;
+        String id = textOf(e.atom().variable()).toLowerCase();
+        if (e.getChildCount() == 1) return new String[]{id, null};
+        if (e.getChildCount() == 2 && e.propertyLookup().size() == 1) {
+            return new String[]{id, textOf(e.propertyLookup(0).propertyKeyName()).toLowerCase()};
         }
+        return null;
     }
 
-    private static WhereClause whereDecode(MatchClause matchC, CypherWalker cypherQ) throws Exception {
-        WhereClause wc = new WhereClause(cypherQ.getWhereClause());
-        extractWhere(wc.getClause(), matchC, wc);
-        return wc;
+    // the function (count, collect...) an expression is a call of, or null if it is not one.
+    private static CypherParser.FunctionInvocationContext functionOf(CypherParser.Expression2Context e) {
+        return (e == null || e.getChildCount() != 1) ? null : e.atom().functionInvocation();
     }
 
-    private static WhereClause extractWhere(String allClause, MatchClause matchC, WhereClause wc) throws Exception {
-        allClause = allClause.toLowerCase();
+    private static WhereClause whereDecode(MatchClause matchC, CypherWalker cypherQ) throws Exception {
+        WhereClause wc = new WhereClause(cypherQ.getWhereClause());
         ArrayList<String> whereComponents = new ArrayList<>();
+        List<CypherParser.Expression8Context> comparisons = new ArrayList<>();
         Map<String, String> whereMapping = new HashMap<>();
 
-        while (!allClause.isEmpty()) {
-            int posOfOr = (!allClause.contains(" or ")) ? 100000 : allClause.indexOf(" or ");
-            int posOfAnd = (!allClause.contains(" and ")) ? 100000 : allClause.indexOf(" and ");
-
-            if ((posOfAnd == 100000) && (posOfOr == 100000)) {
-                whereComponents.add(allClause);
-                allClause = "";
-            } else if (posOfAnd < posOfOr) {
-                String comps[] = allClause.split(" and ");
-                whereComponents.add(comps[0]);
-                whereMapping.put(comps[0], "and");
-                allClause = allClause.substring(comps[0].length() + 5);
+        // the components are the conditions joined by AND and OR, in the order they are written, each
+        // mapped to the AND or OR that follows it.
+        List<CypherParser.Expression11Context> ors = cypherQ.getWhereExpression().expression12().expression11();
+        for (int i = 0; i < ors.size(); i++) {
+            CypherParser.Expression11Context or = ors.get(i);
+            List<CypherParser.Expression9Context> ands = (or.expression10().size() == 1) ?
+                    or.expression10(0).expression9() : null;
+
+            if (ands == null) {
+                whereComponents.add(textOf(or).toLowerCase());
+                comparisons.add(null);
             } else {
-                String comps[] = allClause.split(" or ");
-                whereComponents.add(comps[0]);
-                whereMapping.put(comps[0], "or");
-                allClause = allClause.substring(comps[0].length() + 4);
+                for (int j = 0; j < ands.size(); j++) {
+                    String component = textOf(ands.get(j)).toLowerCase();
+                    whereComponents.add(component);
+                    comparisons.add(ands.get(j).NOT().isEmpty() ? ands.get(j).expression8() : null);
+                    if (j < ands.size() - 1) whereMapping.put(component, "and");
+                }
             }
+            if (i < ors.size() - 1) whereMapping.put(whereComponents.get(whereComponents.size() - 1), "or");
         }
 
         wc.setComponents(whereComponents);
         wc.setWhereMappings(whereMapping);
 
-        for (String clause : wc.getComponents()) {
-            int posInWhere = wc.getComponents().indexOf(clause);
+        for (int i = 0; i < whereComponents.size(); i++) {
+            int posInWhere = whereComponents.indexOf(whereComponents.get(i));
             String typeBooleanA = null;
             if (posInWhere > 0) {
-                typeBooleanA = wc.getWhereMappings().get(wc.getComponents().get(posInWhere - 1));
+                typeBooleanA = whereMapping.get(whereComponents.get(posInWhere - 1));
             }
-            if (clause.contains(" = ")) {
-                String[] idAndValue = clause.split(" = ");
-                addCondition(idAndValue, matchC, "equals", typeBooleanA);
-            } else if (clause.contains(" <> ")) {
-                String[] idAndValue = clause.split(" <> ");
-                addCondition(idAndValue, matchC, "nequals", typeBooleanA);
-            } else if (clause.contains(" < ")) {
-                String[] idAndValue = clause.split(" < ");
-                addCondition(idAndValue, matchC, "lt", typeBooleanA);
-            } else if (clause.contains(" > ")) {
-                String[] idAndValue = clause.split(" > ");
-                addCondition(idAndValue, matchC, "gt", typeBooleanA);
-            } else if (clause.contains(" <= ")) {
-                String[] idAndValue = clause.split(" <= ");
-                addCondition(idAndValue, matchC, "le", typeBooleanA);
-            } else if (clause.contains(" >= ")) {
-                String[] idAndValue = clause.split(" >= ");
-                addCondition(idAndValue, matchC, "ge", typeBooleanA);
+            CypherParser.Expression8Context comparison = comparisons.get(i);
+            if (comparison != null && comparison.partialComparisonExpression().size() == 1) {
+                addCondition(comparison, matchC, typeBooleanA);
             }
         }
 
         return wc;
     }
 
-    private static void addCondition(String[] idAndValue, MatchClause matchC, String op,
+    private static void addCondition(CypherParser.Expression8Context comparison, MatchClause matchC,
                                      String typeBoolean) throws Exception {
-        String[] idAndProp = idAndValue[0].split("\\.");
+        CypherParser.PartialComparisonExpressionContext partial = comparison.partialComparisonExpression(0);
+        String op;
+        switch (partial.getChild(0).getText()) {
+            case "=":
+                op = "equals";
+                break;
+            case "<>":
+                op = "nequals";
+                break;
+            case "<":
+                op = "lt";
+                break;
+            case ">":
+                op = "gt";
+                break;
+            case "<=":
+                op = "le";
+                break;
+            case ">=":
+                op = "ge";
+                break;
+            default:
+                return;
+        }
+
+        String[] idAndProp = idAndProp(expression2Of(comparison.expression7()));
+        if (idAndProp == null || idAndProp[1] == null) throw new Exception("WHERE CLAUSE MALFORMED");
+        String value = textOf(partial.expression7()).replace("\"", "").toLowerCase();
 
         for (CypNode cN : matchC.getNodes()) {
-            if (cN.getId().equals(idAndProp[0])) {
-                JsonObject obj = addToJSONObject(cN.getProps(), idAndProp, idAndValue, op, typeBoolean);
-                cN.setProps(obj);
+            if (idAndProp[0].equals(cN.getId())) {
+                cN.setProps(addToJSONObject(cN.getProps(), idAndProp[1], value, op, typeBoolean));
                 return;
             }
         }
 
         for (CypRel cR : matchC.getRels()) {
-            if (cR.getId() != null && cR.getId().equals(idAndProp[0])) {
-                JsonObject obj = addToJSONObject(cR.getProps(), idAndProp, idAndValue, op, typeBoolean);
-                cR.setProps(obj);
+            if (idAndProp[0].equals(cR.getId())) {
+                cR.setProps(addToJSONObject(cR.getProps(), idAndProp[1], value, op, typeBoolean));
                 return;
             }
         }
@@ -553,147 +439,137 @@ class CypherTranslator {
         throw new Exception("WHERE CLAUSE MALFORMED");
     }
 
-    private static JsonObject addToJSONObject(JsonObject origProps, String[] idAndProp, String[] idAndValue,
+    private static JsonObject addToJSONObject(JsonObject origProps, String prop, String value,
                                               String op, String typeBoolean) {
         JsonObject obj = origProps;
         if (origProps == null) obj = new JsonObject();
 
         String valueToAdd = "";
-        if (obj.has(idAndProp[1])) {
-            valueToAdd = obj.get(idAndProp[1]).getAsString() + "~" + typeBoolean + "~";
+        if (obj.has(prop)) {
+            valueToAdd = obj.get(prop).getAsString() + "~" + typeBoolean + "~";
         }
         switch (op) {
             case "equals":
-                valueToAdd += "eq#" + idAndValue[1].replace("\"", "").toLowerCase() + "#qe";
-                obj.addProperty(idAndProp[1], valueToAdd);
+                valueToAdd += "eq#" + value + "#qe";
                 break;
             case "nequals":
-                valueToAdd += "ne#" + idAndValue[1].replace("\"", "").toLowerCase() + "#en";
-                obj.addProperty(idAndProp[1], valueToAdd);
+                valueToAdd += "ne#" + value + "#en";
                 break;
             case "lt":
-                valueToAdd += "lt#" + idAndValue[1].replace("\"", "").toLowerCase() + "#tl";
-                obj.addProperty(idAndProp[1], valueToAdd);
+                valueToAdd += "lt#" + value + "#tl";
                 break;
             case "gt":
-                valueToAdd += "gt#" + idAndValue[1].replace("\"", "").toLowerCase() + "#tg";
-                obj.addProperty(idAndProp[1], valueToAdd);
+                valueToAdd += "gt#" + value + "#tg";
                 break;
             case "le":
-                valueToAdd += "le#" + idAndValue[1].replace("\"", "").toLowerCase() + "#el";
-                obj.addProperty(idAndProp[1], valueToAdd);
+                valueToAdd += "le#" + value + "#el";
                 break;
             case "ge":
-                valueToAdd += "ge#" + idAndValue[1].replace("\"", "").toLowerCase() + "#eg";
-                obj.addProperty(idAndProp[1], valueToAdd);
+                valueToAdd += "ge#" + value + "#eg";
                 break;
         }
+        obj.addProperty(prop, valueToAdd);
         return obj;
     }
 
-    private static CypRel extractVarRel(List<String> varRel, MatchClause m, String varD) {
-        String direction;
-
-        if (varRel.size() == 1 && varRel.get(0).equals("*")) {
-            // hack that deals with arbitrary long paths
-            direction = "var1-100" + "#" + varD;
-        } else {
-            varRel = varRel.subList(1, varRel.size());
-
-            if (varRel.size() == 1) {
-                direction = "var" + varRel.get(0) + "#" + varD;
-            } else {
-                direction = "var" + varRel.get(0) + "-" + varRel.get(2) + "#" + varD;
-            }
-        }
-
-        return new CypRel(m.getInternalID(), null, null, null, direction);
-    }
-
-    private static ReturnClause returnDecode(List<String> returnClause,
-                                             MatchClause matchC, CypherWalker cypherQ) throws Exception {
+    private static ReturnClause returnDecode(MatchClause matchC, CypherWalker cypherQ, TokenStream tokens)
+            throws Exception {
         ReturnClause r = new ReturnClause();
         List<CypReturn> items = new ArrayList<>();
+        CypherParser.ReturnItemsContext returnItems = cypherQ.getReturnItems();
 
-        List<String> currentWorking;
-
-        // find all the separate parts of the return clause
-        while (returnClause.contains(",")) {
-            int posComma = returnClause.indexOf(",");
-            currentWorking = returnClause.subList(0, posComma);
-            returnClause = returnClause.subList(posComma + 1, returnClause.size());
-
-            items.add(extractReturn(currentWorking, matchC, cypherQ));
+        if (returnItems.getChild(0) instanceof TerminalNode) {
+            items.add(new CypReturn(null, "*", false, false, null, matchC));
         }
 
-        if (!returnClause.isEmpty()) {
-            items.add(extractReturn(returnClause, matchC, cypherQ));
+        for (CypherParser.ReturnItemContext item : returnItems.returnItem()) {
+            items.add(extractReturn(item, matchC, cypherQ, tokens));
         }
 
         r.setItems(items);
-
-//        for (CypReturn c : r.getItems()) {
-//            System.out.println(c.toString());
-//        }
-
         return r;
     }
 
-    private static CypReturn extractReturn(List<String> clause, MatchClause matchC, CypherWalker cypherQ)
-            throws Exception {
-        if (clause.size() == 3 && clause.contains(".")) {
-            return new CypReturn(clause.get(0), clause.get(2), false, false, null, matchC);
-        } else if (clause.size() == 1)
-            if (clause.get(0).equals("*"))
-                return new CypReturn(null, "*", false, false, null, matchC);
-            else
-                return new CypReturn(clause.get(0), null, false, false, null, matchC);
-        else if (cypherQ.hasCount()) {
-            String field = (clause.size() == 6) ? clause.get(4) : null;
-            return new CypReturn(clause.get(2), field, true, false, null, matchC);
-        } else if (cypherQ.hasCollect()) {
-            String field = (clause.size() == 6) ? clause.get(4) : null;
-            return new CypReturn(clause.get(2), field, false, true, null, matchC);
-        } else if (cypherQ.hasCase()) {
-            StringBuilder caseString = new StringBuilder();
-            for (String s : clause) {
-                if (s.equals(".")) {
-                    caseString.setLength(caseString.length() - 1);
-                    caseString.append(".");
-                } else {
-                    caseString.append(s).append(" ");
-                }
+    private static CypReturn extractReturn(CypherParser.ReturnItemContext item, MatchClause matchC,
+                                           CypherWalker cypherQ, TokenStream tokens) throws Exception {
+        CypherParser.Expression2Context e = expression2Of(item.expression());
+        String[] idAndProp = idAndProp(e);
+        CypherParser.FunctionInvocationContext function = functionOf(e);
+
+        if (cypherQ.hasCase() && textOf(item.expression()).equalsIgnoreCase("case")) {
+            return extractCase(item, matchC, tokens);
+        } else if (idAndProp != null) {
+            return new CypReturn(idAndProp[0], idAndProp[1], false, false, null, matchC);
+        } else if (e != null && e.getChildCount() == 1 && e.atom().COUNT() != null) {
+            // count(*)
+            return new CypReturn("*", null, true, false, null, matchC);
+        } else if (function != null && function.expression().size() == 1) {
+            String name = textOf(function.functionName()).toLowerCase();
+            String[] inner = idAndProp(expression2Of(function.expression(0)));
+            if (inner != null && name.equals("count")) {
+                return new CypReturn(inner[0], inner[1], true, false, null, matchC);
+            } else if (inner != null && name.equals("collect")) {
+                return new CypReturn(inner[0], inner[1], false, true, null, matchC);
             }
-            return new CypReturn(clause.get(1), clause.get(3),
-                    false, false, caseString.toString(), matchC);
-        } else throw new Exception("RETURN CLAUSE MALFORMED" + clause);
+        }
+        throw new Exception("RETURN CLAUSE MALFORMED" + textOf(item));
     }
 
-    private static OrderClause orderDecode(List<String> orderClause) throws Exception {
-        OrderClause o = new OrderClause();
-
-        List<CypOrder> items = new ArrayList<>();
-
-        List<String> currentWorking;
-
-        // find all the separate parts of the order by clause
-        while (orderClause.contains(",")) {
-            int posComma = orderClause.indexOf(",");
-            currentWorking = orderClause.subList(0, posComma);
-            orderClause = orderClause.subList(posComma + 1, orderClause.size());
-            items.add(extractOrder(currentWorking));
+    /**
+     * CASE is not part of the grammar, so the parse of a query stops at the CASE keyword. The CASE
+     * expression is instead read from the tokens that follow it, up to the end of the return clause.
+     */
+    private static CypReturn extractCase(CypherParser.ReturnItemContext item, MatchClause matchC,
+                                         TokenStream tokens) throws Exception {
+        List<String> clause = tokensFrom(item.getStart().getTokenIndex(), tokens);
+        for (int i = 0; i < clause.size(); i++) {
+            String s = clause.get(i);
+            if (s.equals("order") || s.equals("skip") || s.equals("limit")) {
+                clause = clause.subList(0, i);
+                break;
+            }
         }
+        if (clause.size() < 4) throw new Exception("RETURN CLAUSE MALFORMED" + clause);
 
-        if (!orderClause.isEmpty()) {
-            items.add(extractOrder(orderClause));
+        StringBuilder caseString = new StringBuilder();
+        for (String s : clause) {
+            if (s.equals(".")) {
+                caseString.setLength(caseString.length() - 1);
+                caseString.append(".");
+            } else {
+                caseString.append(s).append(" ");
+            }
         }
+        return new CypReturn(clause.get(1), clause.get(3), false, false, caseString.toString(), matchC);
+    }
 
-        o.setItems(items);
+    /**
+     * The ORDER BY of a query returning a CASE expression is not in its parse tree either (see
+     * extractCase), so is read from the tokens after the CASE expression.
+     *
+     * @return OrderClause of the query, or null if it has no ORDER BY.
+     */
+    private static OrderClause caseOrderDecode(CypherWalker cypherQ, TokenStream tokens) throws Exception {
+        List<String> clause = tokensFrom(cypherQ.getReturnItems().getStart().getTokenIndex(), tokens);
+        int posOfOrder = clause.indexOf("order");
+        if (posOfOrder == -1) return null;
+        clause = clause.subList(posOfOrder + 2, clause.size());
 
-//        for (CypOrder c : o.getItems()) {
-//            System.out.println(c.toString());
-//        }
+        OrderClause o = new OrderClause();
+        List<CypOrder> items = new ArrayList<>();
+        List<String> item = new ArrayList<>();
+        for (String s : clause) {
+            if (s.equals("skip") || s.equals("limit")) break;
+            if (s.equals(",")) {
+                items.add(extractOrder(item));
+                item.clear();
+            } else {
+                item.add(s);
+            }
+        }
+        if (!item.isEmpty()) items.add(extractOrder(item));
 
+        o.setItems(items);
         return o;
     }
 
@@ -707,4 +583,49 @@ class CypherTranslator {
         } else throw new Exception("ORDER CLAUSE MALFORMED");
     }
 
+    // lower cased text of the tokens from the given one to the end of the query, without whitespace,
+    // semi colons or AS.
+    private static List<String> tokensFrom(int start, TokenStream tokens) {
+        List<String> clause = new ArrayList<>();
+        for (int i = start; i < tokens.size(); i++) {
+            Token tok = tokens.get(i);
+            if (tok.getType() == Token.EOF) break;
+            String s = tok.getText().toLowerCase();
+            if (!" ".equals(s) && !";".equals(s) && !"as".equals(s)) clause.add(s);
+        }
+        return clause;
+    }
+
+    private static OrderClause orderDecode(List<CypherParser.SortItemContext> sortItems) throws Exception {
+        OrderClause o = new OrderClause();
+        List<CypOrder> items = new ArrayList<>();
+
+        for (CypherParser.SortItemContext sortItem : sortItems) {
+            items.add(extractOrder(sortItem));
+        }
+
+        o.setItems(items);
+        return o;
+    }
+
+    private static CypOrder extractOrder(CypherParser.SortItemContext sortItem) throws Exception {
+        String dir = "asc";
+        if (sortItem.getChildCount() > 1) {
+            dir = sortItem.getChild(sortItem.getChildCount() - 1).getText().toLowerCase();
+        }
+
+        CypherParser.Expression2Context e = expression2Of(sortItem.expression());
+        String[] idAndProp = idAndProp(e);
+        CypherParser.FunctionInvocationContext function = functionOf(e);
+
+        if (idAndProp != null && idAndProp[1] != null) {
+            return new CypOrder(idAndProp[0], idAndProp[1], dir);
+        } else if (function != null && textOf(function.functionName()).equalsIgnoreCase("count")
+                && function.expression().size() == 1) {
+            String[] inner = idAndProp(expression2Of(function.expression(0)));
+            if (inner != null) return new CypOrder(inner[0], "count(n)", dir);
+        }
+        throw new Exception("ORDER CLAUSE MALFORMED");
+    }
+
 }
@@ -3,14 +3,17 @@ package translator;
 import parsing_lexing.CypherBaseListener;
 import parsing_lexing.CypherParser;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Class that walks the parse tree of the Cypher input, as parsed
  * by the ANTLRv4 tool. This class records important information
- * about the query.
+ * about the query, and the parts of the tree that CypherTranslator
+ * builds the internal representation from.
  */
 public class CypherWalker extends CypherBaseListener {
     private boolean hasOptional = false;
@@ -28,6 +31,15 @@ public class CypherWalker extends CypherBaseListener {
     private String latestOrderDirection = "";
     private int skipAmount = -1;
     private int limitAmount = -1;
+    private boolean hasCreate = false;
+
+    // parts of the parse tree the internal representation is built from.
+    private boolean inPattern = false;
+    private List<CypherParser.NodePatternContext> nodePatterns = new ArrayList<>();
+    private List<CypherParser.RelationshipPatternContext> relPatterns = new ArrayList<>();
+    private CypherParser.ReturnItemsContext returnItems = null;
+    private List<CypherParser.SortItemContext> sortItems = new ArrayList<>();
+    private CypherParser.ExpressionContext whereExpression = null;
 
     public void enterMatch(CypherParser.MatchContext ctx) {
         //optional keyword attached or not
@@ -37,6 +49,20 @@ public class CypherWalker extends CypherBaseListener {
 
     public void enterPattern(CypherParser.PatternContext ctx) {
         matchClause = ctx.getText();
+        inPattern = true;
+    }
+
+    public void exitPattern(CypherParser.PatternContext ctx) {
+        inPattern = false;
+    }
+
+    // patterns within expressions (such as in the WHERE clause) are not part of what is matched.
+    public void enterNodePattern(CypherParser.NodePatternContext ctx) {
+        if (inPattern) nodePatterns.add(ctx);
+    }
+
+    public void enterRelationshipPattern(CypherParser.RelationshipPatternContext ctx) {
+        if (inPattern) relPatterns.add(ctx);
     }
 
     public void enterExpression(CypherParser.ExpressionContext ctx) {
@@ -56,6 +82,7 @@ public class CypherWalker extends CypherBaseListener {
                 break;
             case 26:
                 whereClause = ctx.getText();
+                whereExpression = ctx;
                 break;
         }
     }
@@ -79,6 +106,7 @@ public class CypherWalker extends CypherBaseListener {
 
     public void enterReturnItems(CypherParser.ReturnItemsContext ctx) {
         returnClause = ctx.getText();
+        returnItems = ctx;
     }
 
     public void enterVariable(CypherParser.VariableContext ctx) {
@@ -90,6 +118,7 @@ public class CypherWalker extends CypherBaseListener {
     }
 
     public void enterSortItem(CypherParser.SortItemContext ctx) {
+        sortItems.add(ctx);
         String orderByString = ctx.getText().toLowerCase();
         if (orderByString.endsWith("descending") || orderByString.endsWith("desc")) {
             latestOrderDirection = "desc";
@@ -102,6 +131,10 @@ public class CypherWalker extends CypherBaseListener {
         hasDelete = true;
     }
 
+    public void enterCreate(CypherParser.CreateContext ctx) {
+        hasCreate = true;
+    }
+
     void printInformation() {
         System.out.println("\n--- QUERY INFORMATION ---");
         if (matchClause != null) System.out.println("Match Clause: " + matchClause + " -- OPTIONAL = " + hasOptional);
@@ -164,4 +197,28 @@ public class CypherWalker extends CypherBaseListener {
     public boolean hasDelete() {
         return hasDelete;
     }
+
+    boolean hasCreate() {
+        return hasCreate;
+    }
+
+    List<CypherParser.NodePatternContext> getNodePatterns() {
+        return nodePatterns;
+    }
+
+    List<CypherParser.RelationshipPatternContext> getRelPatterns() {
+        return relPatterns;
+    }
+
+    CypherParser.ReturnItemsContext getReturnItems() {
+        return returnItems;
+    }
+
+    List<CypherParser.SortItemContext> getSortItems() {
+        return sortItems;
+    }
+
+    CypherParser.ExpressionContext getWhereExpression() {
+        return whereExpression;
+    }
 }
@@ -0,0 +1,272 @@
+package translator;
+
+import org.antlr.v4.runtime.atn.*;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+import parsing_lexing.CypherParser;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Snapshot of the prediction DFA of the Cypher parser, saved as parser.bin in the workspace area. The
+ * DFA is built up as queries are parsed, and the first queries parsed by a new JVM are slow while it
+ * is empty. Loading the DFA saved by an earlier run lets those queries be parsed as quickly as in a
+ * JVM that has been running for some time.
+ * <p>
+ * The snapshot holds every state of the DFA of each decision of the parser, with the ATN configurations
+ * the state was made from (which are needed to add states to it later) and its edges. It is only used
+ * with the grammar it was saved from, which is checked against the serialized ATN of the parser.
+ */
+public final class ParserSnapshot {
+    private static final int MAGIC = 0x43325350;
+    private static final int VERSION = 1;
+    private static final String snapshotFile = "/parser.bin";
+    // edge to no state, and to the error state.
+    private static final int NONE = -1;
+    private static final int ERROR = -2;
+
+    // number of states the DFA had when last loaded or saved.
+    private static int statesSaved = 0;
+
+    private ParserSnapshot() {
+    }
+
+    // the DFA is held statically by the generated parser, so is shared by every parser.
+    private static DFA[] getDFA() {
+        return new CypherParser(null).getInterpreter().decisionToDFA;
+    }
+
+    private static int countStates(DFA[] decisions) {
+        int states = 0;
+        for (DFA dfa : decisions) states += dfa.states.size();
+        return states;
+    }
+
+    /**
+     * Load the DFA saved in the workspace area, before any query is parsed. Nothing is loaded if there
+     * is no snapshot, or it was saved from another grammar.
+     *
+     * @param workspace Workspace area holding the snapshot.
+     */
+    public static synchronized void load(String workspace) {
+        File file = new File(workspace + snapshotFile);
+        DFA[] decisions = getDFA();
+        if (!file.exists() || countStates(decisions) > 0) return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readInt() != CypherParser._serializedATN.hashCode()) return;
+            ATN atn = CypherParser._ATN;
+            PredictionContext[] contexts = readContexts(in);
+
+            int numDecisions = in.readInt();
+            for (int d = 0; d < numDecisions; d++) {
+                DFA dfa = decisions[in.readInt()];
+                DFAState[] states = new DFAState[in.readInt()];
+                for (int i = 0; i < states.length; i++) {
+                    states[i] = readState(in, atn, contexts);
+                    states[i].stateNumber = i;
+                }
+                for (DFAState state : states) {
+                    int numEdges = in.readInt();
+                    if (numEdges == NONE) continue;
+                    state.edges = new DFAState[numEdges];
+                    for (int e = 0; e < numEdges; e++) {
+                        int target = in.readInt();
+                        state.edges[e] = (target == ERROR) ? ATNSimulator.ERROR : (target == NONE) ? null : states[target];
+                    }
+                }
+                int s0 = in.readInt();
+                synchronized (dfa.states) {
+                    for (DFAState state : states) dfa.states.put(state, state);
+                    dfa.s0 = (s0 == NONE) ? null : states[s0];
+                }
+            }
+            statesSaved = countStates(decisions);
+            System.out.println("PARSER STATES LOADED : " + statesSaved);
+        } catch (IOException | RuntimeException e) {
+            // a snapshot that cannot be read is not used, and the DFA is built up from empty.
+            e.printStackTrace();
+            new CypherParser(null).getInterpreter().clearDFA();
+            statesSaved = 0;
+        }
+    }
+
+    /**
+     * Save the DFA in the workspace area, if it has grown since it was loaded or last saved. Decisions
+     * whose states depend on semantic predicates are left out, as the predicates cannot be saved.
+     *
+     * @param workspace Workspace area to hold the snapshot.
+     */
+    public static synchronized void save(String workspace) {
+        DFA[] decisions = getDFA();
+        if (countStates(decisions) <= statesSaved) return;
+
+        List<DFA> saved = new ArrayList<>();
+        List<DFAState[]> savedStates = new ArrayList<>();
+        Map<PredictionContext, Integer> contexts = new IdentityHashMap<>();
+        List<PredictionContext> contextList = new ArrayList<>();
+        for (DFA dfa : decisions) {
+            DFAState[] states;
+            synchronized (dfa.states) {
+                states = dfa.states.values().toArray(new DFAState[0]);
+            }
+            if (states.length == 0 || dfa.isPrecedenceDfa() || !canSave(states)) continue;
+            Arrays.sort(states, Comparator.comparingInt(s -> s.stateNumber));
+            for (DFAState state : states) {
+                for (ATNConfig config : state.configs) addContext(config.context, contexts, contextList);
+            }
+            saved.add(dfa);
+            savedStates.add(states);
+        }
+
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(workspace + snapshotFile + ".tmp")));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(CypherParser._serializedATN.hashCode());
+            writeContexts(out, contextList, contexts);
+
+            out.writeInt(saved.size());
+            for (int d = 0; d < saved.size(); d++) {
+                DFAState[] states = savedStates.get(d);
+                // states are numbered by their position in the snapshot.
+                Map<DFAState, Integer> index = new IdentityHashMap<>();
+                for (int i = 0; i < states.length; i++) index.put(states[i], i);
+
+                out.writeInt(saved.get(d).decision);
+                out.writeInt(states.length);
+                for (DFAState state : states) writeState(out, state, contexts);
+                for (DFAState state : states) {
+                    DFAState[] edges = state.edges;
+                    if (edges == null) {
+                        out.writeInt(NONE);
+                        continue;
+                    }
+                    out.writeInt(edges.length);
+                    for (DFAState target : edges) {
+                        Integer i = (target == null) ? null : index.get(target);
+                        out.writeInt((target == ATNSimulator.ERROR) ? ERROR : (i == null) ? NONE : i);
+                    }
+                }
+                DFAState s0 = saved.get(d).s0;
+                Integer i = (s0 == null) ? null : index.get(s0);
+                out.writeInt((i == null) ? NONE : i);
+            }
+            out.close();
+            Files.move(Paths.get(workspace + snapshotFile + ".tmp"), Paths.get(workspace + snapshotFile),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            statesSaved = countStates(decisions);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean canSave(DFAState[] states) {
+        for (DFAState state : states) {
+            if (state.predicates != null || state.lexerActionExecutor != null) return false;
+            for (ATNConfig config : state.configs) {
+                if (config.semanticContext != SemanticContext.NONE) return false;
+            }
+        }
+        return true;
+    }
+
+    // contexts are numbered so that the parents of a context come before it.
+    private static void addContext(PredictionContext context, Map<PredictionContext, Integer> contexts,
+                                   List<PredictionContext> contextList) {
+        if (context == null || contexts.containsKey(context)) return;
+        for (int i = 0; i < context.size(); i++) addContext(context.getParent(i), contexts, contextList);
+        contexts.put(context, contextList.size());
+        contextList.add(context);
+    }
+
+    private static void writeContexts(DataOutputStream out, List<PredictionContext> contextList,
+                                      Map<PredictionContext, Integer> contexts) throws IOException {
+        out.writeInt(contextList.size());
+        for (PredictionContext context : contextList) {
+            if (context == PredictionContext.EMPTY) {
+                out.writeInt(0);
+                continue;
+            }
+            out.writeInt(context.size());
+            for (int i = 0; i < context.size(); i++) {
+                PredictionContext parent = context.getParent(i);
+                out.writeInt((parent == null) ? NONE : contexts.get(parent));
+                out.writeInt(context.getReturnState(i));
+            }
+        }
+    }
+
+    private static PredictionContext[] readContexts(DataInputStream in) throws IOException {
+        PredictionContext[] contexts = new PredictionContext[in.readInt()];
+        for (int c = 0; c < contexts.length; c++) {
+            int size = in.readInt();
+            PredictionContext[] parents = new PredictionContext[size];
+            int[] returnStates = new int[size];
+            for (int i = 0; i < size; i++) {
+                int parent = in.readInt();
+                parents[i] = (parent == NONE) ? null : contexts[parent];
+                returnStates[i] = in.readInt();
+            }
+            if (size == 0) contexts[c] = PredictionContext.EMPTY;
+            else if (size == 1) contexts[c] = SingletonPredictionContext.create(parents[0], returnStates[0]);
+            else contexts[c] = new ArrayPredictionContext(parents, returnStates);
+        }
+        return contexts;
+    }
+
+    private static void writeState(DataOutputStream out, DFAState state, Map<PredictionContext, Integer> contexts)
+            throws IOException {
+        out.writeBoolean(state.isAcceptState);
+        out.writeInt(state.prediction);
+        out.writeBoolean(state.requiresFullContext);
+        ATNConfigSet configs = state.configs;
+        out.writeBoolean(configs.fullCtx);
+        out.writeInt(configs.uniqueAlt);
+        out.writeBoolean(configs.hasSemanticContext);
+        out.writeBoolean(configs.dipsIntoOuterContext);
+        out.writeInt(configs.size());
+        for (ATNConfig config : configs) {
+            out.writeInt(config.state.stateNumber);
+            out.writeInt(config.alt);
+            out.writeInt((config.context == null) ? NONE : contexts.get(config.context));
+            out.writeInt(config.reachesIntoOuterContext);
+        }
+    }
+
+    private static DFAState readState(DataInputStream in, ATN atn, PredictionContext[] contexts) throws IOException {
+        boolean isAcceptState = in.readBoolean();
+        int prediction = in.readInt();
+        boolean requiresFullContext = in.readBoolean();
+        ATNConfigSet configs = new ATNConfigSet(in.readBoolean());
+        int uniqueAlt = in.readInt();
+        boolean hasSemanticContext = in.readBoolean();
+        boolean dipsIntoOuterContext = in.readBoolean();
+        int numConfigs = in.readInt();
+        for (int i = 0; i < numConfigs; i++) {
+            ATNState state = atn.states.get(in.readInt());
+            int alt = in.readInt();
+            int context = in.readInt();
+            ATNConfig config = new ATNConfig(state, alt, (context == NONE) ? null : contexts[context]);
+            config.reachesIntoOuterContext = in.readInt();
+            configs.add(config);
+        }
+        // the conflicting alternatives are only given to error listeners, so are not kept.
+        configs.uniqueAlt = uniqueAlt;
+        configs.hasSemanticContext = hasSemanticContext;
+        configs.dipsIntoOuterContext = dipsIntoOuterContext;
+        configs.setReadonly(true);
+
+        DFAState state = new DFAState(configs);
+        state.isAcceptState = isAcceptState;
+        state.prediction = prediction;
+        state.requiresFullContext = requiresFullContext;
+        return state;
+    }
+}
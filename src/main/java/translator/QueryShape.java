@@ -0,0 +1,210 @@
+package translator;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The shape of a Cypher query: the query with the values of its string literals, and of the numbers
+ * compared against or given to properties, taken out. Queries of the same shape differ only in those
+ * values, so are translated the same way (see SqlTemplate).
+ * <p>
+ * Only literals before the RETURN of the query are taken out, as those after it change what is
+ * returned rather than what is matched.
+ */
+final class QueryShape {
+    // marks where a string or number literal was taken out of the key.
+    private static final char STRING = '\u0001';
+    private static final char NUMBER = '\u0002';
+    // text found in values that would change how the query is parsed or translated.
+    private static final String[] UNSAFE = {" and ", " or ", " as ", " union ", " foreach ", " with ",
+            "shortestpath", "iterate"};
+    private static final Pattern KEY = Pattern.compile("(?:\\.|[{,]\\s*)(\\w+)");
+
+    final String key;
+    // text of the query between the literals.
+    private final List<String> parts;
+    // values of the literals (strings without their quotes), and the quote used by each (0 for numbers).
+    final List<String> values;
+    private final List<Character> quotes;
+    // properties named in the query.
+    private final Set<String> properties;
+
+    private QueryShape(String key, List<String> parts, List<String> values, List<Character> quotes,
+                       Set<String> properties) {
+        this.key = key;
+        this.parts = parts;
+        this.values = values;
+        this.quotes = quotes;
+        this.properties = properties;
+    }
+
+    /**
+     * @param cypher Normalized Cypher query.
+     * @return Shape of the query, or null if it has no literals to take out.
+     */
+    static QueryShape of(String cypher) {
+        List<String> parts = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        List<Character> quotes = new ArrayList<>();
+        StringBuilder key = new StringBuilder(cypher.length());
+        int end = returnPosition(cypher);
+        int partStart = 0;
+
+        for (int i = 0; i < end; i++) {
+            char c = cypher.charAt(i);
+            if (c == '"' || c == '\'') {
+                int close = cypher.indexOf(c, i + 1);
+                if (close == -1 || close > end) return null;
+                parts.add(cypher.substring(partStart, i));
+                values.add(cypher.substring(i + 1, close));
+                quotes.add(c);
+                key.append(STRING);
+                partStart = close + 1;
+                i = close;
+            } else if (Character.isDigit(c) && isCompared(cypher, i)) {
+                int close = i;
+                while (close < cypher.length() && Character.isDigit(cypher.charAt(close))) close++;
+                char next = (close < cypher.length()) ? cypher.charAt(close) : ' ';
+                // decimals and numbers with leading zeros are left in the shape.
+                if (next == '.' || Character.isLetterOrDigit(next) || next == '_' || (c == '0' && close > i + 1)) {
+                    key.append(cypher, i, close);
+                } else {
+                    parts.add(cypher.substring(partStart, i));
+                    values.add(cypher.substring(i, close));
+                    quotes.add((char) 0);
+                    key.append(NUMBER);
+                    partStart = close;
+                }
+                i = close - 1;
+            } else {
+                key.append(c);
+            }
+        }
+        if (values.isEmpty()) return null;
+        key.append(cypher, end, cypher.length());
+        parts.add(cypher.substring(partStart));
+
+        Set<String> properties = new HashSet<>();
+        Matcher m = KEY.matcher(key);
+        while (m.find()) properties.add(m.group(1).toLowerCase());
+        return new QueryShape(key.toString(), parts, values, quotes, properties);
+    }
+
+    /**
+     * The parameters ($name) of a query, taken out as if they were literals, so the query can be
+     * translated once with sentinels in their place (see SqlTemplate). Parameters given to SKIP or
+     * LIMIT stand in for numbers, and all others for strings.
+     *
+     * @param cypher Cypher query.
+     * @return Shape of the query, with the names of the parameters as its values, or null if the query
+     * has no parameters.
+     */
+    static QueryShape ofParameters(String cypher) {
+        List<String> parts = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<Character> quotes = new ArrayList<>();
+        int partStart = 0;
+        char quote = 0;
+
+        for (int i = 0; i < cypher.length(); i++) {
+            char c = cypher.charAt(i);
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '$') {
+                int close = i + 1;
+                while (close < cypher.length() && (Character.isLetterOrDigit(cypher.charAt(close))
+                        || cypher.charAt(close) == '_')) close++;
+                if (close == i + 1) continue;
+                String before = cypher.substring(0, i).trim().toLowerCase();
+                parts.add(cypher.substring(partStart, i));
+                names.add(cypher.substring(i + 1, close));
+                quotes.add((before.endsWith("skip") || before.endsWith("limit")) ? (char) 0 : '"');
+                partStart = close;
+                i = close - 1;
+            }
+        }
+        if (names.isEmpty()) return null;
+        parts.add(cypher.substring(partStart));
+        return new QueryShape(cypher, parts, names, quotes, Collections.emptySet());
+    }
+
+    // position of the first RETURN keyword outside of a string literal (or the end of the query).
+    private static int returnPosition(String cypher) {
+        String lower = cypher.toLowerCase();
+        char quote = 0;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (lower.startsWith("return", i) && (i == 0 || !Character.isLetterOrDigit(lower.charAt(i - 1)))) {
+                return i;
+            }
+        }
+        return cypher.length();
+    }
+
+    // numbers are taken out when given to a property ({prop:1}) or compared against one (n.prop = 1).
+    private static boolean isCompared(String cypher, int i) {
+        if (i > 0 && (Character.isLetterOrDigit(cypher.charAt(i - 1)) || cypher.charAt(i - 1) == '_')) return false;
+        int j = i - 1;
+        while (j >= 0 && cypher.charAt(j) == ' ') j--;
+        if (j < 0) return false;
+        char prev = cypher.charAt(j);
+        return prev == ':' || prev == '=' || prev == '<' || prev == '>';
+    }
+
+    /**
+     * @return True if every value of the query can be filled into the translation of its shape, that
+     * is none of them could change how the query is parsed or translated.
+     */
+    boolean isSafe() {
+        for (String value : values) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (!Character.isLetterOrDigit(c) && " ._-/&!@+%".indexOf(c) == -1) return false;
+            }
+            String lower = " " + value.toLowerCase() + " ";
+            for (String unsafe : UNSAFE) {
+                if (lower.contains(unsafe)) return false;
+            }
+            // the conditions on a property are found by looking for its name.
+            for (String property : properties) {
+                if (lower.contains(property)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param fill Value for each literal.
+     * @return The query of this shape with the values given.
+     */
+    String withValues(List<String> fill) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fill.size(); i++) {
+            char quote = quotes.get(i);
+            sb.append(parts.get(i));
+            if (quote != 0) sb.append(quote);
+            sb.append(fill.get(i));
+            if (quote != 0) sb.append(quote);
+        }
+        return sb.append(parts.get(fill.size())).toString();
+    }
+
+    /**
+     * @return Values that stand in for the literals when translating the shape, which are unlike any
+     * other text of a translation (and the strings are of mixed case, to find if they are lower cased).
+     */
+    List<String> sentinels() {
+        List<String> sentinels = new ArrayList<>();
+        for (int i = 0; i < values.size(); i++) {
+            sentinels.add((quotes.get(i) != 0) ? "C2sLit" + i + "Q" : String.valueOf(987650000 + i));
+        }
+        return sentinels;
+    }
+}
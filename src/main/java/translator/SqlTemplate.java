@@ -0,0 +1,247 @@
+package translator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The translation of a query shape (see QueryShape), with a placeholder wherever the value of one of
+ * its literals appears in the SQL. The SQL of any query of the shape is then made by filling in its
+ * values, without the query being parsed or translated.
+ * <p>
+ * Values are filled in either as literals in the SQL, or as JDBC parameters (?) so that the SQL is the
+ * same for every query of the shape, and Postgres can reuse its plan. Statements that cannot take
+ * parameters (such as CREATE) always have the values filled in as literals.
+ * <p>
+ * The values are the text of the literals of a query, or the values given to the parameters ($name)
+ * of a query, which may also be numbers or booleans.
+ */
+final class SqlTemplate {
+    // used in the cache for shapes whose translation cannot be made into a template.
+    static final SqlTemplate NONE = new SqlTemplate(Collections.emptyList(), new int[0], new boolean[0],
+            new boolean[0], new boolean[0], null);
+    // used in the cache for shapes whose template did not give the translation of the first query of the
+    // shape, so is made again for the next query of the shape before being given up on.
+    static final SqlTemplate RETRY = new SqlTemplate(Collections.emptyList(), new int[0], new boolean[0],
+            new boolean[0], new boolean[0], null);
+    private static final Pattern NUMBER = Pattern.compile("-?[0-9]+(\\.[0-9]+)?");
+
+    // text of the SQL between the placeholders.
+    private final List<String> parts;
+    // for each placeholder: the literal filling it, and whether it is a quoted string (or else a number),
+    // lower cased, and a parameter.
+    private final int[] literal;
+    private final boolean[] quoted;
+    private final boolean[] lower;
+    private final boolean[] parameter;
+    // items returned by the queries of the shape, which do not depend on the values.
+    private final String[] returnItems;
+
+    private SqlTemplate(List<String> parts, int[] literal, boolean[] quoted, boolean[] lower, boolean[] parameter,
+                        String[] returnItems) {
+        this.parts = parts;
+        this.literal = literal;
+        this.quoted = quoted;
+        this.lower = lower;
+        this.parameter = parameter;
+        this.returnItems = returnItems;
+    }
+
+    /**
+     * Make the template from the translation of a query, where the literals had the given values. A
+     * value must either be a whole string literal of the SQL, or a number standing alone outside of any
+     * string literal.
+     *
+     * @param sql         Translation of the query.
+     * @param sentinels   Values of the literals of the query (see QueryShape.sentinels).
+     * @param returnItems Items returned by the query.
+     * @return The template, or null if a value was used in some other way than as a whole literal.
+     */
+    static SqlTemplate build(String sql, List<String> sentinels, String[] returnItems) {
+        String sqlLower = sql.toLowerCase();
+        boolean[] inString = stringRegions(sql);
+        List<int[]> found = new ArrayList<>();
+
+        for (int i = 0; i < sentinels.size(); i++) {
+            String sentinel = sentinels.get(i);
+            String sentinelLower = sentinel.toLowerCase();
+            boolean isNumber = isNumber(sentinel);
+            int matches = 0;
+            for (int at = sqlLower.indexOf(sentinelLower); at != -1; at = sqlLower.indexOf(sentinelLower, at + 1)) {
+                int end = at + sentinel.length();
+                boolean isQuoted = at > 0 && end < sql.length() && sql.charAt(at - 1) == '\'' && sql.charAt(end) == '\''
+                        && (at == 1 || !inString[at - 2]) && (end + 1 == sql.length() || !inString[end + 1]);
+                boolean isLower = !sql.startsWith(sentinel, at);
+                if (!isQuoted) {
+                    // only numbers may stand alone, outside of a string literal and apart from other words.
+                    if (!isNumber || inString[at] || at > 0 && Character.isLetterOrDigit(sql.charAt(at - 1))
+                            || end < sql.length() && Character.isLetterOrDigit(sql.charAt(end))) {
+                        return null;
+                    }
+                }
+                if (isLower && !sentinel.equals(sentinelLower) && !sql.startsWith(sentinelLower, at)) return null;
+                found.add(new int[]{isQuoted ? at - 1 : at, isQuoted ? end + 1 : end, i, isQuoted ? 1 : 0,
+                        isLower ? 1 : 0});
+                matches++;
+            }
+            if (matches == 0) return null;
+        }
+        found.sort((a, b) -> a[0] - b[0]);
+
+        List<String> parts = new ArrayList<>();
+        int n = found.size();
+        int[] literal = new int[n];
+        boolean[] quoted = new boolean[n];
+        boolean[] lower = new boolean[n];
+        boolean[] parameter = new boolean[n];
+        int last = 0;
+        for (int k = 0; k < n; k++) {
+            int[] f = found.get(k);
+            parts.add(sql.substring(last, f[0]));
+            literal[k] = f[2];
+            quoted[k] = f[3] == 1;
+            lower[k] = f[4] == 1;
+            String text = sql.substring(sql.lastIndexOf(';', f[0]) + 1, f[0]).trim().toUpperCase();
+            parameter[k] = !text.startsWith("CREATE") && !text.startsWith("DO ");
+            last = f[1];
+        }
+        parts.add(sql.substring(last));
+        return new SqlTemplate(parts, literal, quoted, lower, parameter, returnItems);
+    }
+
+    /**
+     * @return For each character of the SQL, whether it is within a string literal (quotes included).
+     */
+    private static boolean[] stringRegions(String sql) {
+        boolean[] inString = new boolean[sql.length()];
+        boolean open = false;
+        for (int i = 0; i < sql.length(); i++) {
+            if (sql.charAt(i) == '\'') {
+                inString[i] = true;
+                // a doubled quote within a literal is an escaped quote.
+                if (open && i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                    inString[++i] = true;
+                } else {
+                    open = !open;
+                }
+            } else {
+                inString[i] = open;
+            }
+        }
+        return inString;
+    }
+
+    private static boolean isNumber(String text) {
+        return NUMBER.matcher(text).matches();
+    }
+
+    String[] getReturnItems() {
+        return returnItems;
+    }
+
+    /**
+     * @param values Values of the literals of a query of the shape.
+     * @return SQL of the query, with the values filled in as literals.
+     */
+    String fill(List<?> values) {
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < literal.length; k++) {
+            sb.append(parts.get(k));
+            appendValue(sb, k, values);
+        }
+        return sb.append(parts.get(literal.length)).toString();
+    }
+
+    /**
+     * @param values Values of the literals of a query of the shape.
+     * @return SQL of the query, with a JDBC parameter (?) in place of each value where possible.
+     */
+    String parameterize(List<?> values) {
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < literal.length; k++) {
+            sb.append(parts.get(k));
+            if (parameter[k]) sb.append('?');
+            else appendValue(sb, k, values);
+        }
+        return sb.append(parts.get(literal.length)).toString();
+    }
+
+    /**
+     * The statements of the parameterized SQL, each with the values of its own JDBC parameters. The
+     * statements are split where the text of the template ends one, so a semi colon within a value (or
+     * any other string literal) does not split them.
+     *
+     * @param values Values of the literals of a query of the shape.
+     * @return Each statement of the parameterized SQL (without its semi colon), in order.
+     */
+    List<TranslationResult.Statement> statements(List<?> values) {
+        List<TranslationResult.Statement> statements = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        List<Object> params = new ArrayList<>();
+        boolean open = false;
+        for (int k = 0; k <= literal.length; k++) {
+            String part = parts.get(k);
+            for (int c = 0; c < part.length(); c++) {
+                char ch = part.charAt(c);
+                // a doubled quote (an escaped quote) opens and closes again.
+                if (ch == '\'') open = !open;
+                if (ch == ';' && !open) {
+                    statements.add(new TranslationResult.Statement(sb.toString(), params));
+                    sb.setLength(0);
+                    params = new ArrayList<>();
+                } else {
+                    sb.append(ch);
+                }
+            }
+            if (k == literal.length) break;
+            if (parameter[k]) {
+                sb.append('?');
+                params.add(quoted[k] ? text(k, values) : number(k, values));
+            } else {
+                appendValue(sb, k, values);
+            }
+        }
+        if (!sb.toString().trim().isEmpty()) statements.add(new TranslationResult.Statement(sb.toString(), params));
+        return statements;
+    }
+
+    /**
+     * @param names Name of each parameter of the query.
+     * @return SQL of the query, with $name in place of each value.
+     */
+    String describe(List<String> names) {
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < literal.length; k++) {
+            sb.append(parts.get(k)).append('$').append(names.get(literal[k]));
+        }
+        return sb.append(parts.get(literal.length)).toString();
+    }
+
+    private void appendValue(StringBuilder sb, int k, List<?> values) {
+        if (quoted[k]) {
+            String value = text(k, values);
+            // values given to parameters may hold any text.
+            sb.append((value == null) ? "NULL" : "'" + value.replace("'", "''") + "'");
+        } else {
+            Object value = number(k, values);
+            sb.append((value == null) ? "NULL" : value);
+        }
+    }
+
+    private String text(int k, List<?> values) {
+        Object value = values.get(literal[k]);
+        if (value == null) return null;
+        return lower[k] ? value.toString().toLowerCase() : value.toString();
+    }
+
+    /**
+     * @throws IllegalArgumentException The value of a placeholder standing for a number is not a number.
+     */
+    private Object number(int k, List<?> values) {
+        Object value = values.get(literal[k]);
+        if (value == null || value instanceof Number || value instanceof Boolean) return value;
+        if (!isNumber(value.toString())) throw new IllegalArgumentException("Not a number: " + value);
+        return value.toString();
+    }
+}
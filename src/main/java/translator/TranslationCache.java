@@ -0,0 +1,161 @@
+package translator;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Translations of Cypher queries already made, so a query seen before is not parsed and translated
+ * again. There are two levels: the most recently used translations are kept in a bounded LRU cache,
+ * and in front of it the translations stored by earlier runs (see DbUtil.loadTranslationCache), which
+ * are loaded at start up. The translations of both levels are only valid for the version of the schema
+ * catalog they were made against, so the cache is created for one version and translation method.
+ * <p>
+ * Queries are looked up by their normalized text (see normalize), and the cache may be used by several
+ * threads at once. The cache also holds the template of the translation of each shape of query seen
+ * (see QueryShape), so queries differing only in their values are only translated once.
+ */
+public class TranslationCache {
+    // most translations kept in the LRU cache by default.
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    private final long version;
+    private final String typeTranslate;
+    private final Map<String, TranslationResult> recent;
+    private final Map<String, SqlTemplate> templates;
+    private final Map<String, TranslationResult> stored = new ConcurrentHashMap<>();
+    // translations made since they were last taken to be stored.
+    private final Map<String, TranslationResult> added = new LinkedHashMap<>();
+
+    /**
+     * @param capacity      Most translations kept in the LRU cache.
+     * @param version       Version of the schema catalog the translations are made against.
+     * @param typeTranslate Type of translation method used (-t or -tc).
+     */
+    public TranslationCache(int capacity, long version, String typeTranslate) {
+        this.version = version;
+        this.typeTranslate = typeTranslate;
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<String, TranslationResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TranslationResult> eldest) {
+                return size() > capacity;
+            }
+        });
+        this.templates = Collections.synchronizedMap(new LinkedHashMap<String, SqlTemplate>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SqlTemplate> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getTypeTranslate() {
+        return typeTranslate;
+    }
+
+    /**
+     * Normalize a Cypher query, so that queries differing only in their spacing are looked up (and
+     * translated) as the same query: runs of whitespace outside of string literals become a single
+     * space, and the query is trimmed. A quote escaped with a backslash does not end a literal.
+     *
+     * @param cypher Cypher input.
+     * @return The normalized query.
+     */
+    public static String normalize(String cypher) {
+        StringBuilder sb = new StringBuilder(cypher.length());
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0; i < cypher.length(); i++) {
+            char c = cypher.charAt(i);
+            if (quote == 0 && Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space && sb.length() > 0) sb.append(' ');
+            space = false;
+            sb.append(c);
+            if (quote == 0 && (c == '"' || c == '\'')) quote = c;
+            else if (c == quote) quote = 0;
+            else if (quote != 0 && c == '\\' && i + 1 < cypher.length()) sb.append(cypher.charAt(++i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param cypher Normalized Cypher query.
+     * @return The translation of the query, or null if it has not been translated.
+     */
+    TranslationResult get(String cypher) {
+        TranslationResult result = recent.get(cypher);
+        if (result == null) {
+            result = stored.get(cypher);
+            if (result != null) recent.put(cypher, result);
+        }
+        return result;
+    }
+
+    /**
+     * @param cypher Normalized Cypher query.
+     * @param result Translation of the query.
+     */
+    void put(String cypher, TranslationResult result) {
+        recent.put(cypher, result);
+        // the translations of queries with parameters need their template, so are only held in memory.
+        if (!result.getParameterNames().isEmpty()) return;
+        synchronized (added) {
+            added.put(cypher, result);
+        }
+    }
+
+    /**
+     * @param shape Key of a query shape.
+     * @return Template of the translation of the shape, SqlTemplate.NONE if it cannot be made into a
+     * template, SqlTemplate.RETRY if it is to be made again, or null if the shape has not been seen.
+     */
+    SqlTemplate getTemplate(String shape) {
+        return templates.get(shape);
+    }
+
+    void putTemplate(String shape, SqlTemplate template) {
+        templates.put(shape, template);
+    }
+
+    /**
+     * Add a translation stored by an earlier run.
+     *
+     * @param cypher      Normalized Cypher query.
+     * @param sql         SQL equivalent of the query.
+     * @param returnItems Items returned by the query, or null.
+     */
+    public void putStored(String cypher, String sql, String[] returnItems) {
+        stored.put(cypher, new TranslationResult(cypher, sql, returnItems, 0));
+    }
+
+    /**
+     * @return Translations made since this was last called, by their normalized Cypher query, which
+     * are then treated as stored.
+     */
+    public Map<String, TranslationResult> takeAdded() {
+        Map<String, TranslationResult> taken;
+        synchronized (added) {
+            taken = new LinkedHashMap<>(added);
+            added.clear();
+        }
+        stored.putAll(taken);
+        return taken;
+    }
+
+    /**
+     * @return Number of translations held, across both levels.
+     */
+    public int size() {
+        Set<String> queries = new HashSet<>(stored.keySet());
+        synchronized (recent) {
+            queries.addAll(recent.keySet());
+        }
+        return queries.size();
+    }
+}
@@ -0,0 +1,187 @@
+package translator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The translation of a single Cypher query to SQL, as returned by Translator. The result cannot be
+ * changed once created, so it may be handed between threads freely.
+ * <p>
+ * The translation of a query with parameters ($name) holds $name in place of the values in its SQL,
+ * and must be given the values of its parameters (see bind) before it is run.
+ */
+public final class TranslationResult {
+    private final String cypher;
+    private final String sql;
+    private final String[] returnItems;
+    private final long translationTime;
+    private final String parameterizedSql;
+    private final List<Statement> statements;
+    // for a query with parameters: the template its values are bound into, and the parameter of each literal.
+    private final SqlTemplate template;
+    private final List<String> parameterNames;
+
+    TranslationResult(String cypher, String sql, String[] returnItems, long translationTime) {
+        this(cypher, sql, returnItems, translationTime, null, split(sql));
+    }
+
+    TranslationResult(String cypher, String sql, String[] returnItems, long translationTime,
+                      String parameterizedSql, List<Statement> statements) {
+        this(cypher, sql, returnItems, translationTime, parameterizedSql, statements, null, Collections.emptyList());
+    }
+
+    TranslationResult(String cypher, String[] returnItems, long translationTime, SqlTemplate template,
+                      List<String> parameterNames) {
+        this(cypher, template.describe(parameterNames), returnItems, translationTime, null, Collections.emptyList(),
+                template, parameterNames);
+    }
+
+    private TranslationResult(String cypher, String sql, String[] returnItems, long translationTime,
+                              String parameterizedSql, List<Statement> statements, SqlTemplate template,
+                              List<String> parameterNames) {
+        this.cypher = cypher;
+        this.sql = sql;
+        this.returnItems = (returnItems == null) ? null : returnItems.clone();
+        this.translationTime = translationTime;
+        this.parameterizedSql = parameterizedSql;
+        this.statements = Collections.unmodifiableList(statements);
+        this.template = template;
+        this.parameterNames = Collections.unmodifiableList(parameterNames);
+    }
+
+    /**
+     * @param cypher          The Cypher query (as given) this is the translation of.
+     * @param translationTime Time taken to find the translation, in nanoseconds.
+     * @return This translation, for a query translated the same way.
+     */
+    TranslationResult reuse(String cypher, long translationTime) {
+        return new TranslationResult(cypher, sql, returnItems, translationTime, parameterizedSql, statements,
+                template, parameterNames);
+    }
+
+    /**
+     * Give the parameters of the query their values. Strings compared against properties are lower
+     * cased, as the literals of a query are.
+     *
+     * @param values Value of each parameter, by name (without the $).
+     * @return The translation with the values in its SQL, and as the parameters of its parameterized
+     * SQL, or this translation if the query has no parameters.
+     * @throws IllegalArgumentException A parameter of the query has not been given a value, or a parameter
+     *                                  standing for a number (such as the value of LIMIT) is not given one.
+     */
+    public TranslationResult bind(Map<String, ?> values) {
+        if (template == null) return this;
+        List<Object> fill = new ArrayList<>();
+        for (String name : parameterNames) {
+            if (!values.containsKey(name)) throw new IllegalArgumentException("No value given for parameter $" + name);
+            fill.add(values.get(name));
+        }
+        return new TranslationResult(cypher, template.fill(fill), returnItems, translationTime,
+                template.parameterize(fill), template.statements(fill));
+    }
+
+    /**
+     * @return Names of the parameters ($name) of the query, which bind must be given values for, or an
+     * empty list if it has none.
+     */
+    public List<String> getParameterNames() {
+        return new ArrayList<>(new LinkedHashSet<>(parameterNames));
+    }
+
+    /**
+     * @return The Cypher query that was translated.
+     */
+    public String getCypher() {
+        return cypher;
+    }
+
+    /**
+     * @return SQL equivalent of the Cypher query (several statements are separated by semi colons).
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return Items returned by the Cypher query, as used when comparing its results against those of
+     * the SQL, or null if the query does not return anything (such as CREATE or DELETE).
+     */
+    public String[] getReturnItems() {
+        return (returnItems == null) ? null : returnItems.clone();
+    }
+
+    /**
+     * @return The SQL with JDBC parameters (?) in place of the values of the query, each statement to be
+     * run as a PreparedStatement with its parameters (see getStatements), or null if the SQL has no
+     * parameters.
+     */
+    public String getParameterizedSql() {
+        return parameterizedSql;
+    }
+
+    /**
+     * @return Each statement to run, in order: those of the parameterized SQL with their parameters, or
+     * else those of the SQL.
+     */
+    public List<Statement> getStatements() {
+        return statements;
+    }
+
+    /**
+     * @return Time taken to translate the query, in nanoseconds.
+     */
+    public long getTranslationTime() {
+        return translationTime;
+    }
+
+    /**
+     * @return The statements of the SQL, split at semi colons outside of string literals.
+     */
+    private static List<Statement> split(String sql) {
+        List<Statement> statements = new ArrayList<>();
+        if (sql == null) return statements;
+        boolean open = false;
+        int start = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') open = !open;
+            else if (c == ';' && !open) {
+                statements.add(new Statement(sql.substring(start, i), null));
+                start = i + 1;
+            }
+        }
+        if (!sql.substring(start).trim().isEmpty()) statements.add(new Statement(sql.substring(start), null));
+        return statements;
+    }
+
+    /**
+     * A single statement of the SQL, with the values of its JDBC parameters.
+     */
+    public static final class Statement {
+        private final String sql;
+        private final List<Object> parameters;
+
+        Statement(String sql, List<Object> parameters) {
+            this.sql = sql;
+            this.parameters = (parameters == null) ? null : Collections.unmodifiableList(parameters);
+        }
+
+        /**
+         * @return SQL of the statement, without its semi colon.
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * @return Values of the JDBC parameters (?) of the statement, in order, or null if the statement
+         * is not parameterized.
+         */
+        public List<Object> getParameters() {
+            return parameters;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package translator;
+
+import clauseObjects.CypForEach;
+import clauseObjects.CypIterate;
+import clauseObjects.DecodedQuery;
+import query_translation.*;
+import schemaConversion.SchemaCatalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Translates Cypher queries to SQL. Everything worked out about a query is kept within the call
+ * translating it, and the schema is read from the SchemaCatalog (which does not change once loaded),
+ * so a single Translator may be used by several threads at once.
+ * <p>
+ * Given a TranslationCache, queries translated before against the same version of the schema are
+ * taken from the cache rather than parsed again. Queries of a shape seen before (differing only in the
+ * values of their literals) have their values filled into the template of the shape's translation,
+ * and are given the SQL with parameters as well.
+ * <p>
+ * Queries may have parameters ($name), which are translated to JDBC parameters (?) once, whatever
+ * their values. The values are then given to the translation with TranslationResult.bind.
+ */
+public class Translator {
+    private final String typeTranslate;
+    private final TranslationCache cache;
+
+    /**
+     * @param typeTranslate Type of translation method to use: -t is standard, -tc uses the transitive
+     *                      closure (view README for more information).
+     */
+    public Translator(String typeTranslate) {
+        this(typeTranslate, null);
+    }
+
+    /**
+     * @param typeTranslate Type of translation method to use.
+     * @param cache         Translations already made, or null to translate every query.
+     */
+    public Translator(String typeTranslate, TranslationCache cache) {
+        this.typeTranslate = typeTranslate;
+        this.cache = cache;
+    }
+
+    public String getTypeTranslate() {
+        return typeTranslate;
+    }
+
+    /**
+     * Translate a Cypher query to SQL, whatever its form (FOREACH, WITH, shortest paths, ITERATE, UNION,
+     * or a plain read, insert or delete).
+     *
+     * @param cypher Cypher input.
+     * @return The translation.
+     * @throws Exception Error translating the query.
+     */
+    public TranslationResult translate(String cypher) throws Exception {
+        long startNano = System.nanoTime();
+        // the cache is not used once the schema has changed from the one its translations were made against.
+        if (cache == null || cache.getVersion() != SchemaCatalog.get().getVersion()
+                || !cache.getTypeTranslate().equals(typeTranslate)) {
+            QueryShape parameters = QueryShape.ofParameters(cypher);
+            return (parameters == null) ? translate(cypher, cypher, startNano) :
+                    translateParameters(cypher, parameters, startNano);
+        }
+
+        String query = TranslationCache.normalize(cypher);
+        QueryShape parameters = QueryShape.ofParameters(query);
+        if (parameters != null) {
+            TranslationResult cached = cache.get(query);
+            if (cached != null) return cached.reuse(cypher, System.nanoTime() - startNano);
+            TranslationResult result = translateParameters(cypher, parameters, startNano);
+            cache.put(query, result);
+            return result;
+        }
+
+        QueryShape shape = isPlain(query.toLowerCase()) ? QueryShape.of(query) : null;
+        if (shape != null && !shape.isSafe()) shape = null;
+        SqlTemplate template = (shape == null) ? null : cache.getTemplate(shape.key);
+        if (template != null && template != SqlTemplate.NONE && template != SqlTemplate.RETRY) {
+            return new TranslationResult(cypher, template.fill(shape.values), template.getReturnItems(),
+                    System.nanoTime() - startNano, template.parameterize(shape.values),
+                    template.statements(shape.values));
+        }
+
+        TranslationResult cached = cache.get(query);
+        if (cached != null) return cached.reuse(cypher, System.nanoTime() - startNano);
+        TranslationResult result = translate(cypher, query, startNano);
+        cache.put(query, result);
+        if (shape != null && (template == null || template == SqlTemplate.RETRY)) {
+            SqlTemplate built = buildTemplate(shape, result);
+            // a template not giving the translation of this query is made again for one more query.
+            cache.putTemplate(shape.key, (built == SqlTemplate.RETRY && template == SqlTemplate.RETRY) ?
+                    SqlTemplate.NONE : built);
+            template = built;
+            if (template != SqlTemplate.NONE && template != SqlTemplate.RETRY) {
+                return new TranslationResult(cypher, result.getSql(), result.getReturnItems(),
+                        result.getTranslationTime(), template.parameterize(shape.values),
+                        template.statements(shape.values));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Only queries translated by translateQuery are made into templates, as the other forms are taken
+     * apart by searching their text for keywords (which may be found in their values).
+     */
+    private static boolean isPlain(String lower) {
+        return !lower.contains(" foreach ") && !lower.contains(" with ") && !lower.contains("shortestpath")
+                && !lower.contains("iterate");
+    }
+
+    /**
+     * Translate the shape of a query with values unlike any other text, and find where the values are
+     * in the SQL. The template is only kept if, filled with the values of the query, it gives the same
+     * SQL as translating the query did.
+     *
+     * @param shape  Shape of the query.
+     * @param result Translation of the query.
+     * @return Template of the translation, SqlTemplate.NONE if it could not be made, or
+     * SqlTemplate.RETRY if it did not give the translation of the query.
+     */
+    private SqlTemplate buildTemplate(QueryShape shape, TranslationResult result) {
+        List<String> sentinels = shape.sentinels();
+        try {
+            TranslationResult sentinel = translate(null, shape.withValues(sentinels), 0);
+            SqlTemplate template = SqlTemplate.build(sentinel.getSql(), sentinels, sentinel.getReturnItems());
+            if (template != null && Arrays.equals(sentinel.getReturnItems(), result.getReturnItems())) {
+                return template.fill(shape.values).equals(result.getSql()) ? template : SqlTemplate.RETRY;
+            }
+        } catch (Exception e) {
+            // the shape is translated as any other query.
+        }
+        return SqlTemplate.NONE;
+    }
+
+    /**
+     * Translate a query with parameters, with sentinels in place of the parameters, and find where the
+     * sentinels are in the SQL.
+     *
+     * @param cypher     Cypher input.
+     * @param parameters The parameters of the query (see QueryShape.ofParameters).
+     * @param startNano  Time the translation started.
+     * @return The translation, which is to be given the values of the parameters.
+     * @throws Exception Error translating the query, or a parameter is used where it cannot be.
+     */
+    private TranslationResult translateParameters(String cypher, QueryShape parameters, long startNano)
+            throws Exception {
+        List<String> sentinels = parameters.sentinels();
+        TranslationResult sentinel = translate(null, parameters.withValues(sentinels), 0);
+        SqlTemplate template = SqlTemplate.build(sentinel.getSql(), sentinels, sentinel.getReturnItems());
+        String[] returnItems = sentinel.getReturnItems();
+        if (template == null || (returnItems != null && sentinels.stream().anyMatch(p ->
+                Arrays.stream(returnItems).anyMatch(item -> item.toLowerCase().contains(p.toLowerCase()))))) {
+            throw new Exception("Parameters of the query cannot be used where they are: " + parameters.values);
+        }
+        return new TranslationResult(cypher, returnItems, System.nanoTime() - startNano, template,
+                parameters.values);
+    }
+
+    /**
+     * @param cypher    Cypher input.
+     * @param query     The input as it is to be translated.
+     * @param startNano Time the translation started.
+     */
+    private TranslationResult translate(String cypher, String query, long startNano) throws Exception {
+        String lower = query.toLowerCase();
+        DecodedQuery dQ;
+
+        if (lower.contains(" foreach ")) {
+            dQ = translateForEach(query);
+        } else if (lower.contains(" with ")) {
+            dQ = translateWith(query);
+        } else if (lower.contains("allshortestpaths")) {
+            dQ = translateASP(query);
+        } else if (lower.contains("shortestpath")) {
+            dQ = translateShortPath(query);
+        } else if (lower.contains("iterate")) {
+            dQ = null;
+        } else {
+            dQ = translateQuery(query);
+        }
+
+        String sql = (dQ == null) ? SQLIterate.translate(new CypIterate(lower), this) : dQ.getSqlEquiv();
+        if (sql == null) throw new Exception("Conversion of SQL failed");
+
+        String[] returnItems = null;
+        if (dQ != null && !sql.startsWith("INSERT") && !sql.startsWith("DELETE")) {
+            returnItems = dQ.getCypherAdditionalInfo().getReturnClause().replace(" ", "").split(",");
+        }
+        return new TranslationResult(cypher, sql, returnItems, System.nanoTime() - startNano);
+    }
+
+    /**
+     * Translate a Cypher query made up of MATCH, WHERE and RETURN (or UNION of them), CREATE or DELETE.
+     *
+     * @param cypher Original Cypher query to translate.
+     * @return DecodedQuery of the query, with the SQL that maps to it.
+     * @throws Exception Error translating the query.
+     */
+    public DecodedQuery translateQuery(String cypher) throws Exception {
+        if (cypher.toLowerCase().contains(" union all ")) {
+            return translateUnion(cypher.toLowerCase().split(" union all "), "UNION ALL");
+        } else if (cypher.toLowerCase().contains(" union ")) {
+            return translateUnion(cypher.toLowerCase().split(" union "), "UNION");
+        } else {
+            DecodedQuery dQ = CypherTokenizer.decode(cypher, false);
+
+            if (dQ.getRc() != null) {
+                // the translation is for a read query.
+                dQ.setSqlEquiv(SQLTranslate.translateRead(dQ, typeTranslate));
+            } else {
+                if (dQ.getCypherAdditionalInfo().hasDelete()) {
+                    // the translation is a delete query.
+                    dQ.setSqlEquiv(SQLTranslate.translateDelete(dQ));
+                } else {
+                    // the translation is an insert query.
+                    dQ.setSqlEquiv(SQLTranslate.translateInsert(dQ));
+                }
+            }
+            return dQ;
+        }
+    }
+
+    private DecodedQuery translateUnion(String[] queries, String union) throws Exception {
+        ArrayList<String> unionSQL = new ArrayList<>();
+        DecodedQuery dQ = null;
+        for (String s : queries) {
+            dQ = CypherTokenizer.decode(s, false);
+            unionSQL.add(SQLTranslate.translateRead(dQ, typeTranslate));
+        }
+        dQ.setSqlEquiv(SQLUnion.genUnion(unionSQL, union));
+        return dQ;
+    }
+
+    /**
+     * Converting correctly Cypher queries with the keyword FOREACH.
+     */
+    private DecodedQuery translateForEach(String line) throws Exception {
+        String changeLine = line.toLowerCase().replace("with", "return");
+        String[] feParts = changeLine.toLowerCase().split(" foreach ");
+        DecodedQuery dQ = translateQuery(feParts[0].trim() + ";");
+        CypForEach cypForEach = new CypForEach(feParts[1].trim());
+        dQ.setSqlEquiv(SQLForEach.genQuery(dQ.getSqlEquiv(), cypForEach));
+        return dQ;
+    }
+
+    /**
+     * Converting correctly Cypher queries with the keyword WITH.
+     */
+    private DecodedQuery translateWith(String line) throws Exception {
+        String changeLine = line.toLowerCase().replace("with", "return");
+        String[] withParts = changeLine.toLowerCase().split("where");
+        DecodedQuery dQ = translateQuery(withParts[0] + ";");
+
+        String withTemp = SQLWith.genTemp(dQ.getSqlEquiv());
+        String sqlSelect = SQLWith.createSelect(withParts[1].trim(), dQ);
+        dQ.setSqlEquiv(withTemp + " " + sqlSelect);
+        return dQ;
+    }
+
+    private DecodedQuery translateShortPath(String line) throws Exception {
+        line = line.toLowerCase();
+        int returnIndex = line.indexOf("return");
+        int whereIndex = line.indexOf("where");
+        String whereClause = null;
+        if (whereIndex != -1) {
+            whereClause = line.substring(whereIndex, returnIndex - 1);
+        }
+        int indexToUse = (whereIndex == -1) ? returnIndex : whereIndex;
+        String path = line.substring(line.indexOf("(") + 1, indexToUse - 2);
+        String returnClause = line.substring(line.indexOf("return"));
+        String cypherPathQuery = "MATCH " + path + ((whereIndex != -1) ? whereClause : "") + " " + returnClause;
+        DecodedQuery dQMainPath = CypherTokenizer.decode(cypherPathQuery, false);
+        dQMainPath.setSqlEquiv(SQLShortestPath.translate(dQMainPath).toString());
+        return dQMainPath;
+    }
+
+    private DecodedQuery translateASP(String line) throws Exception {
+        String path = line.substring(line.indexOf("(") + 1, line.indexOf("RETURN") - 2);
+        String returnClause = line.substring(line.indexOf("RETURN"));
+        String cypherPathQuery = "MATCH " + path + " " + returnClause;
+        DecodedQuery dQMainPath = CypherTokenizer.decode(cypherPathQuery, false);
+        dQMainPath.setSqlEquiv(SQLAllShortestPaths.translate(dQMainPath).toString());
+        return dQMainPath;
+    }
+}
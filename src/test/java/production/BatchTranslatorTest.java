@@ -0,0 +1,43 @@
+package production;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class BatchTranslatorTest {
+    private static String path(String... parts) {
+        return String.join(File.separator, parts);
+    }
+
+    @Test
+    public void outputFilesReplaceTheExtension() {
+        assertEquals("q_sql.txt", BatchTranslator.outputFile("q.txt", "_sql.txt"));
+        assertEquals("q_sql.txt", BatchTranslator.outputFile("q.cypher", "_sql.txt"));
+        assertEquals("q_failed.txt", BatchTranslator.outputFile("q", "_failed.txt"));
+        assertEquals(".q_sql.txt", BatchTranslator.outputFile(".q", "_sql.txt"));
+        assertEquals(path("a.b", "q_sql.txt"), BatchTranslator.outputFile(path("a.b", "q"), "_sql.txt"));
+        assertEquals(path("a.b", "q.v2_sql.txt"), BatchTranslator.outputFile(path("a.b", "q.v2.txt"), "_sql.txt"));
+    }
+
+    @Test
+    public void theQueriesFileIsNotWrittenOver() throws IOException {
+        File dir = Files.createTempDirectory("batch").toFile();
+        File queries = new File(dir, "q.cypher");
+        Files.write(queries.toPath(), Collections.singletonList("// no queries"), StandardCharsets.UTF_8);
+        BatchTranslator.translateFile(queries.getPath(), "-t", null);
+
+        assertEquals(Collections.singletonList("// no queries"), Files.readAllLines(queries.toPath()));
+        assertTrue(new File(dir, "q_sql.txt").exists());
+        assertTrue(new File(dir, "q_failed.txt").exists());
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,49 @@
+package production;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ParametersTest {
+    @Test
+    public void wholeNumbersAreLongs() {
+        Map<String, Object> params = Reagan_Main_V4.parseParameters(
+                " {\"a\": 3, \"b\": -40, \"c\": 2.0, \"d\": 1e3, \"e\": 0.0, \"f\": 9223372036854775807}");
+        assertEquals(3L, params.get("a"));
+        assertEquals(-40L, params.get("b"));
+        assertEquals(2L, params.get("c"));
+        assertEquals(1000L, params.get("d"));
+        assertEquals(0L, params.get("e"));
+        assertEquals(Long.MAX_VALUE, params.get("f"));
+    }
+
+    @Test
+    public void otherNumbersAreDoubles() {
+        Map<String, Object> params = Reagan_Main_V4.parseParameters(
+                "{\"a\": 2.5, \"b\": -0.125, \"c\": 9223372036854775808, \"d\": 1e20}");
+        assertEquals(2.5, params.get("a"));
+        assertEquals(-0.125, params.get("b"));
+        // too large for a long.
+        assertEquals(9.223372036854775808e18, params.get("c"));
+        assertEquals(1e20, params.get("d"));
+    }
+
+    @Test
+    public void otherValuesKeepTheirType() {
+        Map<String, Object> params = Reagan_Main_V4.parseParameters(
+                "{\"name\": \"Smith\", \"number\": \"42\", \"ok\": true, \"none\": null, \"cars\": [1, 2]}");
+        assertEquals("Smith", params.get("name"));
+        assertEquals("42", params.get("number"));
+        assertEquals(Boolean.TRUE, params.get("ok"));
+        assertTrue(params.containsKey("none"));
+        assertNull(params.get("none"));
+        assertEquals("[1,2]", params.get("cars"));
+    }
+
+    @Test
+    public void noParameters() {
+        assertTrue(Reagan_Main_V4.parseParameters("{}").isEmpty());
+    }
+}
@@ -0,0 +1,101 @@
+package schemaConversion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import production.Reagan_Main_V4;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class CheckpointTest {
+    private static File workspace;
+    private File dump;
+
+    @BeforeClass
+    public static void createWorkspace() throws IOException {
+        // the files of the checkpoint are fixed when the class is first used, so the workspace is set first.
+        workspace = Files.createTempDirectory("workspace").toFile();
+        workspace.deleteOnExit();
+        Reagan_Main_V4.workspaceArea = workspace.getPath();
+    }
+
+    @Before
+    public void writeDump() throws IOException {
+        dump = new File(workspace, "dump.txt");
+        Files.write(dump.toPath(), "create (_0:Owner {name:\"Smith\"})\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void clearWorkspace() {
+        for (File f : workspace.listFiles()) {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void resumesFromTheRecordedOffsets() throws IOException {
+        Checkpoint checkpoint = Checkpoint.start(dump.getPath(), "dense");
+        assertFalse(checkpoint.isResumed());
+        checkpoint.setParsed(4096, 1000, 2000);
+        checkpoint.markDone(Checkpoint.PARSE);
+        checkpoint.setRowsLoaded("nodes", 5000);
+
+        Checkpoint resumed = Checkpoint.resume(dump.getPath(), "dense");
+        assertNotNull(resumed);
+        assertTrue(resumed.isResumed());
+        assertEquals(4096, resumed.getParsedPosition());
+        assertEquals(1000, resumed.getNodesBytes());
+        assertEquals(2000, resumed.getEdgesBytes());
+        assertTrue(resumed.isDone(Checkpoint.PARSE));
+        assertFalse(resumed.isDone(Checkpoint.NODES));
+        assertEquals(5000, resumed.getRowsLoaded("nodes"));
+        assertEquals(0, resumed.getRowsLoaded("edges"));
+        // the checkpoint replaces the previous one, without leaving its temporary file behind.
+        assertFalse(new File(workspace, "checkpoint.properties.tmp").exists());
+    }
+
+    @Test
+    public void laterProgressReplacesEarlier() throws IOException {
+        Checkpoint checkpoint = Checkpoint.start(dump.getPath(), "dense");
+        checkpoint.setParsed(100, 10, 20);
+        checkpoint.setParsed(200, 30, 40);
+
+        Checkpoint resumed = Checkpoint.resume(dump.getPath(), "dense");
+        assertEquals(200, resumed.getParsedPosition());
+        assertEquals(30, resumed.getNodesBytes());
+        assertEquals(40, resumed.getEdgesBytes());
+    }
+
+    @Test
+    public void startsFromTheBeginningWhenNothingIsRecorded() throws IOException {
+        Checkpoint.start(dump.getPath(), "dense");
+        Checkpoint resumed = Checkpoint.resume(dump.getPath(), "dense");
+        assertEquals(0, resumed.getParsedPosition());
+        assertEquals(0, resumed.getNodesBytes());
+    }
+
+    @Test
+    public void nothingToResumeOnceFinished() throws IOException {
+        Checkpoint.start(dump.getPath(), "dense").finish();
+        assertNull(Checkpoint.resume(dump.getPath(), "dense"));
+    }
+
+    @Test(expected = IOException.class)
+    public void onlyResumesTheSameDatabase() throws IOException {
+        Checkpoint.start(dump.getPath(), "dense");
+        Checkpoint.resume(dump.getPath(), "opus");
+    }
+
+    @Test(expected = IOException.class)
+    public void onlyResumesTheSameDump() throws IOException {
+        Checkpoint.start(dump.getPath(), "dense");
+        Files.write(dump.toPath(), "create (_0:Owner {name:\"Johnson\"})\n".getBytes(StandardCharsets.UTF_8));
+        Checkpoint.resume(dump.getPath(), "dense");
+    }
+}
@@ -0,0 +1,117 @@
+package schemaConversion;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+public class GraphFormatTest {
+    private static final long[] LONGS = {0, 1, -1, 63, -64, 64, 300, -300, Integer.MAX_VALUE, Integer.MIN_VALUE,
+            Long.MAX_VALUE, Long.MIN_VALUE};
+
+    private static DataInputStream in(ByteArrayOutputStream out) {
+        return new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    public void longsRoundTrip() throws IOException {
+        GraphDictionary dict = new GraphDictionary();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (long v : LONGS) {
+            JsonObject o = new JsonObject();
+            o.addProperty("id", v);
+            GraphFormat.writeRecord(out, o, dict);
+        }
+
+        DataInputStream in = in(out);
+        for (long v : LONGS) {
+            assertEquals(1, GraphFormat.readVarint(in));
+            assertEquals(dict.idOf("id"), GraphFormat.readVarint(in));
+            assertEquals(GraphFormat.LONG, in.readUnsignedByte());
+            assertEquals(v, GraphFormat.readZigzag(in));
+        }
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void smallValuesTakeOneByte() {
+        JsonObject o = new JsonObject();
+        o.addProperty("id", -64);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GraphFormat.writeRecord(out, o, new GraphDictionary());
+        // count, key, tag and value.
+        assertEquals(4, out.size());
+    }
+
+    @Test
+    public void eachTypeOfValueRoundTrips() throws IOException {
+        GraphDictionary dict = new GraphDictionary();
+        JsonObject o = new JsonObject();
+        o.addProperty("label", "owner");
+        o.addProperty("city", "Leeds é");
+        // numbers that do not fit a long are kept as text.
+        o.add("big", new JsonParser().parse("9223372036854775808"));
+        o.add("ratio", new JsonParser().parse("2.5"));
+        o.add("pets", JsonNull.INSTANCE);
+        JsonArray names = new JsonArray();
+        names.add("a");
+        names.add("");
+        o.add("names", names);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GraphFormat.writeRecord(out, o, dict);
+
+        DataInputStream in = in(out);
+        assertEquals(6, GraphFormat.readVarint(in));
+        assertEquals(dict.idOf("label"), GraphFormat.readVarint(in));
+        assertEquals(GraphFormat.DICT, in.readUnsignedByte());
+        assertEquals(dict.idOf("owner"), GraphFormat.readVarint(in));
+        assertEquals(dict.idOf("city"), GraphFormat.readVarint(in));
+        assertEquals(GraphFormat.STRING, in.readUnsignedByte());
+        assertEquals("Leeds é", GraphFormat.readString(in));
+        assertEquals(dict.idOf("big"), GraphFormat.readVarint(in));
+        assertEquals(GraphFormat.STRING, in.readUnsignedByte());
+        assertEquals("9223372036854775808", GraphFormat.readString(in));
+        assertEquals(dict.idOf("ratio"), GraphFormat.readVarint(in));
+        assertEquals(GraphFormat.STRING, in.readUnsignedByte());
+        assertEquals("2.5", GraphFormat.readString(in));
+        assertEquals(dict.idOf("pets"), GraphFormat.readVarint(in));
+        assertEquals(GraphFormat.NULL, in.readUnsignedByte());
+        assertEquals(dict.idOf("names"), GraphFormat.readVarint(in));
+        assertEquals(GraphFormat.STRING_ARRAY, in.readUnsignedByte());
+        assertEquals(2, GraphFormat.readVarint(in));
+        assertEquals("a", GraphFormat.readString(in));
+        assertEquals("", GraphFormat.readString(in));
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void compressedMembersAreReadAsOne() throws IOException {
+        GraphDictionary dict = new GraphDictionary();
+        File file = File.createTempFile("records", ".bin");
+        file.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(file);
+        for (long v : LONGS) {
+            JsonObject o = new JsonObject();
+            o.addProperty("id", v);
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            GraphFormat.writeRecord(records, o, dict);
+            GraphFormat.compress(records).writeTo(fos);
+        }
+        fos.close();
+
+        DataInputStream in = new DataInputStream(GraphFormat.openRecords(file.getPath()));
+        for (long v : LONGS) {
+            assertEquals(1, GraphFormat.readVarint(in));
+            assertEquals(dict.idOf("id"), GraphFormat.readVarint(in));
+            assertEquals(GraphFormat.LONG, in.readUnsignedByte());
+            assertEquals(v, GraphFormat.readZigzag(in));
+        }
+        assertEquals(-1, in.read());
+        in.close();
+    }
+}
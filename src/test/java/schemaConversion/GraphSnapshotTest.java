@@ -0,0 +1,154 @@
+package schemaConversion;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class GraphSnapshotTest {
+    private static final String[] NODES = {
+            "{\"id\": 1, \"label\": \"owner\", \"name\": \"Smith\", \"cars\": 2}",
+            "{\"id\": 2, \"label\": \"owner\", \"name\": \"Jones\"}",
+            "{\"id\": 3, \"label\": \"website\", \"host\": \"amazon\"}",
+    };
+    private static final String[] EDGES = {
+            "{\"idL\": 1, \"idR\": 3, \"type\": \"owns\"}",
+            "{\"idL\": 1, \"idR\": 3, \"type\": \"owns\"}",
+            "{\"idL\": 2, \"idR\": 3, \"type\": \"owns\", \"since\": 1999}",
+    };
+
+    private File workspace;
+    private String nodesFile;
+    private String edgesFile;
+    private String dictionaryFile;
+
+    @Before
+    public void useWorkspace() throws IOException {
+        workspace = Files.createTempDirectory("snapshot").toFile();
+        nodesFile = SchemaTranslate.nodesFile;
+        edgesFile = SchemaTranslate.edgesFile;
+        dictionaryFile = SchemaTranslate.dictionaryFile;
+        SchemaTranslate.nodesFile = workspace + "/nodes.bin.gz";
+        SchemaTranslate.edgesFile = workspace + "/edges.bin.gz";
+        SchemaTranslate.dictionaryFile = workspace + "/dictionary.bin";
+    }
+
+    @After
+    public void restoreWorkspace() {
+        SchemaTranslate.nodesFile = nodesFile;
+        SchemaTranslate.edgesFile = edgesFile;
+        SchemaTranslate.dictionaryFile = dictionaryFile;
+        for (File f : workspace.listFiles()) {
+            f.delete();
+        }
+        workspace.delete();
+    }
+
+    private static void write(String file, String[] records, GraphDictionary dict) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String record : records) {
+            GraphFormat.writeRecord(out, (JsonObject) new JsonParser().parse(record), dict);
+        }
+        FileOutputStream fos = new FileOutputStream(file);
+        GraphFormat.compress(out).writeTo(fos);
+        fos.close();
+    }
+
+    private static GraphSnapshot snapshot(String[] nodes, String[] edges) throws IOException {
+        GraphDictionary dict = new GraphDictionary();
+        write(SchemaTranslate.nodesFile, nodes, dict);
+        write(SchemaTranslate.edgesFile, edges, dict);
+        dict.save(SchemaTranslate.dictionaryFile);
+        return GraphSnapshot.build(Collections.singletonList("id INT"));
+    }
+
+    private static String[] with(String[] records, int index, String record) {
+        List<String> list = new ArrayList<>(Arrays.asList(records));
+        if (index == list.size()) list.add(record);
+        else if (record == null) list.remove(index);
+        else list.set(index, record);
+        return list.toArray(new String[0]);
+    }
+
+    private static GraphSnapshot.EdgeKey key(long idL, long idR, String type) {
+        return new GraphSnapshot.EdgeKey(idL, idR, type);
+    }
+
+    @Test
+    public void anUnchangedGraphHasNoDifferences() throws IOException {
+        GraphSnapshot older = snapshot(NODES, EDGES);
+        GraphSnapshot newer = snapshot(NODES, EDGES);
+        assertTrue(older.diffNodes(newer).isEmpty());
+        assertTrue(older.diffEdges(newer).isEmpty());
+    }
+
+    @Test
+    public void theOrderOfPropertiesDoesNotMatter() throws IOException {
+        GraphSnapshot older = snapshot(NODES, EDGES);
+        GraphSnapshot newer = snapshot(with(NODES, 0, "{\"cars\": 2, \"name\": \"Smith\", \"label\": \"owner\", \"id\": 1}"),
+                EDGES);
+        assertTrue(older.diffNodes(newer).isEmpty());
+    }
+
+    @Test
+    public void findsNodesAddedChangedAndRemoved() throws IOException {
+        GraphSnapshot older = snapshot(NODES, EDGES);
+        String[] nodes = with(NODES, 0, "{\"id\": 1, \"label\": \"owner\", \"name\": \"Smith\", \"cars\": 3}");
+        nodes = with(nodes, 1, null);
+        nodes = with(nodes, 2, "{\"id\": 4, \"label\": \"website\", \"host\": \"ebay\"}");
+        GraphSnapshot newer = snapshot(nodes, EDGES);
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 4L)), older.diffNodes(newer));
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 4L)), newer.diffNodes(older));
+    }
+
+    @Test
+    public void findsGroupsOfRelationshipsChanged() throws IOException {
+        GraphSnapshot older = snapshot(NODES, EDGES);
+        // one of two identical relationships is removed, and a property of another changed.
+        String[] edges = with(EDGES, 1, null);
+        edges = with(edges, 1, "{\"idL\": 2, \"idR\": 3, \"type\": \"owns\", \"since\": 2001}");
+        GraphSnapshot newer = snapshot(NODES, edges);
+        assertEquals(new HashSet<>(Arrays.asList(key(1, 3, "owns"), key(2, 3, "owns"))), older.diffEdges(newer));
+    }
+
+    @Test
+    public void findsNodesWhosePathsMayHaveChanged() throws IOException {
+        GraphSnapshot older = snapshot(NODES, EDGES);
+
+        // a changed property, or another type of relationship between nodes already linked, changes no path.
+        String[] edges = with(EDGES, 2, "{\"idL\": 2, \"idR\": 3, \"type\": \"owns\", \"since\": 2001}");
+        edges = with(edges, 3, "{\"idL\": 1, \"idR\": 3, \"type\": \"linked_to\"}");
+        GraphSnapshot newer = snapshot(NODES, edges);
+        Set<GraphSnapshot.EdgeKey> changed = older.diffEdges(newer);
+        assertEquals(2, changed.size());
+        assertTrue(older.diffLinks(newer, changed).isEmpty());
+
+        // a link between nodes not linked before, or the last link between nodes removed, does.
+        edges = with(EDGES, 2, null);
+        edges = with(edges, 2, "{\"idL\": 3, \"idR\": 2, \"type\": \"linked_to\"}");
+        newer = snapshot(NODES, edges);
+        assertEquals(new HashSet<>(Arrays.asList(2L, 3L)), older.diffLinks(newer, older.diffEdges(newer)));
+    }
+
+    @Test
+    public void savedSnapshotsAreLoadedAgain() throws IOException {
+        GraphSnapshot snapshot = snapshot(NODES, EDGES);
+        String file = workspace + "/snapshot.bin";
+        snapshot.save(file);
+        GraphSnapshot loaded = GraphSnapshot.load(file);
+        assertEquals(snapshot.nodeColumns, loaded.nodeColumns);
+        assertTrue(snapshot.diffNodes(loaded).isEmpty());
+        assertTrue(snapshot.diffEdges(loaded).isEmpty());
+        assertNull(GraphSnapshot.load(workspace + "/missing.bin"));
+    }
+}
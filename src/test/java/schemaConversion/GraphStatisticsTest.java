@@ -0,0 +1,133 @@
+package schemaConversion;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GraphStatisticsTest {
+    // ids out of order, and some negative, as they may be in a dump.
+    private static final String[] NODES = {
+            "{\"id\": 30, \"label\": \"owner\", \"name\": \"Smith\"}",
+            "{\"id\": -5, \"label\": \"owner, programmer\", \"name\": \"Jones\"}",
+            "{\"id\": 12, \"label\": \"owner\"}",
+            "{\"id\": 7, \"label\": \"website\", \"name\": \"amazon\"}",
+            "{\"id\": 8}",
+    };
+    private static final String[] EDGES = {
+            "{\"idL\": 30, \"idR\": 7, \"type\": \"owns\"}",
+            "{\"idL\": 30, \"idR\": 7, \"type\": \"owns\"}",
+            "{\"idL\": 30, \"idR\": -5, \"type\": \"knows\"}",
+            "{\"idL\": -5, \"idR\": 7, \"type\": \"owns\", \"since\": 1999}",
+            "{\"idL\": 12, \"idR\": 7, \"type\": \"owns\"}",
+            "{\"idL\": 30, \"idR\": 12, \"type\": \"owns\"}",
+            "{\"idL\": 30, \"idR\": 8, \"type\": \"owns\"}",
+    };
+
+    private File workspace;
+    private String nodesFile;
+    private String edgesFile;
+    private String dictionaryFile;
+    private List<String> nodeColumns;
+    private List<String> edgeColumns;
+
+    @Before
+    public void useWorkspace() throws IOException {
+        workspace = Files.createTempDirectory("statistics").toFile();
+        nodesFile = SchemaTranslate.nodesFile;
+        edgesFile = SchemaTranslate.edgesFile;
+        dictionaryFile = SchemaTranslate.dictionaryFile;
+        nodeColumns = new ArrayList<>(SchemaTranslate.nodeRelLabels);
+        edgeColumns = new ArrayList<>(SchemaTranslate.edgesRelLabels);
+        SchemaTranslate.nodesFile = workspace + "/nodes.bin.gz";
+        SchemaTranslate.edgesFile = workspace + "/edges.bin.gz";
+        SchemaTranslate.dictionaryFile = workspace + "/dictionary.bin";
+        setColumns(SchemaTranslate.nodeRelLabels, "id BIGINT", "label TEXT", "name TEXT");
+        setColumns(SchemaTranslate.edgesRelLabels, "idL BIGINT", "idR BIGINT", "type TEXT", "since INT");
+    }
+
+    @After
+    public void restoreWorkspace() {
+        SchemaTranslate.nodesFile = nodesFile;
+        SchemaTranslate.edgesFile = edgesFile;
+        SchemaTranslate.dictionaryFile = dictionaryFile;
+        setColumns(SchemaTranslate.nodeRelLabels, nodeColumns.toArray(new String[0]));
+        setColumns(SchemaTranslate.edgesRelLabels, edgeColumns.toArray(new String[0]));
+        for (File f : workspace.listFiles()) {
+            f.delete();
+        }
+        workspace.delete();
+    }
+
+    private static void setColumns(List<String> columns, String... values) {
+        columns.clear();
+        columns.addAll(Arrays.asList(values));
+    }
+
+    private static void write(String file, String[] records, GraphDictionary dict) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String record : records) {
+            GraphFormat.writeRecord(out, (JsonObject) new JsonParser().parse(record), dict);
+        }
+        FileOutputStream fos = new FileOutputStream(file);
+        GraphFormat.compress(out).writeTo(fos);
+        fos.close();
+    }
+
+    private static GraphStatistics build() throws IOException {
+        GraphDictionary dict = new GraphDictionary();
+        write(SchemaTranslate.nodesFile, NODES, dict);
+        write(SchemaTranslate.edgesFile, EDGES, dict);
+        dict.save(SchemaTranslate.dictionaryFile);
+        return GraphStatistics.build();
+    }
+
+    @Test
+    public void countsNodesAndRelationships() throws IOException {
+        GraphStatistics stats = build();
+        assertEquals(5, stats.getNodeCount(""));
+        assertEquals(3, stats.getNodeCount("owner"));
+        assertEquals(1, stats.getNodeCount("programmer"));
+        assertEquals(7, stats.getEdgeCount(""));
+        assertEquals(6, stats.getEdgeCount("owns"));
+        assertEquals(1, stats.get(GraphStatistics.NULLS, "owner", "", "name"));
+        assertEquals(5, stats.get(GraphStatistics.NULLS, "", "owns", "since"));
+    }
+
+    @Test
+    public void bucketsTheDegreesOfEachLabel() throws IOException {
+        GraphStatistics stats = build();
+        // owners leave 4, 1 and 1 owns relationships.
+        assertEquals(6, stats.get(GraphStatistics.OUT_DEGREE, "owner", "owns", ""));
+        assertEquals(2, stats.get(GraphStatistics.OUT_DEGREE, "owner", "owns", "1"));
+        assertEquals(1, stats.get(GraphStatistics.OUT_DEGREE, "owner", "owns", "4"));
+        assertEquals(4, stats.get(GraphStatistics.MAX_OUT_DEGREE, "owner", "owns", ""));
+        assertEquals(2.0, stats.getAverageDegree("owner", "owns", true), 0);
+        // the website is entered by 4 owns relationships, and -5 by the only knows relationship.
+        assertEquals(1, stats.get(GraphStatistics.IN_DEGREE, "website", "owns", "4"));
+        assertEquals(4, stats.get(GraphStatistics.IN_DEGREE, "website", "owns", ""));
+        assertEquals(1, stats.get(GraphStatistics.IN_DEGREE, "programmer", "knows", "1"));
+        assertEquals(2, stats.get(GraphStatistics.IN_DEGREE, "owner", "knows", "0"));
+    }
+
+    @Test
+    public void listsTheNodesWithTheMostRelationships() throws IOException {
+        GraphStatistics stats = build();
+        assertEquals(5, stats.get(GraphStatistics.HUB, "owner", "", "30"));
+        assertEquals(4, stats.get(GraphStatistics.HUB, "website", "", "7"));
+        assertEquals(2, stats.get(GraphStatistics.HUB, "owner, programmer", "", "-5"));
+        assertEquals(1, stats.get(GraphStatistics.HUB, "", "", "8"));
+    }
+}
@@ -0,0 +1,92 @@
+package schemaConversion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MappedDumpTest {
+    private File file;
+    private MappedDump dump;
+    private List<String> expected;
+
+    @Before
+    public void writeDump() throws IOException {
+        StringBuilder sb = new StringBuilder("begin\n");
+        expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            if (i % 7 == 0) {
+                // a property value running over several lines, some ending with CRLF.
+                sb.append("create (_").append(i).append(":Owner {note:\"first line\r\nsecond\nthird\"})\n\n");
+                expected.add("create (_" + i + ":Owner {note:\"first linesecondthird\"})");
+            } else {
+                sb.append("create (_").append(i).append(":Owner {name:\"O'Neil ").append(i).append("\"})\n");
+                expected.add("create (_" + i + ":Owner {name:\"O''Neil " + i + "\"})");
+            }
+        }
+        sb.append("commit\n");
+        expected.set(expected.size() - 1, expected.get(expected.size() - 1) + "commit");
+
+        file = File.createTempFile("dump", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+        dump = new MappedDump(file.getPath());
+    }
+
+    @After
+    public void closeDump() throws IOException {
+        dump.close();
+    }
+
+    private List<String> statements(List<long[]> ranges) throws IOException {
+        List<String> statements = new ArrayList<>();
+        for (long[] range : ranges) {
+            dump.forEachStatement(range, statements::add);
+        }
+        return statements;
+    }
+
+    @Test
+    public void rangesStartAtStatementsAndCoverTheDump() throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        for (long rangeSize : new long[]{1, 50, 333, 1000, bytes.length}) {
+            List<long[]> ranges = dump.split(0, rangeSize, 1);
+            assertEquals(0, ranges.get(0)[0]);
+            assertEquals(bytes.length, ranges.get(ranges.size() - 1)[1]);
+            for (int i = 1; i < ranges.size(); i++) {
+                assertEquals(ranges.get(i - 1)[1], ranges.get(i)[0]);
+                assertTrue(ranges.get(i)[1] > ranges.get(i)[0]);
+                assertEquals("create", new String(bytes, (int) ranges.get(i)[0], 6, StandardCharsets.US_ASCII));
+            }
+            assertEquals(expected, statements(ranges));
+        }
+    }
+
+    @Test
+    public void givesAtLeastTheRangesAskedFor() throws IOException {
+        List<long[]> ranges = dump.split(0, Long.MAX_VALUE, 8);
+        assertTrue(ranges.size() >= 8);
+        assertEquals(expected, statements(ranges));
+    }
+
+    @Test
+    public void splitsFromAStatement() throws IOException {
+        List<long[]> all = dump.split(0, 500, 1);
+        long from = all.get(3)[0];
+        List<String> before = statements(all.subList(0, 3));
+
+        List<long[]> rest = dump.split(from, 200, 1);
+        assertEquals(from, rest.get(0)[0]);
+        List<String> statements = new ArrayList<>(before);
+        statements.addAll(statements(rest));
+        assertEquals(expected, statements);
+    }
+}
@@ -0,0 +1,91 @@
+package schemaConversion;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonPrimitive;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class SchemaInferenceTest {
+    private static JsonElement value(String s) {
+        return new JsonPrimitive(s);
+    }
+
+    @Test
+    public void classifiesValues() {
+        assertEquals(SchemaInference.INT, SchemaInference.typeOf(value("42")));
+        assertEquals(SchemaInference.INT, SchemaInference.typeOf(value("-2147483648")));
+        assertEquals(SchemaInference.BIGINT, SchemaInference.typeOf(value("2147483648")));
+        assertEquals(SchemaInference.BIGINT, SchemaInference.typeOf(value("-9223372036854775808")));
+        // too large for a BIGINT.
+        assertEquals(SchemaInference.TEXT, SchemaInference.typeOf(value("9223372036854775808")));
+        assertEquals(SchemaInference.TEXT, SchemaInference.typeOf(value("12345678901234567890")));
+        assertEquals(SchemaInference.TEXT, SchemaInference.typeOf(value("2.5")));
+        assertEquals(SchemaInference.TEXT, SchemaInference.typeOf(value("-")));
+        assertEquals(SchemaInference.TEXT, SchemaInference.typeOf(value("Leeds")));
+        assertEquals(SchemaInference.TEXT_ARRAY, SchemaInference.typeOf(new JsonArray()));
+        assertEquals(-1, SchemaInference.typeOf(JsonNull.INSTANCE));
+    }
+
+    @Test
+    public void columnsTakeTheWidestTypeSeen() {
+        SchemaInference.Local local = new SchemaInference.Local();
+        local.addNodeProperty("owner", "cars", value("3"));
+        local.addNodeProperty("owner", "cars", value("3000000000"));
+        local.addNodeProperty("owner", "cars", value("2"));
+        local.addNodeProperty("owner", "city", value("12"));
+        local.addNodeProperty("owner", "city", value("Leeds"));
+        local.addNodeProperty("owner", "pets", JsonNull.INSTANCE);
+
+        SchemaInference inference = new SchemaInference();
+        inference.merge(local);
+        assertEquals(Arrays.asList("cars BIGINT", "city TEXT", "pets TEXT"), inference.getNodeColumns());
+    }
+
+    @Test
+    public void threadsMergeToTheWidestType() {
+        SchemaInference.Local a = new SchemaInference.Local();
+        a.addNodeProperty("owner", "cars", value("3"));
+        a.addEdgeProperty("owns", "since", value("Monday"));
+        SchemaInference.Local b = new SchemaInference.Local();
+        b.addNodeProperty("programmer", "cars", value("3000000000"));
+        b.addEdgeProperty("owns", "since", value("1999"));
+
+        SchemaInference inference = new SchemaInference();
+        inference.merge(a);
+        inference.merge(b);
+        assertEquals(Collections.singletonList("cars BIGINT"), inference.getNodeColumns());
+        assertEquals(Collections.singletonList("since TEXT"), inference.getEdgeColumns());
+        assertEquals(Collections.singletonList("owns"), inference.getRelTypes());
+        // each label keeps the types of its own properties.
+        assertEquals("id INT, cars INT", inference.getLabelColumns().get("owner"));
+        assertEquals("id INT, cars BIGINT", inference.getLabelColumns().get("programmer"));
+    }
+
+    @Test
+    public void savedTypesAreLoadedAgain() throws Exception {
+        SchemaInference.Local local = new SchemaInference.Local();
+        local.addNodeProperty("owner", "cars", value("3"));
+        local.addNodeProperty("owner", "names", new JsonArray());
+        SchemaInference inference = new SchemaInference();
+        inference.merge(local);
+
+        File file = File.createTempFile("inference", ".bin");
+        file.deleteOnExit();
+        inference.save(file.getPath());
+        SchemaInference loaded = SchemaInference.load(file.getPath());
+        assertEquals(inference.getNodeColumns(), loaded.getNodeColumns());
+
+        // types merged after loading are still widened.
+        SchemaInference.Local later = new SchemaInference.Local();
+        later.addNodeProperty("owner", "cars", value("Many"));
+        loaded.merge(later);
+        assertEquals(Arrays.asList("cars TEXT", "names TEXT[]"), loaded.getNodeColumns());
+    }
+}
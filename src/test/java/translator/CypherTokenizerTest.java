@@ -0,0 +1,36 @@
+package translator;
+
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import production.Reagan_Main_V4;
+import schemaConversion.SchemaCatalog;
+
+import static org.junit.Assert.*;
+
+public class CypherTokenizerTest {
+    @BeforeClass
+    public static void loadSchema() {
+        Reagan_Main_V4.workspaceArea = "src/test/resources/workspace";
+        Reagan_Main_V4.dbName = "dense";
+        SchemaCatalog.reload();
+    }
+
+    @Test(expected = ParseCancellationException.class)
+    public void syntaxErrorsAreThrown() throws Exception {
+        CypherTokenizer.decode("MATCH (n:Owner RETURN n", false);
+    }
+
+    @Test(expected = ParseCancellationException.class)
+    public void syntaxErrorsFailTheTranslation() throws Exception {
+        new Translator("-t").translate("MATCH (n:Owner)-[r:OWNS->(b) RETURN b.city");
+    }
+
+    @Test
+    public void deleteQueriesAreStillDecoded() throws Exception {
+        assertEquals("DELETE FROM edges WHERE idl in (SELECT id FROM nodes WHERE surname = 'crawford') OR " +
+                        "idr in (SELECT id FROM nodes WHERE surname = 'crawford'); " +
+                        "DELETE FROM nodes WHERE surname = 'crawford';",
+                new Translator("-t").translate("MATCH (n:Owner {surname:\"Crawford\"}) DETACH DELETE n").getSql());
+    }
+}
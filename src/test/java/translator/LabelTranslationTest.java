@@ -0,0 +1,39 @@
+package translator;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import production.Reagan_Main_V4;
+import schemaConversion.SchemaCatalog;
+
+import static org.junit.Assert.*;
+
+public class LabelTranslationTest {
+    @BeforeClass
+    public static void loadSchema() {
+        Reagan_Main_V4.workspaceArea = "src/test/resources/workspace";
+        Reagan_Main_V4.dbName = "dense";
+        SchemaCatalog.reload();
+    }
+
+    @Test
+    public void filtersOnTheIdsOfKnownLabels() throws Exception {
+        assertEquals("SELECT n01.city FROM nodes n01 WHERE n01.labels @> ARRAY[2];",
+                new Translator("-t").translate("MATCH (n:Programmer) RETURN n.city").getSql());
+    }
+
+    @Test
+    public void unknownLabelsMatchNothing() throws Exception {
+        assertEquals("SELECT n01.city FROM nodes n01 WHERE false;",
+                new Translator("-t").translate("MATCH (n:Actor) RETURN n.city").getSql());
+    }
+
+    @Test
+    public void unknownLabelsCannotBeCreated() {
+        try {
+            new Translator("-t").translate("CREATE (a:Actor {name:\"Tom\"})-[:ACTS_IN]->(b:Owner {name:\"Bob\"})");
+            fail();
+        } catch (Exception e) {
+            assertEquals("LABEL NOT IN SCHEMA : actor", e.getMessage());
+        }
+    }
+}
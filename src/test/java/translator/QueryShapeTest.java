@@ -0,0 +1,84 @@
+package translator;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class QueryShapeTest {
+    @Test
+    public void takesOutStringsAndComparedNumbers() {
+        QueryShape shape = QueryShape.of("MATCH (n:Owner {surname:\"Smith\"}) WHERE n.cars > 2 RETURN n.city");
+        assertEquals(Arrays.asList("Smith", "2"), shape.values);
+        assertEquals("MATCH (n:Owner {surname:\u0001}) WHERE n.cars > \u0002 RETURN n.city", shape.key);
+    }
+
+    @Test
+    public void queriesDifferingInValuesShareAShape() {
+        QueryShape a = QueryShape.of("MATCH (n:Owner {surname:\"Smith\"}) WHERE n.cars > 2 RETURN n.city");
+        QueryShape b = QueryShape.of("MATCH (n:Owner {surname:'Jones'}) WHERE n.cars > 17 RETURN n.city");
+        assertEquals(a.key, b.key);
+    }
+
+    @Test
+    public void roundTripsThroughWithValues() {
+        String query = "MATCH (n:Owner {surname:\"Smith\", city:'Leeds'}) WHERE n.cars = 3 RETURN n.city";
+        QueryShape shape = QueryShape.of(query);
+        assertEquals(query, shape.withValues(shape.values));
+        assertEquals("MATCH (n:Owner {surname:\"Jones\", city:'York'}) WHERE n.cars = 40 RETURN n.city",
+                shape.withValues(Arrays.asList("Jones", "York", "40")));
+    }
+
+    @Test
+    public void leavesLiteralsAfterReturn() {
+        QueryShape shape = QueryShape.of("MATCH (n {city:\"Leeds\"}) RETURN n.city SKIP 5 LIMIT 10");
+        assertEquals(Arrays.asList("Leeds"), shape.values);
+        assertTrue(shape.key.endsWith("RETURN n.city SKIP 5 LIMIT 10"));
+    }
+
+    @Test
+    public void leavesDecimalsAndLeadingZeros() {
+        assertNull(QueryShape.of("MATCH (n) WHERE n.cars = 2.5 RETURN n"));
+        assertNull(QueryShape.of("MATCH (n) WHERE n.cars = 007 RETURN n"));
+        assertNull(QueryShape.of("MATCH (n) RETURN n"));
+    }
+
+    @Test
+    public void sentinelsAreStringsOrNumbers() {
+        QueryShape shape = QueryShape.of("MATCH (n {surname:\"Smith\"}) WHERE n.cars = 3 RETURN n");
+        assertEquals(Arrays.asList("C2sLit0Q", "987650001"), shape.sentinels());
+    }
+
+    @Test
+    public void safeValues() {
+        assertTrue(QueryShape.of("MATCH (n {surname:\"O Neil-Smith\"}) RETURN n").isSafe());
+        assertTrue(QueryShape.of("MATCH (n {host:\"www.example.com/a\"}) RETURN n").isSafe());
+    }
+
+    @Test
+    public void rejectsValuesChangingTheTranslation() {
+        // quotes, brackets and keywords would change how the query is parsed.
+        assertFalse(QueryShape.of("MATCH (n {surname:\"O'Neil\"}) RETURN n").isSafe());
+        assertFalse(QueryShape.of("MATCH (n {surname:\"a)\"}) RETURN n").isSafe());
+        assertFalse(QueryShape.of("MATCH (n {surname:\"a;b\"}) RETURN n").isSafe());
+        assertFalse(QueryShape.of("MATCH (n) WHERE n.surname = \"Smith and Co\" RETURN n").isSafe());
+        assertFalse(QueryShape.of("MATCH (n) WHERE n.surname = \"Smith or Co\" RETURN n").isSafe());
+        assertFalse(QueryShape.of("MATCH (n {surname:\"x union y\"}) RETURN n").isSafe());
+        // as would the name of a property of the query.
+        assertFalse(QueryShape.of("MATCH (n) WHERE n.city = \"city centre\" RETURN n").isSafe());
+    }
+
+    @Test
+    public void takesOutParameters() {
+        QueryShape shape = QueryShape.ofParameters("MATCH (n) WHERE n.city = $city RETURN n SKIP $s LIMIT $l");
+        assertEquals(Arrays.asList("city", "s", "l"), shape.values);
+        assertEquals("MATCH (n) WHERE n.city = \"C2sLit0Q\" RETURN n SKIP 987650001 LIMIT 987650002",
+                shape.withValues(shape.sentinels()));
+    }
+
+    @Test
+    public void ignoresDollarsInStrings() {
+        assertNull(QueryShape.ofParameters("MATCH (n) WHERE n.city = \"$city\" RETURN n"));
+    }
+}
@@ -0,0 +1,110 @@
+package translator;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SqlTemplateTest {
+    private static final List<String> SENTINELS = Arrays.asList("C2sLit0Q", "987650001");
+    private static final String SQL = "SELECT n01.city FROM nodes n01 WHERE n01.surname = 'c2slit0q' AND n01.cars > 987650001;";
+
+    @Test
+    public void fillsStringsAndNumbers() {
+        SqlTemplate template = SqlTemplate.build(SQL, SENTINELS, new String[]{"n.city"});
+        assertEquals("SELECT n01.city FROM nodes n01 WHERE n01.surname = 'smith' AND n01.cars > 2;",
+                template.fill(Arrays.asList("Smith", "2")));
+        assertArrayEquals(new String[]{"n.city"}, template.getReturnItems());
+    }
+
+    @Test
+    public void stringPlaceholdersStayQuotedWhateverTheValue() {
+        SqlTemplate template = SqlTemplate.build(SQL, SENTINELS, null);
+        assertEquals("SELECT n01.city FROM nodes n01 WHERE n01.surname = '123' AND n01.cars > 4;",
+                template.fill(Arrays.asList("123", "4")));
+        assertEquals("SELECT n01.city FROM nodes n01 WHERE n01.surname = '5' AND n01.cars > 4;",
+                template.fill(Arrays.asList(5L, 4L)));
+        assertEquals("SELECT n01.city FROM nodes n01 WHERE n01.surname = 'o''neil' AND n01.cars > 4;",
+                template.fill(Arrays.asList("O'Neil", "4")));
+    }
+
+    @Test
+    public void parameterizes() {
+        SqlTemplate template = SqlTemplate.build(SQL, SENTINELS, null);
+        assertEquals("SELECT n01.city FROM nodes n01 WHERE n01.surname = ? AND n01.cars > ?;",
+                template.parameterize(Arrays.asList("Smith", "2")));
+        List<TranslationResult.Statement> statements = template.statements(Arrays.asList("Smith", "2"));
+        assertEquals(1, statements.size());
+        assertEquals("SELECT n01.city FROM nodes n01 WHERE n01.surname = ? AND n01.cars > ?",
+                statements.get(0).getSql());
+        assertEquals(Arrays.asList("smith", "2"), statements.get(0).getParameters());
+        assertEquals(Arrays.asList("7", 3L), template.statements(Arrays.asList(7L, 3L)).get(0).getParameters());
+    }
+
+    @Test
+    public void keepsCaseWhereTheTranslationDoes() {
+        SqlTemplate template = SqlTemplate.build("SELECT 'C2sLit0Q';", Collections.singletonList("C2sLit0Q"), null);
+        assertEquals("SELECT 'Smith';", template.fill(Collections.singletonList("Smith")));
+    }
+
+    @Test
+    public void fillsValuesAsLiteralsInCreate() {
+        SqlTemplate template = SqlTemplate.build("CREATE TEMP VIEW v AS SELECT 'c2slit0q'; SELECT * FROM v WHERE x = 987650001;",
+                SENTINELS, null);
+        assertEquals("CREATE TEMP VIEW v AS SELECT 'smith'; SELECT * FROM v WHERE x = ?;",
+                template.parameterize(Arrays.asList("Smith", "2")));
+        List<TranslationResult.Statement> statements = template.statements(Arrays.asList("Smith", "2"));
+        assertEquals(Collections.emptyList(), statements.get(0).getParameters());
+        assertEquals(Collections.singletonList("2"), statements.get(1).getParameters());
+    }
+
+    @Test
+    public void givesTheParametersOfEachStatement() {
+        SqlTemplate template = SqlTemplate.build("SELECT 'why?' WHERE x = 'c2slit0q'; SELECT 1 WHERE y = 987650001;",
+                SENTINELS, null);
+        List<TranslationResult.Statement> statements = template.statements(Arrays.asList("a", "2"));
+        assertEquals(2, statements.size());
+        assertEquals("SELECT 'why?' WHERE x = ?", statements.get(0).getSql());
+        assertEquals(Collections.singletonList("a"), statements.get(0).getParameters());
+        assertEquals(" SELECT 1 WHERE y = ?", statements.get(1).getSql());
+        assertEquals(Collections.singletonList("2"), statements.get(1).getParameters());
+    }
+
+    @Test
+    public void semiColonsInValuesDoNotSplitStatements() {
+        SqlTemplate template = SqlTemplate.build("CREATE TEMP VIEW v AS SELECT 'c2slit0q'; SELECT ';' FROM v WHERE x = 'c2slit0q';",
+                SENTINELS.subList(0, 1), null);
+        List<TranslationResult.Statement> statements = template.statements(Collections.singletonList("x;y"));
+        assertEquals(2, statements.size());
+        assertEquals("CREATE TEMP VIEW v AS SELECT 'x;y'", statements.get(0).getSql());
+        assertEquals(Collections.emptyList(), statements.get(0).getParameters());
+        assertEquals(" SELECT ';' FROM v WHERE x = ?", statements.get(1).getSql());
+        assertEquals(Collections.singletonList("x;y"), statements.get(1).getParameters());
+    }
+
+    @Test
+    public void rejectsValuesWithinLargerStrings() {
+        List<String> sentinels = Collections.singletonList("C2sLit0Q");
+        assertNull(SqlTemplate.build("SELECT * FROM n WHERE x LIKE '%c2slit0q%';", sentinels, null));
+        assertNull(SqlTemplate.build("SELECT * FROM n WHERE x = '{\"a\": \"c2slit0q\"}';", sentinels, null));
+        assertNull(SqlTemplate.build("SELECT * FROM n WHERE x = 'a ''c2slit0q'' b';", sentinels, null));
+        assertNull(SqlTemplate.build("SELECT * FROM n WHERE x = 'a' || c2slit0q;", sentinels, null));
+        // a number within a string, or part of a word.
+        List<String> numbers = Collections.singletonList("987650000");
+        assertNull(SqlTemplate.build("SELECT * FROM n WHERE x = 'a 987650000';", numbers, null));
+        assertNull(SqlTemplate.build("SELECT * FROM n WHERE x = n987650000;", numbers, null));
+    }
+
+    @Test
+    public void rejectsMissingValues() {
+        assertNull(SqlTemplate.build("SELECT * FROM n;", SENTINELS, null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void numberPlaceholdersOnlyTakeNumbers() {
+        SqlTemplate.build(SQL, SENTINELS, null).fill(Arrays.asList("Smith", "two"));
+    }
+}
@@ -0,0 +1,63 @@
+package translator;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TranslationCacheTest {
+    @Test
+    public void collapsesWhitespaceOutsideOfLiterals() {
+        assertEquals("MATCH (n:Owner) RETURN n.city",
+                TranslationCache.normalize("  MATCH\t(n:Owner)\r\n   RETURN n.city \n"));
+        assertEquals("MATCH (n) RETURN n", TranslationCache.normalize("MATCH (n) RETURN n"));
+        assertEquals("", TranslationCache.normalize(" \t\n"));
+    }
+
+    @Test
+    public void keepsWhitespaceInsideOfLiterals() {
+        assertEquals("MATCH (n {city:\"New  York\"}) RETURN n",
+                TranslationCache.normalize("MATCH  (n {city:\"New  York\"})  RETURN n"));
+        assertEquals("MATCH (n {city:'a \" b'}) WHERE n.name = \"c ' d\" RETURN n",
+                TranslationCache.normalize("MATCH (n {city:'a \" b'})  WHERE n.name = \"c ' d\"  RETURN n"));
+    }
+
+    @Test
+    public void escapedQuotesDoNotEndALiteral() {
+        assertEquals("MATCH (n {name:\"a \\\"  b\"}) RETURN n",
+                TranslationCache.normalize("MATCH (n {name:\"a \\\"  b\"})   RETURN n"));
+        assertEquals("MATCH (n {name:'O\\'  Neil'}) RETURN n",
+                TranslationCache.normalize("MATCH (n {name:'O\\'  Neil'})   RETURN n"));
+        // an escaped backslash does end it.
+        assertEquals("MATCH (n {name:\"a\\\\\"}) RETURN n",
+                TranslationCache.normalize("MATCH (n {name:\"a\\\\\"})   RETURN n"));
+    }
+
+    @Test
+    public void queriesDifferingInSpacingNormalizeTheSame() {
+        String query = TranslationCache.normalize("MATCH (a:Owner)-[:OWNS]->(b) WHERE a.cars > 3 RETURN b.city");
+        assertEquals(query, TranslationCache.normalize("MATCH (a:Owner)-[:OWNS]->(b)\n  WHERE a.cars > 3\n  RETURN b.city"));
+        assertEquals(query, TranslationCache.normalize(query));
+    }
+
+    @Test
+    public void storedTranslationsAreFoundAndAddedOnesTaken() {
+        TranslationCache cache = new TranslationCache(1, 3, "-t");
+        cache.putStored("MATCH (n) RETURN n", "SELECT * FROM nodes;", null);
+        cache.put("MATCH (n) RETURN n.city", new TranslationResult("MATCH (n) RETURN n.city",
+                "SELECT city FROM nodes;", null, 0));
+        // the LRU cache holds one translation, so the first is only found in those stored.
+        cache.put("MATCH (n) RETURN n.name", new TranslationResult("MATCH (n) RETURN n.name",
+                "SELECT name FROM nodes;", null, 0));
+        assertEquals("SELECT * FROM nodes;", cache.get("MATCH (n) RETURN n").getSql());
+        assertNull(cache.get("MATCH (m) RETURN m"));
+
+        Map<String, TranslationResult> added = cache.takeAdded();
+        assertEquals(2, added.size());
+        assertTrue(cache.takeAdded().isEmpty());
+        // translations taken are stored, so are still found once out of the LRU cache.
+        assertEquals("SELECT city FROM nodes;", cache.get("MATCH (n) RETURN n.city").getSql());
+        assertEquals(3, cache.size());
+    }
+}
@@ -0,0 +1,65 @@
+package translator;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import production.Reagan_Main_V4;
+import schemaConversion.SchemaCatalog;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Translates the queries of src/test/resources/translations, and compares each translation with the
+ * one held there (the SQL from before the query representation was built from the parse tree). Each
+ * query is followed by its translation on the next line, indented by "  => ".
+ */
+public class TranslationRegressionTest {
+    @BeforeClass
+    public static void loadSchema() {
+        Reagan_Main_V4.workspaceArea = "src/test/resources/workspace";
+        SchemaCatalog.reload();
+    }
+
+    @Test
+    public void translatesAsBefore() throws IOException {
+        checkTranslations("-t", "src/test/resources/translations/translations_t.txt");
+    }
+
+    @Test
+    public void translatesAsBeforeWithTheClosure() throws IOException {
+        checkTranslations("-tc", "src/test/resources/translations/translations_tc.txt");
+    }
+
+    @Test
+    public void whitespaceWithinBracketsIsIgnored() throws Exception {
+        Reagan_Main_V4.dbName = "dense";
+        Translator translator = new Translator("-t");
+        assertEquals(translator.translate("MATCH (a:Owner)-[r:OWNS{since:3}]->(b) RETURN b.city").getSql(),
+                translator.translate("MATCH (a:Owner)-[r:OWNS {since: 3}]->(b) RETURN b.city").getSql());
+        assertEquals(translator.translate("MATCH (a)-[:OWNS*1..2]->(b) RETURN b").getSql(),
+                translator.translate("MATCH (a)-[ :OWNS*1..2 ]->(b) RETURN b").getSql());
+    }
+
+    private static void checkTranslations(String typeTranslate, String file) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+        Translator translator = new Translator(typeTranslate);
+        for (int i = 0; i + 1 < lines.size(); i += 2) {
+            String query = lines.get(i);
+            // the queries on the provenance graph are of the opus database, whose names are lists.
+            Reagan_Main_V4.dbName = (query.toLowerCase().contains("global") || query.toLowerCase().contains("meta"))
+                    ? "opus" : "dense";
+            String sql;
+            try {
+                sql = translator.translate(query).getSql();
+            } catch (Exception e) {
+                sql = "EXCEPTION " + e;
+            }
+            assertEquals(query, lines.get(i + 1), "  => " + sql);
+        }
+    }
+}
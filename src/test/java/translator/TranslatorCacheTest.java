@@ -0,0 +1,98 @@
+package translator;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import production.Reagan_Main_V4;
+import schemaConversion.SchemaCatalog;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TranslatorCacheTest {
+    private static final String[] QUERIES = {
+            "MATCH (n:Owner) WHERE n.surname = \"Smith\" RETURN n.city",
+            "MATCH (n:Owner) WHERE n.surname = \"5\" RETURN n.city",
+            "MATCH (n:Owner) WHERE n.surname = \"Jones\" RETURN n.city",
+            "MATCH (n:Programmer {city:\"Leeds\", pets:2}) RETURN n.surname",
+            "MATCH (n:Programmer {city:\"77\", pets:10}) RETURN n.surname",
+            "MATCH (a:Owner)-[:OWNS]->(b) WHERE a.cars > 3 RETURN b.city",
+            "MATCH (a:Owner)-[:OWNS]->(b) WHERE a.cars > 12 RETURN b.city",
+    };
+
+    @BeforeClass
+    public static void loadSchema() {
+        Reagan_Main_V4.workspaceArea = "src/test/resources/workspace";
+        Reagan_Main_V4.dbName = "dense";
+        SchemaCatalog.reload();
+    }
+
+    private static TranslationCache newCache(String typeTranslate) {
+        return new TranslationCache(100, SchemaCatalog.get().getVersion(), typeTranslate);
+    }
+
+    @Test
+    public void queriesOfASeenShapeTranslateAsWithoutTheCache() throws Exception {
+        for (String typeTranslate : new String[]{"-t", "-tc"}) {
+            Translator plain = new Translator(typeTranslate);
+            Translator cached = new Translator(typeTranslate, newCache(typeTranslate));
+            for (String query : QUERIES) {
+                assertEquals(query, plain.translate(query).getSql(), cached.translate(query).getSql());
+            }
+        }
+    }
+
+    @Test
+    public void templatedQueriesAreParameterized() throws Exception {
+        Translator cached = new Translator("-t", newCache("-t"));
+        cached.translate(QUERIES[0]);
+        TranslationResult result = cached.translate(QUERIES[2]);
+        assertEquals("SELECT n01.city FROM nodes n01 WHERE n01.surname = ?   AND n01.labels @> ARRAY[1];",
+                result.getParameterizedSql());
+        assertEquals(Collections.singletonList("jones"), result.getStatements().get(0).getParameters());
+    }
+
+    @Test
+    public void aTemplateToRetryIsMadeAgain() throws Exception {
+        TranslationCache cache = newCache("-t");
+        QueryShape shape = QueryShape.of(TranslationCache.normalize(QUERIES[0]));
+        cache.putTemplate(shape.key, SqlTemplate.RETRY);
+        new Translator("-t", cache).translate(QUERIES[0]);
+        SqlTemplate template = cache.getTemplate(shape.key);
+        assertNotNull(template);
+        assertNotSame(SqlTemplate.RETRY, template);
+        assertNotSame(SqlTemplate.NONE, template);
+    }
+
+    @Test
+    public void parametersAreGivenForEachStatement() throws Exception {
+        TranslationResult result = new Translator("-t").translate(
+                "MATCH (n:Owner) WHERE n.surname = $name AND n.city = \"why?\" RETURN n.city")
+                .bind(Collections.singletonMap("name", "Smith"));
+        assertEquals("SELECT n01.city FROM nodes n01 WHERE n01.surname = ?  and n01.city = 'why?'   " +
+                "AND n01.labels @> ARRAY[1];", result.getParameterizedSql());
+        List<TranslationResult.Statement> statements = result.getStatements();
+        assertEquals(Collections.singletonList("smith"), statements.get(0).getParameters());
+        for (TranslationResult.Statement statement : statements.subList(1, statements.size())) {
+            assertTrue(statement.getParameters().isEmpty());
+        }
+    }
+
+    @Test
+    public void semiColonsInValuesDoNotSplitStatements() throws Exception {
+        String query = "MATCH (a:Owner {name: $name})-[:OWNS]->(b) WITH b WHERE b.name = \"z\" RETURN b.name";
+        TranslationResult result = new Translator("-t").translate(query)
+                .bind(Collections.singletonMap("name", "x;y"));
+        List<TranslationResult.Statement> statements = result.getStatements();
+        assertEquals(2, statements.size());
+        assertTrue(statements.get(0).getSql(), statements.get(0).getSql().contains("'x;y'"));
+        for (TranslationResult.Statement statement : statements) {
+            assertEquals(statement.getSql().length() - statement.getSql().replace("?", "").length(),
+                    statement.getParameters().size());
+        }
+        // statements without parameters are split at semi colons outside of their literals.
+        assertEquals(statements.size(), new Translator("-t").translate(query.replace("$name", "\"x;y\""))
+                .getStatements().size());
+    }
+}